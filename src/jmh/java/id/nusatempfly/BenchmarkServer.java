@@ -0,0 +1,83 @@
+package id.nusatempfly;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import id.nusatempfly.data.AuditEntry;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Headless server with the plugin enabled, for benchmarks of paths that need online players.
+ * Runs on MockBukkit, so the server's own overhead is not representative, only the plugin's code is.
+ */
+public final class BenchmarkServer {
+    private final ServerMock server;
+    private final Plugin plugin;
+    
+    private BenchmarkServer(ServerMock server, Plugin plugin) {
+        this.server = server;
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Start a server and enable the plugin
+     * @param config Config values to change from the defaults, applied through a reload
+     * @return Running server
+     */
+    public static BenchmarkServer start(Map<String, Object> config) {
+        ServerMock server = MockBukkit.mock();
+        Plugin plugin = MockBukkit.load(Plugin.class);
+        if (!config.isEmpty()) {
+            for (Map.Entry<String, Object> entry : config.entrySet()) {
+                plugin.getConfig().set(entry.getKey(), entry.getValue());
+            }
+            plugin.saveConfig();
+            plugin.reloadSettings();
+        }
+        return new BenchmarkServer(server, plugin);
+    }
+    
+    /**
+     * Join players and give each of them flight time
+     * @param count Number of players
+     * @param seconds Flight time of the first player, each next one gets a second more
+     * @param flying Whether to enable flight for them
+     * @return Joined players
+     */
+    public List<Player> addPlayers(int count, long seconds, boolean flying) {
+        List<Player> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            players.add(server.addPlayer());
+        }
+        // Let the joins finish loading their (empty) data
+        server.getScheduler().waitAsyncTasksFinished();
+        server.getScheduler().performTicks(2);
+        
+        for (int i = 0; i < count; i++) {
+            Player player = players.get(i);
+            plugin.getPlayerDataManager().addFlightTime(player.getUniqueId(), seconds + i, AuditEntry.CONSOLE);
+            if (flying) {
+                plugin.getFlightManager().enableFlight(player);
+            }
+        }
+        return players;
+    }
+    
+    /**
+     * Get the plugin
+     * @return Enabled plugin
+     */
+    public Plugin getPlugin() {
+        return plugin;
+    }
+    
+    /**
+     * Disable the plugin and stop the server
+     */
+    public void stop() {
+        MockBukkit.unmock();
+    }
+}
@@ -0,0 +1,117 @@
+package id.nusatempfly.data.storage;
+
+import id.nusatempfly.data.PlayerDataSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Load and save throughput of each storage backend, as used by PlayerDataManager.
+ * The manager reads through its caches and hands saves to the background writer, which
+ * calls saveBatch once per flush window, so the backends bound both paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+    private static final int BATCH_SIZE = 100;
+    
+    @Param({"yaml", "binary", "sqlite"})
+    public String backend;
+    
+    @Param({"10000"})
+    public int players;
+    
+    private Path folder;
+    private PlayerDataStorage storage;
+    private UUID[] uuids;
+    private int next;
+    private long version;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("nusatempfly-storage");
+        switch (backend) {
+            case "binary":
+                storage = new BinaryPlayerDataStorage(folder.resolve("playerdata.dat").toFile());
+                break;
+            case "sqlite":
+                storage = new SqlitePlayerDataStorage(folder.resolve("playerdata.db").toFile());
+                break;
+            default:
+                storage = new YamlPlayerDataStorage(folder.resolve("playerdata").toFile(), Logger.getLogger(StorageBenchmark.class.getName()));
+                break;
+        }
+        
+        uuids = new UUID[players];
+        List<PlayerDataSnapshot> initial = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            uuids[i] = UUID.randomUUID();
+            initial.add(new PlayerDataSnapshot(uuids[i], 3600 + i, i % 2 == 0, ++version));
+        }
+        storage.saveBatch(initial);
+        storage.flush();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        storage.close();
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+    
+    private UUID nextPlayer() {
+        UUID uuid = uuids[next];
+        next = next + 1 == uuids.length ? 0 : next + 1;
+        return uuid;
+    }
+    
+    @Benchmark
+    public PlayerDataSnapshot load() throws IOException {
+        return storage.load(nextPlayer());
+    }
+    
+    @Benchmark
+    public void save() throws IOException {
+        storage.save(new PlayerDataSnapshot(nextPlayer(), version, true, ++version));
+    }
+    
+    // One writer flush: a batch of changed players made durable
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void saveBatch() throws IOException {
+        List<PlayerDataSnapshot> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new PlayerDataSnapshot(nextPlayer(), version, false, ++version));
+        }
+        storage.saveBatch(batch);
+        storage.flush();
+    }
+}
@@ -0,0 +1,67 @@
+package id.nusatempfly.flight;
+
+import id.nusatempfly.BenchmarkServer;
+import id.nusatempfly.util.ShardedTicker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One second of tick accounting: every flying player charged once, spread over 20 ticks.
+ * The tick budget is lifted so no player is deferred and the whole second is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlightTickBenchmark {
+    private static final int TICKS_PER_SECOND = 20;
+    // Enough flight time that nobody runs out during a run
+    private static final long FLIGHT_TIME = 1_000_000_000L;
+    
+    @Param({"100", "1000", "5000"})
+    public int players;
+    
+    private BenchmarkServer server;
+    private ShardedTicker<UUID> ticker;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        Map<String, Object> config = new HashMap<>();
+        config.put("flight.accounting", "tick");
+        config.put("flight.tick-budget-ms", 1000.0);
+        server = BenchmarkServer.start(config);
+        server.addPlayers(players, FLIGHT_TIME, true);
+        ticker = server.getPlugin().getFlightManager().getFlightTicker();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+    
+    @Benchmark
+    public int oneSecond() {
+        for (int i = 0; i < TICKS_PER_SECOND; i++) {
+            ticker.tick();
+        }
+        return ticker.getDeferredCount();
+    }
+}
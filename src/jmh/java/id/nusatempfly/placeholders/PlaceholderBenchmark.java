@@ -0,0 +1,84 @@
+package id.nusatempfly.placeholders;
+
+import id.nusatempfly.BenchmarkServer;
+import id.nusatempfly.data.PlayerData;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PlaceholderAPI requests for every identifier, from 100 online players in turn.
+ * "cached" repeats requests like a scoreboard between two changes, "changed" gives the
+ * player a second first so the cached values are rendered again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceholderBenchmark {
+    private static final int PLAYERS = 100;
+    
+    @Param({"time_remaining", "time_formatted", "time_compact", "enabled", "enabled_bool",
+            "has_booster", "booster_multiplier", "booster_percentage", "time_days", "time_hours",
+            "time_minutes", "time_seconds", "rank", "top_1_name", "top_1_time", "top_50_time",
+            "top_500_time", "Time_Formatted"})
+    public String identifier;
+    
+    private BenchmarkServer server;
+    private TempFlyPlaceholders placeholders;
+    private Player[] players;
+    private PlayerData[] playerData;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        server = BenchmarkServer.start(Collections.emptyMap());
+        List<Player> joined = server.addPlayers(PLAYERS, 3600, false);
+        players = joined.toArray(new Player[0]);
+        playerData = new PlayerData[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            playerData[i] = server.getPlugin().getPlayerDataManager().getPlayerData(players[i]);
+        }
+        placeholders = new TempFlyPlaceholders(server.getPlugin());
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+    
+    private int nextPlayer() {
+        int index = next;
+        next = next + 1 == PLAYERS ? 0 : next + 1;
+        return index;
+    }
+    
+    @Benchmark
+    public String cached() {
+        return placeholders.onRequest(players[nextPlayer()], identifier);
+    }
+    
+    @Benchmark
+    public String changed() {
+        int index = nextPlayer();
+        playerData[index].addFlightTime(1);
+        return placeholders.onRequest(players[index], identifier);
+    }
+}
@@ -0,0 +1,76 @@
+package id.nusatempfly.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting and parsing of flight times with the default templates.
+ * The short durations fall in the memoized range, the long ones are rendered every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeFormatterBenchmark {
+    @Param({"45", "3725", "93784", "31536000"})
+    public long seconds;
+    
+    private TimeFormatter formatter;
+    private String argument;
+    private final StringBuilder builder = new StringBuilder(64);
+    
+    @Setup
+    public void setup() {
+        formatter = TimeFormatter.load(null);
+        argument = toArgument(seconds);
+    }
+    
+    // The 1d2h3m4s form typed in commands, independent of the configured templates
+    private static String toArgument(long seconds) {
+        StringBuilder text = new StringBuilder();
+        long[] units = {86400, 3600, 60, 1};
+        char[] suffixes = {'d', 'h', 'm', 's'};
+        for (int i = 0; i < units.length; i++) {
+            if (seconds >= units[i]) {
+                text.append(seconds / units[i]).append(suffixes[i]);
+                seconds %= units[i];
+            }
+        }
+        return text.length() > 0 ? text.toString() : "0s";
+    }
+    
+    @Benchmark
+    public String format() {
+        return formatter.format(seconds);
+    }
+    
+    @Benchmark
+    public String formatCompact() {
+        return formatter.formatCompact(seconds);
+    }
+    
+    @Benchmark
+    public int formatInto() {
+        builder.setLength(0);
+        formatter.format(seconds, builder);
+        return builder.length();
+    }
+    
+    @Benchmark
+    public long parse() {
+        return TimeFormatter.parse(argument);
+    }
+}
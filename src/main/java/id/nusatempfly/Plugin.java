@@ -1,19 +1,24 @@
 package id.nusatempfly;
 
 import id.nusatempfly.commands.TempFlyCommand;
+import id.nusatempfly.config.Settings;
 import id.nusatempfly.data.PlayerDataManager;
 import id.nusatempfly.flight.FlightManager;
 import id.nusatempfly.hooks.WorldGuardHook;
 import id.nusatempfly.listeners.PlayerConnectionListener;
 import id.nusatempfly.listeners.FlightToggleListener;
+import id.nusatempfly.listeners.PermissionCommandListener;
 import id.nusatempfly.listeners.PlayerWorldChangeListener;
 import id.nusatempfly.placeholders.TempFlyPlaceholders;
 import id.nusatempfly.hooks.WorldGuardFlags;
+import id.nusatempfly.permission.PermissionCache;
 
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Plugin extends JavaPlugin {
@@ -30,6 +35,10 @@ public class Plugin extends JavaPlugin {
     private PlayerDataManager playerDataManager;
     private FlightManager flightManager;
     private WorldGuardHook worldGuardHook;
+    private PermissionCache permissionCache;
+    private TempFlyPlaceholders placeholders;
+    // Replaced as a whole on reload, readers always see one consistent snapshot
+    private volatile Settings settings;
     
     @Override
     public void onEnable() {
@@ -38,6 +47,7 @@ public class Plugin extends JavaPlugin {
         
         // Initialize config
         saveDefaultConfig();
+        settings = Settings.load(getConfig());
         
         // Initialize data folder
         if (!getDataFolder().exists()) {
@@ -51,8 +61,16 @@ public class Plugin extends JavaPlugin {
         }
         
         // Initialize managers
-        playerDataManager = new PlayerDataManager(this);
+        try {
+            playerDataManager = new PlayerDataManager(this);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to open player data storage, disabling NusaTempFly", e);
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+        permissionCache = new PermissionCache(this);
         flightManager = new FlightManager(this);
+        playerDataManager.loadOnlinePlayers();
         
         // Initialize WorldGuard integration
         if (getServer().getPluginManager().getPlugin("WorldGuard") != null) {
@@ -62,37 +80,46 @@ public class Plugin extends JavaPlugin {
         }
         
         // Register commands
-        getCommand("tempfly").setExecutor(new TempFlyCommand(this));
+        TempFlyCommand command = new TempFlyCommand(this);
+        getCommand("tempfly").setExecutor(command);
+        getCommand("tempfly").setTabCompleter(command.getTabCompleter());
         
         // Register event listeners
         getServer().getPluginManager().registerEvents(new PlayerConnectionListener(this), this);
         getServer().getPluginManager().registerEvents(new FlightToggleListener(this), this);
         getServer().getPluginManager().registerEvents(new PlayerWorldChangeListener(this), this);
+        getServer().getPluginManager().registerEvents(new PermissionCommandListener(this), this);
+        getServer().getPluginManager().registerEvents(command.getTabCompleter(), this);
         
         // Register PlaceholderAPI expansion if available
         if (getServer().getPluginManager().getPlugin("PlaceholderAPI") != null) {
-            new TempFlyPlaceholders(this).register();
+            placeholders = new TempFlyPlaceholders(this);
+            placeholders.register();
             LOGGER.info("Hooked into PlaceholderAPI");
         }
         
         // Start flight time task (runs every second to decrement flight time)
         flightManager.startFlightTimeTask();
         
+        // Start periodic autosave of changed player data
+        playerDataManager.getAutosaveScheduler().start();
+        
         LOGGER.info("NusaTempFly enabled successfully!");
     }
     
     @Override
     public void onDisable() {
-        // Save all player data when plugin disables
-        if (playerDataManager != null) {
-            playerDataManager.saveAllPlayerData();
-        }
-        
         // Cancel all tasks
         if (flightManager != null) {
             flightManager.stopFlightTimeTask();
         }
         
+        // Save all player data and wait for the writer to flush it
+        if (playerDataManager != null) {
+            playerDataManager.saveAllPlayerData();
+            playerDataManager.shutdown();
+        }
+        
         LOGGER.info("NusaTempFly disabled successfully!");
     }
     
@@ -120,6 +147,42 @@ public class Plugin extends JavaPlugin {
         return flightManager;
     }
     
+    /**
+     * Get the current settings snapshot
+     * @return Settings
+     */
+    public Settings getSettings() {
+        return settings;
+    }
+    
+    /**
+     * Reload config.yml, swap in a new settings snapshot and restart the tasks that depend on it
+     */
+    public void reloadSettings() {
+        reloadConfig();
+        settings = Settings.load(getConfig());
+        
+        // Resolve permissions again with the new cache settings
+        permissionCache.reload();
+        if (worldGuardHook != null) {
+            worldGuardHook.reloadRegionCache();
+        }
+        
+        // Restart flight time tracking so a changed accounting mode or warning list takes effect
+        flightManager.startFlightTimeTask();
+        
+        // Restart autosave so a changed interval takes effect
+        playerDataManager.getAutosaveScheduler().start();
+    }
+    
+    /**
+     * Get the cache of resolved permissions
+     * @return PermissionCache
+     */
+    public PermissionCache getPermissionCache() {
+        return permissionCache;
+    }
+    
     /**
      * Get the WorldGuard hook
      * @return WorldGuardHook
@@ -127,4 +190,12 @@ public class Plugin extends JavaPlugin {
     public WorldGuardHook getWorldGuardHook() {
         return worldGuardHook;
     }
+    
+    /**
+     * Get the PlaceholderAPI expansion
+     * @return TempFlyPlaceholders, or null if PlaceholderAPI is not installed
+     */
+    public TempFlyPlaceholders getPlaceholders() {
+        return placeholders;
+    }
 }
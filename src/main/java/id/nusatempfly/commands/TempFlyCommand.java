@@ -1,33 +1,62 @@
 package id.nusatempfly.commands;
 
 import id.nusatempfly.Plugin;
+import id.nusatempfly.config.Settings;
+import id.nusatempfly.data.AuditCause;
+import id.nusatempfly.data.AuditEntry;
+import id.nusatempfly.data.AuditLedger;
+import id.nusatempfly.data.AutosaveScheduler;
+import id.nusatempfly.data.FlightLeaderboard;
+import id.nusatempfly.data.FlightTimeChange;
+import id.nusatempfly.data.OfflinePlayerDataCache;
+import id.nusatempfly.data.PlayerDataManager;
+import id.nusatempfly.flight.BulkGrant;
+import id.nusatempfly.hooks.RegionFlagCache;
+import id.nusatempfly.hooks.WorldGuardHook;
+import id.nusatempfly.permission.TempFlyPermission;
+import id.nusatempfly.util.ShardedTicker;
 import id.nusatempfly.util.TimeFormatter;
 import org.bukkit.Bukkit;
-import org.bukkit.ChatColor;
+import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
-import org.bukkit.command.TabCompleter;
+import net.kyori.adventure.text.Component;
 import org.bukkit.entity.Player;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.logging.Level;
 
-public class TempFlyCommand implements CommandExecutor, TabCompleter {
+public class TempFlyCommand implements CommandExecutor {
+    // Entries shown per page of /tempfly history
+    private static final int HISTORY_PAGE_SIZE = 10;
+    
     private final Plugin plugin;
-    private final TimeFormatter timeFormatter;
     
     // List of admin subcommands
-    private final List<String> adminCommands = Arrays.asList("give", "take", "set", "check", "reload");
+    private final List<String> adminCommands = Arrays.asList("give", "take", "set", "check", "history", "reload", "stats");
     
     // List of player subcommands
     private final List<String> playerCommands = Arrays.asList("toggle", "check", "time");
     
+    private final TempFlyTabCompleter tabCompleter;
+    
     public TempFlyCommand(Plugin plugin) {
         this.plugin = plugin;
-        this.timeFormatter = new TimeFormatter(plugin);
+        this.tabCompleter = new TempFlyTabCompleter(plugin, adminCommands, playerCommands);
+    }
+    
+    /**
+     * Get the tab completer of this command, also a listener for async tab completion
+     * @return Tab completer
+     */
+    public TempFlyTabCompleter getTabCompleter() {
+        return tabCompleter;
     }
     
     @Override
@@ -63,9 +92,15 @@ public class TempFlyCommand implements CommandExecutor, TabCompleter {
                 case "set":
                     handleSetCommand(sender, args);
                     break;
+                case "history":
+                    handleHistoryCommand(sender, args);
+                    break;
                 case "reload":
                     handleReloadCommand(sender);
                     break;
+                case "stats":
+                    handleStatsCommand(sender);
+                    break;
             }
             return true;
         }
@@ -89,237 +124,425 @@ public class TempFlyCommand implements CommandExecutor, TabCompleter {
         return true;
     }
     
-    // Tab completion for command arguments
-    @Override
-    public List<String> onTabComplete(CommandSender sender, Command cmd, String alias, String[] args) {
-        List<String> completions = new ArrayList<>();
-        
-        if (args.length == 1) {
-            // First argument - show subcommands based on permissions
-            if (sender.hasPermission("nusatempfly.admin")) {
-                for (String adminCmd : adminCommands) {
-                    if (adminCmd.startsWith(args[0].toLowerCase())) {
-                        completions.add(adminCmd);
-                    }
-                }
-            }
-            
-            for (String playerCmd : playerCommands) {
-                if (playerCmd.startsWith(args[0].toLowerCase())) {
-                    completions.add(playerCmd);
-                }
-            }
-        } else if (args.length == 2) {
-            // Second argument - show players for relevant commands
-            String subCommand = args[0].toLowerCase();
-            if (Arrays.asList("give", "take", "set", "check").contains(subCommand) && 
-                    sender.hasPermission("nusatempfly.admin")) {
-                for (Player player : Bukkit.getOnlinePlayers()) {
-                    if (player.getName().toLowerCase().startsWith(args[1].toLowerCase())) {
-                        completions.add(player.getName());
-                    }
-                }
-            }
-        } else if (args.length == 3) {
-            // Third argument - suggest time formats for relevant commands
-            String subCommand = args[0].toLowerCase();
-            if (Arrays.asList("give", "take", "set").contains(subCommand) && 
-                    sender.hasPermission("nusatempfly.admin")) {
-                if ("".startsWith(args[2].toLowerCase())) {
-                    completions.add("1m");
-                    completions.add("5m");
-                    completions.add("10m");
-                    completions.add("30m");
-                    completions.add("1h");
-                    completions.add("1d");
-                }
-            }
-        }
-        
-        return completions;
-    }
-    
     // Display help message
     private void sendHelp(CommandSender sender) {
-        String prefix = ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("messages.prefix"));
-        
-        sender.sendMessage(prefix + ChatColor.YELLOW + "NusaTempFly Commands:");
-        sender.sendMessage(ChatColor.GOLD + "/" + "tempfly toggle" + ChatColor.WHITE + " - Toggle flight mode");
-        sender.sendMessage(ChatColor.GOLD + "/" + "tempfly check" + ChatColor.WHITE + " - Check your flight time");
+        Settings settings = plugin.getSettings();
+        settings.getMessage("help-header").send(sender);
+        settings.getUnprefixedMessage("help-player").send(sender);
         
         if (sender.hasPermission("nusatempfly.admin")) {
-            sender.sendMessage(ChatColor.RED + "Admin Commands:");
-            sender.sendMessage(ChatColor.GOLD + "/" + "tempfly give <player> <time>" + ChatColor.WHITE + " - Give flight time");
-            sender.sendMessage(ChatColor.GOLD + "/" + "tempfly take <player> <time>" + ChatColor.WHITE + " - Take flight time");
-            sender.sendMessage(ChatColor.GOLD + "/" + "tempfly set <player> <time>" + ChatColor.WHITE + " - Set flight time");
-            sender.sendMessage(ChatColor.GOLD + "/" + "tempfly check <player>" + ChatColor.WHITE + " - Check player's flight time");
-            sender.sendMessage(ChatColor.GOLD + "/" + "tempfly reload" + ChatColor.WHITE + " - Reload plugin configuration");
+            settings.getUnprefixedMessage("help-admin").send(sender);
         }
     }
     
     // Send no permission message
     private void sendNoPermissionMessage(CommandSender sender) {
-        String message = ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("messages.prefix") + 
-                plugin.getConfig().getString("messages.no-permission"));
-        sender.sendMessage(message);
+        plugin.getSettings().getMessage("no-permission").send(sender);
+    }
+    
+    // Send usage message
+    private void sendUsage(CommandSender sender, String usage) {
+        plugin.getSettings().getMessage("usage").send(sender, "usage", usage);
     }
     
     // Handle give command: /tempfly give <player> <time>
     private void handleGiveCommand(CommandSender sender, String[] args) {
         if (args.length < 3) {
-            sender.sendMessage(ChatColor.RED + "Usage: /tempfly give <player> <time>");
+            sendUsage(sender, "/tempfly give <player|*|@perm:<node>|@world:<name>> <time>");
             return;
         }
         
         String playerName = args[1];
+        if (playerName.equals("*") || playerName.startsWith("@")) {
+            handleBulkGiveCommand(sender, playerName, args[2]);
+            return;
+        }
+        
         Player target = Bukkit.getPlayer(playerName);
+        // Players that are not online are looked up in the name index and changed in the background
+        UUID offlineTarget = target == null ? plugin.getPlayerDataManager().getNameIndex().getUUID(playerName) : null;
         
-        if (target == null) {
-            String message = ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("messages.prefix") + 
-                    plugin.getConfig().getString("messages.player-not-found"));
-            sender.sendMessage(message);
+        if (target == null && offlineTarget == null) {
+            plugin.getSettings().getMessage("player-not-found").send(sender);
             return;
         }
         
         String timeArg = args[2];
-        long seconds = timeFormatter.parse(timeArg);
+        long seconds = TimeFormatter.parse(timeArg);
+        tabCompleter.recordTime(sender, timeArg);
         
         if (seconds <= 0) {
             // If invalid format or negative time, use default time
-            seconds = plugin.getConfig().getLong("flight.default-time", 300);
+            seconds = plugin.getSettings().getDefaultTime();
+        }
+        
+        if (target == null) {
+            // No booster for offline players, their permissions are unknown
+            changeOfflineFlightTime(sender, offlineTarget, FlightTimeChange.GIVE, seconds);
+            return;
         }
         
         // Add flight time using flight manager
-        plugin.getFlightManager().addFlightTime(target, seconds);
+        plugin.getFlightManager().addFlightTime(target, seconds, actorOf(sender));
         
         // Inform the command sender if different from target
         if (!sender.equals(target)) {
-            String time = timeFormatter.format(seconds);
-            sender.sendMessage(ChatColor.GREEN + "Gave " + target.getName() + " " + time + " of flight time.");
+            String time = plugin.getSettings().getTimeFormatter().format(seconds);
+            plugin.getSettings().getMessage("admin-time-given").send(sender, "player", target.getName(), "time", time);
+        }
+    }
+    
+    // Handle bulk give: /tempfly give <*|@perm:<node>|@world:<name>> <time>
+    private void handleBulkGiveCommand(CommandSender sender, String selector, String timeArg) {
+        List<Player> targets = selectPlayers(selector);
+        if (targets == null) {
+            plugin.getSettings().getMessage("invalid-target").send(sender, "target", selector);
+            return;
+        }
+        if (targets.isEmpty()) {
+            plugin.getSettings().getMessage("bulk-no-players").send(sender, "target", selector);
+            return;
+        }
+        
+        long seconds = TimeFormatter.parse(timeArg);
+        tabCompleter.recordTime(sender, timeArg);
+        if (seconds <= 0) {
+            // If invalid format or negative time, use default time
+            seconds = plugin.getSettings().getDefaultTime();
+        }
+        
+        BulkGrant grant = BulkGrant.start(plugin, targets, seconds, actorOf(sender));
+        TimeFormatter formatter = plugin.getSettings().getTimeFormatter();
+        plugin.getSettings().getMessage("admin-bulk-given").send(sender, 
+                "time", formatter.format(seconds), "count", grant.getPlayerCount(), 
+                "boosted", grant.getBoostedCount(), "total", formatter.format(grant.getTotalSeconds()));
+    }
+    
+    /**
+     * Find the online players matched by a bulk selector
+     * @param selector * for everyone, @perm:&lt;node&gt; or @world:&lt;name&gt;
+     * @return Matching players, or null if the selector is invalid
+     */
+    private List<Player> selectPlayers(String selector) {
+        if (selector.equals("*")) {
+            return new ArrayList<>(Bukkit.getOnlinePlayers());
+        }
+        
+        int separator = selector.indexOf(':');
+        if (separator < 0 || separator == selector.length() - 1) {
+            return null;
+        }
+        String value = selector.substring(separator + 1);
+        switch (selector.substring(0, separator).toLowerCase()) {
+            case "@perm":
+                List<Player> players = new ArrayList<>();
+                for (Player player : Bukkit.getOnlinePlayers()) {
+                    if (player.hasPermission(value)) {
+                        players.add(player);
+                    }
+                }
+                return players;
+            case "@world":
+                World world = Bukkit.getWorld(value);
+                return world != null ? new ArrayList<>(world.getPlayers()) : null;
+            default:
+                return null;
         }
     }
     
     // Handle take command: /tempfly take <player> <time>
     private void handleTakeCommand(CommandSender sender, String[] args) {
         if (args.length < 3) {
-            sender.sendMessage(ChatColor.RED + "Usage: /tempfly take <player> <time>");
+            sendUsage(sender, "/tempfly take <player> <time>");
             return;
         }
         
         String playerName = args[1];
         Player target = Bukkit.getPlayer(playerName);
+        // Players that are not online are looked up in the name index and changed in the background
+        UUID offlineTarget = target == null ? plugin.getPlayerDataManager().getNameIndex().getUUID(playerName) : null;
         
-        if (target == null) {
-            String message = ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("messages.prefix") + 
-                    plugin.getConfig().getString("messages.player-not-found"));
-            sender.sendMessage(message);
+        if (target == null && offlineTarget == null) {
+            plugin.getSettings().getMessage("player-not-found").send(sender);
             return;
         }
         
         String timeArg = args[2];
-        long seconds = timeFormatter.parse(timeArg);
+        long seconds = TimeFormatter.parse(timeArg);
+        tabCompleter.recordTime(sender, timeArg);
         
         if (seconds <= 0) {
             // If invalid format or negative time, inform user
-            String message = ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("messages.prefix") + 
-                    plugin.getConfig().getString("messages.invalid-time-format"));
-            sender.sendMessage(message);
+            plugin.getSettings().getMessage("invalid-time-format").send(sender);
+            return;
+        }
+        
+        if (target == null) {
+            changeOfflineFlightTime(sender, offlineTarget, FlightTimeChange.TAKE, seconds);
             return;
         }
         
         // Remove flight time using flight manager
-        long remaining = plugin.getFlightManager().removeFlightTime(target, seconds);
+        long remaining = plugin.getFlightManager().removeFlightTime(target, seconds, actorOf(sender));
         
         // Inform the command sender if different from target
         if (!sender.equals(target)) {
-            String time = timeFormatter.format(seconds);
-            String remainingTime = timeFormatter.format(remaining);
-            sender.sendMessage(ChatColor.GREEN + "Took " + time + " of flight time from " + target.getName() + 
-                    ". They now have " + remainingTime + " remaining.");
+            String time = plugin.getSettings().getTimeFormatter().format(seconds);
+            String remainingTime = plugin.getSettings().getTimeFormatter().format(remaining);
+            plugin.getSettings().getMessage("admin-time-taken").send(sender, 
+                    "player", target.getName(), "time", time, "remaining", remainingTime);
         }
     }
     
     // Handle set command: /tempfly set <player> <time>
     private void handleSetCommand(CommandSender sender, String[] args) {
         if (args.length < 3) {
-            sender.sendMessage(ChatColor.RED + "Usage: /tempfly set <player> <time>");
+            sendUsage(sender, "/tempfly set <player> <time>");
             return;
         }
         
         String playerName = args[1];
         Player target = Bukkit.getPlayer(playerName);
+        // Players that are not online are looked up in the name index and changed in the background
+        UUID offlineTarget = target == null ? plugin.getPlayerDataManager().getNameIndex().getUUID(playerName) : null;
         
-        if (target == null) {
-            String message = ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("messages.prefix") + 
-                    plugin.getConfig().getString("messages.player-not-found"));
-            sender.sendMessage(message);
+        if (target == null && offlineTarget == null) {
+            plugin.getSettings().getMessage("player-not-found").send(sender);
             return;
         }
         
         String timeArg = args[2];
-        long seconds = timeFormatter.parse(timeArg);
+        long seconds = TimeFormatter.parse(timeArg);
+        tabCompleter.recordTime(sender, timeArg);
         
         if (seconds < 0) {
             // If invalid format, inform user
-            String message = ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("messages.prefix") + 
-                    plugin.getConfig().getString("messages.invalid-time-format"));
-            sender.sendMessage(message);
+            plugin.getSettings().getMessage("invalid-time-format").send(sender);
+            return;
+        }
+        
+        if (target == null) {
+            changeOfflineFlightTime(sender, offlineTarget, FlightTimeChange.SET, seconds);
             return;
         }
         
         // Set flight time
-        plugin.getPlayerDataManager().setFlightTime(target.getUniqueId(), seconds);
+        plugin.getPlayerDataManager().setFlightTime(target.getUniqueId(), seconds, actorOf(sender));
+        plugin.getFlightManager().refreshCharging(target);
         
         // Send message to target
-        String time = timeFormatter.format(seconds);
-        String message = ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("messages.prefix") + 
-                plugin.getConfig().getString("messages.time-set")
-                    .replace("%time%", time));
-        target.sendMessage(message);
+        String time = plugin.getSettings().getTimeFormatter().format(seconds);
+        plugin.getSettings().getMessage("time-set").send(target, "time", time);
         
         // Inform the command sender if different from target
         if (!sender.equals(target)) {
-            sender.sendMessage(ChatColor.GREEN + "Set " + target.getName() + "'s flight time to " + time + ".");
+            plugin.getSettings().getMessage("admin-time-set").send(sender, "player", target.getName(), "time", time);
+        }
+    }
+    
+    // Change the time of a player who is not online, reporting back on the main thread
+    private void changeOfflineFlightTime(CommandSender sender, UUID uuid, FlightTimeChange change, long seconds) {
+        String name = plugin.getPlayerDataManager().getNameIndex().getName(uuid);
+        plugin.getPlayerDataManager().changeFlightTime(uuid, change, seconds, actorOf(sender)).whenComplete((remaining, error) -> {
+            if (!plugin.isEnabled()) {
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                Settings settings = plugin.getSettings();
+                if (error != null) {
+                    plugin.getLogger().log(Level.SEVERE, "Failed to change flight time of " + name, error);
+                    settings.getMessage("admin-change-failed").send(sender, "player", name);
+                    return;
+                }
+                
+                // The player may have joined meanwhile, the change went to their live data
+                Player target = Bukkit.getPlayer(uuid);
+                if (target != null) {
+                    plugin.getFlightManager().refreshCharging(target);
+                }
+                
+                String time = settings.getTimeFormatter().format(seconds);
+                switch (change) {
+                    case GIVE:
+                        settings.getMessage("admin-time-given").send(sender, "player", name, "time", time);
+                        break;
+                    case TAKE:
+                        settings.getMessage("admin-time-taken").send(sender, "player", name, "time", time, 
+                                "remaining", settings.getTimeFormatter().format(remaining));
+                        break;
+                    case SET:
+                        settings.getMessage("admin-time-set").send(sender, "player", name, "time", time);
+                        break;
+                }
+            });
+        });
+    }
+    
+    // Who is recorded in the audit ledger for a change made by the sender
+    private static UUID actorOf(CommandSender sender) {
+        return sender instanceof Player ? ((Player) sender).getUniqueId() : AuditEntry.CONSOLE;
+    }
+    
+    // Handle history command: /tempfly history <player> [page]
+    private void handleHistoryCommand(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sendUsage(sender, "/tempfly history <player> [page]");
+            return;
+        }
+        
+        AuditLedger ledger = plugin.getPlayerDataManager().getLedger();
+        if (ledger == null) {
+            plugin.getSettings().getMessage("history-disabled").send(sender);
+            return;
+        }
+        
+        Player online = Bukkit.getPlayer(args[1]);
+        UUID uuid = online != null ? online.getUniqueId() : plugin.getPlayerDataManager().getNameIndex().getUUID(args[1]);
+        if (uuid == null) {
+            plugin.getSettings().getMessage("player-not-found").send(sender);
+            return;
+        }
+        String name = online != null ? online.getName() : plugin.getPlayerDataManager().getNameIndex().getName(uuid);
+        
+        int page = 1;
+        if (args.length >= 3) {
+            try {
+                page = Math.max(1, Integer.parseInt(args[2]));
+            } catch (NumberFormatException e) {
+                sendUsage(sender, "/tempfly history <player> [page]");
+                return;
+            }
+        }
+        
+        // Reading sealed segments touches the disk, report back on the main thread
+        int pageNumber = page;
+        // Pages past the end are just empty, keep the offset from overflowing
+        int offset = (int) Math.min(Integer.MAX_VALUE, (pageNumber - 1L) * HISTORY_PAGE_SIZE);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            AuditLedger.Page result;
+            try {
+                result = ledger.query(uuid, offset, HISTORY_PAGE_SIZE);
+            } catch (IOException | IllegalStateException e) {
+                // Closed if the plugin is disabling meanwhile
+                plugin.getLogger().log(Level.SEVERE, "Failed to read flight history of " + name, e);
+                Bukkit.getScheduler().runTask(plugin, () -> 
+                        plugin.getSettings().getMessage("history-failed").send(sender, "player", name));
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> sendHistory(sender, name, pageNumber, result));
+        });
+    }
+    
+    // Show one page of a player's flight history
+    private void sendHistory(CommandSender sender, String name, int page, AuditLedger.Page result) {
+        Settings settings = plugin.getSettings();
+        if (result.getTotal() == 0) {
+            settings.getMessage("history-empty").send(sender, "player", name);
+            return;
+        }
+        
+        int pages = (result.getTotal() + HISTORY_PAGE_SIZE - 1) / HISTORY_PAGE_SIZE;
+        settings.getMessage("history-header").send(sender, 
+                "player", name, "page", page, "pages", pages, "total", result.getTotal());
+        TimeFormatter formatter = settings.getTimeFormatter();
+        for (AuditEntry entry : result.getEntries()) {
+            String actor;
+            if (entry.getActor().equals(AuditEntry.CONSOLE)) {
+                actor = "Console";
+            } else {
+                actor = plugin.getPlayerDataManager().getNameIndex().getName(entry.getActor());
+                if (actor == null) {
+                    actor = entry.getActor().toString().substring(0, 8);
+                }
+            }
+            
+            AuditCause cause = entry.getCause();
+            Component causeName = cause != null 
+                    ? settings.getUnprefixedMessage("history-cause-" + cause.getKey()).build() 
+                    : Component.text("?");
+            String delta = (entry.getDelta() < 0 ? "-" : "+") + formatter.format(Math.abs(entry.getDelta()));
+            String balance = entry.getBalance() == AuditEntry.UNKNOWN_BALANCE 
+                    ? "?" : formatter.format(entry.getBalance());
+            settings.getUnprefixedMessage("history-entry").send(sender, 
+                    "date", settings.getDateFormatter().format(Instant.ofEpochMilli(entry.getTimestamp())), 
+                    "cause", causeName, "delta", delta, "balance", balance, "actor", actor);
+        }
+        if (page < pages) {
+            settings.getUnprefixedMessage("history-next-page").send(sender, "player", name, "page", page + 1);
         }
     }
     
     // Handle reload command: /tempfly reload
     private void handleReloadCommand(CommandSender sender) {
-        // Reload config
-        plugin.reloadConfig();
+        // Reload config, swap in the new settings and restart the tasks that depend on them
+        plugin.reloadSettings();
         
         // Inform sender
-        sender.sendMessage(ChatColor.GREEN + "NusaTempFly configuration reloaded successfully!");
+        plugin.getSettings().getMessage("reload-success").send(sender);
+    }
+    
+    // Handle stats command: /tempfly stats
+    private void handleStatsCommand(CommandSender sender) {
+        PlayerDataManager playerDataManager = plugin.getPlayerDataManager();
+        AutosaveScheduler autosave = playerDataManager.getAutosaveScheduler();
+        Settings settings = plugin.getSettings();
+        
+        settings.getMessage("stats-header").send(sender);
+        OfflinePlayerDataCache offlineCache = playerDataManager.getOfflineCache();
+        settings.getUnprefixedMessage("stats-online").send(sender, "count", playerDataManager.getCachedCount());
+        settings.getUnprefixedMessage("stats-offline-cache").send(sender, 
+                "size", offlineCache.size(), "hits", offlineCache.getHits(), 
+                "misses", offlineCache.getMisses(), "evictions", offlineCache.getEvictions());
+        settings.getUnprefixedMessage("stats-pending-writes").send(sender, "count", playerDataManager.getPendingWriteCount());
+        settings.getUnprefixedMessage("stats-offline-changes").send(sender, 
+                "names", playerDataManager.getNameIndex().size(), "queued", playerDataManager.getQueuedOperationCount());
+        settings.getUnprefixedMessage("stats-last-autosave").send(sender, 
+                "records", autosave.getLastCycleFlushed(), "ticks", autosave.getLastCycleTicks());
+        settings.getUnprefixedMessage("stats-autosave-total").send(sender, 
+                "records", autosave.getTotalFlushed(), "cycles", autosave.getCompletedCycles());
+        FlightLeaderboard leaderboard = playerDataManager.getLeaderboard();
+        Component loading = leaderboard.isLoaded() ? Component.empty() : settings.getUnprefixedMessage("stats-leaderboard-loading").build();
+        settings.getUnprefixedMessage("stats-leaderboard").send(sender, 
+                "count", leaderboard.getSnapshot().size(), "loading", loading);
+        settings.getUnprefixedMessage("stats-deadlines").send(sender, 
+                "count", plugin.getFlightManager().getExpiryScheduler().getScheduledCount());
+        WorldGuardHook worldGuardHook = plugin.getWorldGuardHook();
+        RegionFlagCache regionCache = worldGuardHook != null ? worldGuardHook.getRegionCache() : null;
+        if (worldGuardHook != null && worldGuardHook.isWorldGuardEnabled()) {
+            settings.getUnprefixedMessage("stats-region-flyers").send(sender, "count", worldGuardHook.getActiveFlyerCount());
+        }
+        if (regionCache != null) {
+            settings.getUnprefixedMessage("stats-region-cache").send(sender, 
+                    "size", regionCache.size(), "hit_rate", String.format("%.1f%%", regionCache.getHitRate() * 100), 
+                    "hits", regionCache.getHits(), "misses", regionCache.getMisses(), 
+                    "boundary", regionCache.getBoundaryQueries());
+        }
+        ShardedTicker<UUID> flightTicker = plugin.getFlightManager().getFlightTicker();
+        if (flightTicker != null) {
+            settings.getUnprefixedMessage("stats-tick-accounting").send(sender, 
+                    "players", flightTicker.size(), "deferred", flightTicker.getDeferredCount(), 
+                    "total_deferred", flightTicker.getTotalDeferred());
+        }
     }
     
     // Handle toggle command: /tempfly toggle
     private void handleToggleCommand(CommandSender sender, String[] args) {
         if (!(sender instanceof Player)) {
-            sender.sendMessage(ChatColor.RED + "This command can only be used by players.");
+            plugin.getSettings().getMessage("player-only").send(sender);
             return;
         }
         
         Player player = (Player) sender;
         
-        if (!player.hasPermission("nusatempfly.use")) {
+        if (!plugin.getPermissionCache().has(player, TempFlyPermission.USE)) {
             sendNoPermissionMessage(player);
             return;
         }
         
         // Check if player has flight time or bypass permission
         if (!plugin.getPlayerDataManager().getPlayerData(player).hasFlightTimeRemaining() && 
-                !player.hasPermission("nusatempfly.bypass.timelimit")) {
-            String prefix = ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("messages.prefix"));
-            player.sendMessage(prefix + ChatColor.RED + "You don't have any flight time remaining!");
+                !plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT)) {
+            plugin.getSettings().getMessage("no-time-remaining").send(player);
             return;
         }
         
@@ -328,45 +551,35 @@ public class TempFlyCommand implements CommandExecutor, TabCompleter {
         
         if (isCurrentlyEnabled) {
             // Flight is already on - provide status info before disabling
-            String prefix = ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("messages.prefix"));
+            Settings settings = plugin.getSettings();
             
             // Show status message that flight is already active
-            player.sendMessage(prefix + ChatColor.GOLD + "TempFly is already enabled!");
+            settings.getMessage("flight-already-enabled").send(player);
             
             // Show remaining flight time
             long remainingTime = plugin.getPlayerDataManager().getRemainingFlightTime(player.getUniqueId());
-            if (!player.hasPermission("nusatempfly.bypass.timelimit")) {
-                String timeStr = timeFormatter.format(remainingTime);
-                player.sendMessage(prefix + ChatColor.YELLOW + "Remaining time: " + 
-                        ChatColor.GREEN + timeStr);
+            if (!plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT)) {
+                String timeStr = settings.getTimeFormatter().format(remainingTime);
+                settings.getMessage("time-check").send(player, "time", timeStr);
             } else {
-                player.sendMessage(prefix + ChatColor.YELLOW + "You have " + 
-                        ChatColor.GOLD + "unlimited" + ChatColor.YELLOW + " flight time.");
+                settings.getMessage("time-check-unlimited").send(player);
             }
             
             // Ask if they want to disable it
-            player.sendMessage(prefix + ChatColor.YELLOW + "Use " + 
-                    ChatColor.GOLD + "/tempfly toggle" + ChatColor.YELLOW + " again to disable flight.");
+            settings.getMessage("flight-toggle-hint").send(player);
         } else {
             // Flight is off - enable it
             boolean success = plugin.getFlightManager().enableFlight(player);
             
             if (success) {
                 // Send toggle on message
-                String message = ChatColor.translateAlternateColorCodes('&', 
-                        plugin.getConfig().getString("messages.prefix") + 
-                        plugin.getConfig().getString("messages.flight-toggle-on"));
-                player.sendMessage(message);
+                plugin.getSettings().getMessage("flight-toggle-on").send(player);
                 
                 // Also show remaining time
                 long remainingTime = plugin.getPlayerDataManager().getRemainingFlightTime(player.getUniqueId());
-                if (!player.hasPermission("nusatempfly.bypass.timelimit")) {
-                    String timeStr = timeFormatter.format(remainingTime);
-                    String timeMessage = ChatColor.translateAlternateColorCodes('&', 
-                            plugin.getConfig().getString("messages.prefix") + 
-                            plugin.getConfig().getString("messages.time-check").replace("%time%", timeStr));
-                    player.sendMessage(timeMessage);
+                if (!plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT)) {
+                    String timeStr = plugin.getSettings().getTimeFormatter().format(remainingTime);
+                    plugin.getSettings().getMessage("time-check").send(player, "time", timeStr);
                 }
             }
         }
@@ -385,10 +598,7 @@ public class TempFlyCommand implements CommandExecutor, TabCompleter {
             Player target = Bukkit.getPlayer(playerName);
             
             if (target == null) {
-                String message = ChatColor.translateAlternateColorCodes('&', 
-                        plugin.getConfig().getString("messages.prefix") + 
-                        plugin.getConfig().getString("messages.player-not-found"));
-                sender.sendMessage(message);
+                plugin.getSettings().getMessage("player-not-found").send(sender);
                 return;
             }
             
@@ -397,31 +607,27 @@ public class TempFlyCommand implements CommandExecutor, TabCompleter {
             boolean isFlightEnabled = plugin.getPlayerDataManager().isFlightEnabled(target.getUniqueId());
             
             // Send info
-            String prefix = ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("messages.prefix"));
-            sender.sendMessage(prefix + ChatColor.YELLOW + target.getName() + "'s Flight Info:");
+            Settings settings = plugin.getSettings();
+            settings.getMessage("check-header").send(sender, "player", target.getName());
             
             // Check if player has unlimited flight
-            if (target.hasPermission("nusatempfly.bypass.timelimit")) {
-                sender.sendMessage(ChatColor.YELLOW + "Remaining Time: " + 
-                        ChatColor.GOLD + "∞ (Unlimited)");
+            if (plugin.getPermissionCache().has(target, TempFlyPermission.BYPASS_TIMELIMIT)) {
+                settings.getUnprefixedMessage("check-time-unlimited").send(sender);
             } else {
-                sender.sendMessage(ChatColor.YELLOW + "Remaining Time: " + 
-                        ChatColor.GREEN + timeFormatter.format(remainingTime));
+                settings.getUnprefixedMessage("check-time").send(sender, 
+                        "time", settings.getTimeFormatter().format(remainingTime));
             }
             
-            sender.sendMessage(ChatColor.YELLOW + "Flight Enabled: " + 
-                    (isFlightEnabled ? ChatColor.GREEN + "Yes" : ChatColor.RED + "No"));
+            settings.getUnprefixedMessage(isFlightEnabled ? "check-enabled" : "check-disabled").send(sender);
             
-            if (target.hasPermission("nusatempfly.booster")) {
-                double multiplier = plugin.getConfig().getDouble("flight.booster-multiplier", 1.5);
-                sender.sendMessage(ChatColor.YELLOW + "Booster: " + 
-                        ChatColor.GREEN + "x" + multiplier);
+            if (plugin.getPermissionCache().has(target, TempFlyPermission.BOOSTER)) {
+                double multiplier = settings.getBoosterMultiplier();
+                settings.getUnprefixedMessage("check-booster").send(sender, "multiplier", multiplier);
             }
         } else {
             // Check own time
             if (!(sender instanceof Player)) {
-                sender.sendMessage(ChatColor.RED + "Usage: /tempfly check <player>");
+                sendUsage(sender, "/tempfly check <player>");
                 return;
             }
             
@@ -431,18 +637,11 @@ public class TempFlyCommand implements CommandExecutor, TabCompleter {
             long remainingTime = plugin.getPlayerDataManager().getRemainingFlightTime(player.getUniqueId());
             
             // Send message
-            if (player.hasPermission("nusatempfly.bypass.timelimit")) {
-                String message = ChatColor.translateAlternateColorCodes('&', 
-                        plugin.getConfig().getString("messages.prefix") + 
-                        "&aYou have &6∞ (Unlimited)&a flight time.");
-                player.sendMessage(message);
+            if (plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT)) {
+                plugin.getSettings().getMessage("time-check-unlimited").send(player);
             } else {
-                String time = timeFormatter.format(remainingTime);
-                String message = ChatColor.translateAlternateColorCodes('&', 
-                        plugin.getConfig().getString("messages.prefix") + 
-                        plugin.getConfig().getString("messages.time-check")
-                            .replace("%time%", time));
-                player.sendMessage(message);
+                String time = plugin.getSettings().getTimeFormatter().format(remainingTime);
+                plugin.getSettings().getMessage("time-check").send(player, "time", time);
             }
         }
     }
@@ -458,15 +657,8 @@ public class TempFlyCommand implements CommandExecutor, TabCompleter {
      * @param player The player to notify
      * @param message The message to show
      */
-    private void sendNotification(Player player, String message) {
+    private void sendNotification(Player player, Component message) {
         // Use action bar for notifications (less intrusive than chat)
-        try {
-            // Use spigot method if available (newer versions)
-            player.spigot().sendMessage(net.md_5.bungee.api.ChatMessageType.ACTION_BAR, 
-                    net.md_5.bungee.api.chat.TextComponent.fromLegacyText(message));
-        } catch (Exception e) {
-            // Fallback to title method with short duration if spigot method not available
-            player.sendTitle("", message, 5, 40, 10);
-        }
+        player.sendActionBar(message);
     }
 }
\ No newline at end of file
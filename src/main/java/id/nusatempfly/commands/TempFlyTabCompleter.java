@@ -0,0 +1,249 @@
+package id.nusatempfly.commands;
+
+import com.destroystokyo.paper.event.server.AsyncTabCompleteEvent;
+import id.nusatempfly.Plugin;
+import id.nusatempfly.config.Settings;
+import id.nusatempfly.permission.TempFlyPermission;
+import id.nusatempfly.util.PrefixTrie;
+import id.nusatempfly.util.TimeFormatter;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tab completion for /tempfly, served off the main thread through Paper's async tab complete event.
+ * Player names come from two prefix tries: online players first, then every player that ever
+ * joined from the name index, so admins can complete offline targets too. Time arguments
+ * suggest the amounts the sender used most recently before the fixed defaults.
+ * The same completions are returned by the regular tab completer when the async event is not used.
+ */
+public class TempFlyTabCompleter implements TabCompleter, Listener {
+    private static final List<String> DEFAULT_TIMES = Arrays.asList("1m", "5m", "10m", "30m", "1h", "1d");
+    private static final List<String> BULK_SELECTORS = Arrays.asList("*", "@perm:", "@world:");
+    private static final List<String> TARGET_COMMANDS = Arrays.asList("give", "take", "set", "check", "history");
+    // Commands that only accept online targets
+    private static final List<String> ONLINE_TARGET_COMMANDS = Arrays.asList("check");
+    private static final List<String> TIME_COMMANDS = Arrays.asList("give", "take", "set");
+    // Amounts remembered per sender
+    private static final int TIME_HISTORY_SIZE = 16;
+    
+    private final Plugin plugin;
+    private final List<String> adminCommands;
+    private final List<String> playerCommands;
+    private final PrefixTrie onlineNames = new PrefixTrie();
+    // Recently used amounts per sender name, lowercase
+    private final Map<String, TimeHistory> timeHistories = new ConcurrentHashMap<>();
+    
+    public TempFlyTabCompleter(Plugin plugin, List<String> adminCommands, List<String> playerCommands) {
+        this.plugin = plugin;
+        this.adminCommands = adminCommands;
+        this.playerCommands = playerCommands;
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            onlineNames.add(player.getName());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        onlineNames.add(event.getPlayer().getName());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        onlineNames.remove(event.getPlayer().getName());
+    }
+    
+    @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
+    public void onAsyncTabComplete(AsyncTabCompleteEvent event) {
+        if (event.isHandled() || !event.isCommand()) {
+            return;
+        }
+        
+        String buffer = event.getBuffer();
+        int labelEnd = buffer.indexOf(' ');
+        if (labelEnd < 0) {
+            // Still typing the command itself, the server completes that
+            return;
+        }
+        int labelStart = buffer.startsWith("/") ? 1 : 0;
+        if (!isOwnLabel(buffer.substring(labelStart, labelEnd))) {
+            return;
+        }
+        
+        String[] args = buffer.substring(labelEnd + 1).split(" ", -1);
+        event.setCompletions(complete(event.getSender(), args));
+        event.setHandled(true);
+    }
+    
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command cmd, String alias, String[] args) {
+        return complete(sender, args);
+    }
+    
+    /**
+     * Remember an amount the sender gave, took or set, for the time suggestions
+     * @param sender Command sender
+     * @param timeArg Time argument as typed
+     */
+    public void recordTime(CommandSender sender, String timeArg) {
+        if (TimeFormatter.parse(timeArg) > 0) {
+            timeHistories.computeIfAbsent(sender.getName().toLowerCase(Locale.ROOT), key -> new TimeHistory())
+                    .add(timeArg.toLowerCase(Locale.ROOT));
+        }
+    }
+    
+    private List<String> complete(CommandSender sender, String[] args) {
+        List<String> completions = new ArrayList<>();
+        // Runs off the main thread, players are answered from the permission cache
+        boolean admin = sender instanceof Player
+                ? plugin.getPermissionCache().has((Player) sender, TempFlyPermission.ADMIN)
+                : sender.hasPermission("nusatempfly.admin");
+        
+        if (args.length == 1) {
+            // First argument - show subcommands based on permissions
+            String prefix = args[0].toLowerCase(Locale.ROOT);
+            if (admin) {
+                addMatching(adminCommands, prefix, completions);
+            }
+            for (String playerCmd : playerCommands) {
+                if (playerCmd.startsWith(prefix) && !completions.contains(playerCmd)) {
+                    completions.add(playerCmd);
+                }
+            }
+        } else if (args.length == 2) {
+            // Second argument - show players for relevant commands
+            String subCommand = args[0].toLowerCase(Locale.ROOT);
+            if (admin && TARGET_COMMANDS.contains(subCommand)) {
+                if (subCommand.equals("give")) {
+                    addMatching(BULK_SELECTORS, args[1].toLowerCase(Locale.ROOT), completions);
+                }
+                completePlayerName(args[1], !ONLINE_TARGET_COMMANDS.contains(subCommand), completions);
+            }
+        } else if (args.length == 3) {
+            // Third argument - suggest time formats for relevant commands
+            String subCommand = args[0].toLowerCase(Locale.ROOT);
+            if (admin && TIME_COMMANDS.contains(subCommand)) {
+                completeTime(sender, args[2].toLowerCase(Locale.ROOT), completions);
+            }
+        }
+        
+        return completions;
+    }
+    
+    // Online players first, the remaining room goes to everyone else that ever joined
+    private void completePlayerName(String prefix, boolean offline, List<String> completions) {
+        Settings settings = plugin.getSettings();
+        int limit = settings.getTabCompleteLimit();
+        Set<String> names = new LinkedHashSet<>();
+        onlineNames.collect(prefix, limit, names);
+        if (offline && settings.isTabCompleteOffline() && names.size() < limit) {
+            // Online names come up again here, ask for enough to fill the room left after them
+            plugin.getPlayerDataManager().getNameIndex().complete(prefix, limit + names.size(), names);
+        }
+        
+        for (String name : names) {
+            if (completions.size() >= limit) {
+                break;
+            }
+            completions.add(name);
+        }
+    }
+    
+    private void completeTime(CommandSender sender, String prefix, List<String> completions) {
+        TimeHistory history = timeHistories.get(sender.getName().toLowerCase(Locale.ROOT));
+        if (history != null) {
+            for (String time : history.mostUsed(plugin.getSettings().getTabCompleteRecentTimes())) {
+                if (time.startsWith(prefix)) {
+                    completions.add(time);
+                }
+            }
+        }
+        for (String time : DEFAULT_TIMES) {
+            if (time.startsWith(prefix) && !completions.contains(time)) {
+                completions.add(time);
+            }
+        }
+    }
+    
+    private boolean isOwnLabel(String label) {
+        label = label.toLowerCase(Locale.ROOT);
+        int namespace = label.indexOf(':');
+        if (namespace >= 0) {
+            if (!label.substring(0, namespace).equals(plugin.getName().toLowerCase(Locale.ROOT))) {
+                return false;
+            }
+            label = label.substring(namespace + 1);
+        }
+        
+        Command command = plugin.getCommand("tempfly");
+        if (command == null) {
+            return false;
+        }
+        if (command.getName().equalsIgnoreCase(label)) {
+            return true;
+        }
+        for (String alias : command.getAliases()) {
+            if (alias.equalsIgnoreCase(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static void addMatching(List<String> options, String prefix, List<String> completions) {
+        for (String option : options) {
+            if (option.startsWith(prefix)) {
+                completions.add(option);
+            }
+        }
+    }
+    
+    /**
+     * The last amounts one sender used, newest last
+     */
+    private static final class TimeHistory {
+        private final String[] times = new String[TIME_HISTORY_SIZE];
+        private int next;
+        private int size;
+        
+        synchronized void add(String time) {
+            times[next] = time;
+            next = (next + 1) % times.length;
+            size = Math.min(size + 1, times.length);
+        }
+        
+        /**
+         * Get the most used amounts, ties go to the one used last
+         * @param limit Maximum number of amounts
+         * @return Amounts, most used first
+         */
+        synchronized List<String> mostUsed(int limit) {
+            // Walk from newest to oldest so the first occurrence decides between ties
+            Map<String, int[]> counts = new LinkedHashMap<>();
+            for (int i = 1; i <= size; i++) {
+                String time = times[(next - i + times.length) % times.length];
+                counts.computeIfAbsent(time, key -> new int[1])[0]++;
+            }
+            List<String> result = new ArrayList<>(counts.keySet());
+            result.sort((a, b) -> Integer.compare(counts.get(b)[0], counts.get(a)[0]));
+            return result.size() > limit ? result.subList(0, limit) : result;
+        }
+    }
+}
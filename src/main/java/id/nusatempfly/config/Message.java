@@ -0,0 +1,266 @@
+package id.nusatempfly.config;
+
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Message from the config, parsed once into Adventure components.
+ * The template is parsed with %placeholder% slots marked, then flattened into a list of
+ * styled parts where each slot remembers the style it appears in. Sending a message only
+ * wraps the values in text components and joins the parts, the template is never parsed again.
+ */
+public final class Message {
+    private static final Message EMPTY = new Message(new Component[0], new String[0], new Style[0], new int[0]);
+    // Stands in for a slot while the template is parsed, followed by SLOT_BASE + the slot number.
+    // Both are from the private use area so no syntax treats them as markup.
+    private static final char SLOT_MARKER = '\uE000';
+    private static final char SLOT_BASE = '\uE100';
+    private static final int MAX_SLOTS = 256;
+    private static final LegacyComponentSerializer LEGACY = LegacyComponentSerializer.builder()
+            .character('&')
+            .hexColors()
+            .build();
+    
+    // Pre-built parts, null where a slot goes
+    private final Component[] parts;
+    // Name and style of each slot, in order
+    private final String[] slots;
+    private final Style[] slotStyles;
+    // Index in parts of each slot
+    private final int[] slotParts;
+    // The whole message, built once when it has no slots
+    private final Component constant;
+    
+    private Message(Component[] parts, String[] slots, Style[] slotStyles, int[] slotParts) {
+        this.parts = parts;
+        this.slots = slots;
+        this.slotStyles = slotStyles;
+        this.slotParts = slotParts;
+        this.constant = slots.length == 0 ? join(parts) : null;
+    }
+    
+    /**
+     * Template syntax of the messages
+     */
+    public enum Syntax {
+        // & color codes, &#rrggbb for hex colors
+        LEGACY,
+        // MiniMessage tags such as <red> and <gradient:red:blue>
+        MINIMESSAGE;
+        
+        /**
+         * Get the syntax for a config value
+         * @param name Config value, case-insensitive
+         * @return Syntax, legacy if the name is unknown
+         */
+        public static Syntax fromName(String name) {
+            return name != null && name.toLowerCase(Locale.ROOT).replace("-", "").equals("minimessage")
+                    ? MINIMESSAGE : LEGACY;
+        }
+    }
+    
+    /**
+     * Get the message that sends nothing
+     * @return Empty message
+     */
+    public static Message empty() {
+        return EMPTY;
+    }
+    
+    /**
+     * Compile a message
+     * @param text Message text from the config, may be null
+     * @param syntax Template syntax of the text
+     * @return Compiled message, the empty message if there is no text
+     */
+    public static Message compile(String text, Syntax syntax) {
+        if (text == null || text.isEmpty()) {
+            return EMPTY;
+        }
+        
+        // Mark the slots so they survive parsing, their names are kept in order
+        List<String> slots = new ArrayList<>();
+        StringBuilder marked = new StringBuilder(text.length());
+        int literalStart = 0;
+        int index = text.indexOf('%');
+        while (index >= 0) {
+            int end = text.indexOf('%', index + 1);
+            if (end < 0) {
+                break;
+            }
+            String name = text.substring(index + 1, end);
+            if (isPlaceholderName(name) && slots.size() < MAX_SLOTS) {
+                marked.append(text, literalStart, index).append(SLOT_MARKER).append((char) (SLOT_BASE + slots.size()));
+                slots.add(name);
+                literalStart = end + 1;
+                index = text.indexOf('%', literalStart);
+            } else {
+                // Not a placeholder, the closing % may start the next one
+                index = end;
+            }
+        }
+        marked.append(text, literalStart, text.length());
+        
+        Component parsed = syntax == Syntax.MINIMESSAGE
+                ? MiniMessage.miniMessage().deserialize(marked.toString())
+                : LEGACY.deserialize(marked.toString());
+        
+        Flattener flattener = new Flattener(slots);
+        flattener.flatten(parsed, Style.empty());
+        return flattener.build();
+    }
+    
+    /**
+     * Check if this message sends nothing
+     * @return true for the empty message
+     */
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+    
+    /**
+     * Fill in the placeholders
+     * @param replacements Alternating placeholder names (without %) and values. A Component value
+     *                     keeps its own style where it has one, other values are shown as text.
+     * @return Built component, unknown placeholders are kept as they are
+     */
+    public Component build(Object... replacements) {
+        if (constant != null) {
+            return constant;
+        }
+        
+        Component[] filled = parts.clone();
+        for (int i = 0; i < slots.length; i++) {
+            Object value = null;
+            boolean found = false;
+            for (int j = 0; j + 1 < replacements.length; j += 2) {
+                if (slots[i].equals(replacements[j])) {
+                    value = replacements[j + 1];
+                    found = true;
+                    break;
+                }
+            }
+            
+            Component component;
+            if (!found) {
+                component = Component.text('%' + slots[i] + '%', slotStyles[i]);
+            } else if (value instanceof Component) {
+                component = ((Component) value).applyFallbackStyle(slotStyles[i]);
+            } else {
+                component = Component.text(String.valueOf(value), slotStyles[i]);
+            }
+            filled[slotParts[i]] = component;
+        }
+        return join(filled);
+    }
+    
+    /**
+     * Fill in the placeholders and send the message, nothing is sent for an empty message
+     * @param target Receiver of the message
+     * @param replacements Alternating placeholder names (without %) and values
+     */
+    public void send(Audience target, Object... replacements) {
+        if (this != EMPTY) {
+            target.sendMessage(build(replacements));
+        }
+    }
+    
+    private static Component join(Component[] parts) {
+        if (parts.length == 1) {
+            return parts[0];
+        }
+        TextComponent.Builder builder = Component.text();
+        for (Component part : parts) {
+            builder.append(part);
+        }
+        return builder.build();
+    }
+    
+    private static boolean isPlaceholderName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Turns a parsed component tree into a flat list of parts with their effective styles,
+     * splitting text at the slot markers. A slot inside a tag argument does not show up at all.
+     */
+    private static final class Flattener {
+        private final List<String> slotNames;
+        private final List<Component> parts = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<Style> slotStyles = new ArrayList<>();
+        private final List<Integer> slotParts = new ArrayList<>();
+        
+        Flattener(List<String> slotNames) {
+            this.slotNames = slotNames;
+        }
+        
+        void flatten(Component component, Style inherited) {
+            // Values set on the component win over the ones it inherits
+            Style style = component.style().merge(inherited, Style.Merge.Strategy.IF_ABSENT_ON_TARGET);
+            if (component instanceof TextComponent) {
+                addText(((TextComponent) component).content(), style);
+            } else {
+                // Translatable, keybind and similar components are kept whole, their children follow
+                parts.add(component.children(Collections.emptyList()).style(style));
+            }
+            for (Component child : component.children()) {
+                flatten(child, style);
+            }
+        }
+        
+        private void addText(String content, Style style) {
+            int start = 0;
+            int marker;
+            while ((marker = content.indexOf(SLOT_MARKER, start)) >= 0 && marker + 1 < content.length()) {
+                int slot = content.charAt(marker + 1) - SLOT_BASE;
+                if (slot < 0 || slot >= slotNames.size()) {
+                    // Not one of ours, keep it as text
+                    start = marker + 1;
+                    continue;
+                }
+                if (marker > start) {
+                    parts.add(Component.text(content.substring(start, marker), style));
+                }
+                names.add(slotNames.get(slot));
+                slotStyles.add(style);
+                slotParts.add(parts.size());
+                parts.add(null);
+                start = marker + 2;
+            }
+            if (start < content.length()) {
+                parts.add(Component.text(content.substring(start), style));
+            }
+        }
+        
+        Message build() {
+            if (parts.isEmpty()) {
+                parts.add(Component.empty());
+            }
+            // Slots inside tag arguments never reach the text and get no value
+            return new Message(
+                    parts.toArray(new Component[0]),
+                    names.toArray(new String[0]),
+                    slotStyles.toArray(new Style[0]),
+                    slotParts.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package id.nusatempfly.config;
+
+import id.nusatempfly.util.TimeFormatter;
+import org.bukkit.configuration.Configuration;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable, typed snapshot of config.yml.
+ * Built once when the plugin enables and replaced as a whole on reload, so hot paths read
+ * plain fields instead of looking values up in the YAML tree. Safe to share between threads.
+ */
+public final class Settings {
+    private static final String DEFAULT_DATE_FORMAT = "dd/MM/yy HH:mm";
+    
+    // Flight settings
+    private final long defaultTime;
+    private final double boosterMultiplier;
+    private final boolean disableOnExpiry;
+    private final boolean disableOnDamage;
+    private final boolean saveOnDisconnect;
+    private final boolean lazyAccounting;
+    private final long tickBudgetNanos;
+    private final long[] warningSeconds;
+    private final int bulkNotificationsPerTick;
+    
+    // Tab completion settings
+    private final int tabCompleteLimit;
+    private final boolean tabCompleteOffline;
+    private final int tabCompleteRecentTimes;
+    
+    // WorldGuard settings
+    private final boolean worldGuardEnabled;
+    private final double defaultFlightRate;
+    private final double noFlyRegionRate;
+    private final boolean notifyRegionChange;
+    private final Message noFlyRegionEnterMessage;
+    private final Message noFlyRegionExitMessage;
+    private final boolean regionCacheEnabled;
+    private final long regionCacheTtlNanos;
+    private final Set<String> regionCacheInvalidateCommands;
+    private final double regionSampleDistance;
+    private final long regionSampleIntervalNanos;
+    
+    // Permission cache settings
+    private final long permissionTtlNanos;
+    private final Set<String> permissionInvalidateCommands;
+    
+    // Autosave settings
+    private final boolean autosaveEnabled;
+    private final long autosaveIntervalTicks;
+    private final int autosaveMaxPerTick;
+    private final int autosaveMaxCheckedPerTick;
+    
+    // Compiled time-format templates
+    private final TimeFormatter timeFormatter;
+    private final DateTimeFormatter dateFormatter;
+    
+    // Messages, parsed into components and prefixed
+    private final Message.Syntax messageSyntax;
+    private final String prefix;
+    private final Map<String, Message> messages;
+    private final Map<String, Message> unprefixedMessages;
+    
+    private Settings(FileConfiguration config) {
+        this.defaultTime = config.getLong("flight.default-time", 300);
+        this.boosterMultiplier = config.getDouble("flight.booster-multiplier", 1.5);
+        this.disableOnExpiry = config.getBoolean("flight.disable-on-expiry");
+        this.disableOnDamage = config.getBoolean("flight.disable-on-damage");
+        this.saveOnDisconnect = config.getBoolean("flight.save-on-disconnect");
+        this.lazyAccounting = "lazy".equalsIgnoreCase(config.getString("flight.accounting", "tick"));
+        this.tickBudgetNanos = (long) (config.getDouble("flight.tick-budget-ms", 2.0) * 1_000_000L);
+        this.warningSeconds = config.getStringList("flight.warnings").stream()
+                .mapToLong(TimeFormatter::parse)
+                .filter(seconds -> seconds > 0)
+                .toArray();
+        this.bulkNotificationsPerTick = Math.max(1, config.getInt("flight.bulk-notifications-per-tick", 50));
+        
+        this.tabCompleteLimit = Math.max(1, config.getInt("tab-complete.max-suggestions", 50));
+        this.tabCompleteOffline = config.getBoolean("tab-complete.offline-players", true);
+        this.tabCompleteRecentTimes = Math.max(0, config.getInt("tab-complete.recent-times", 5));
+        
+        this.timeFormatter = TimeFormatter.load(config.getConfigurationSection("time-format"));
+        this.dateFormatter = loadDateFormatter(config.getString("time-format.date", DEFAULT_DATE_FORMAT));
+        this.messageSyntax = Message.Syntax.fromName(config.getString("message-format", "legacy"));
+        this.prefix = config.getString("messages.prefix", "");
+        
+        this.worldGuardEnabled = config.getBoolean("worldguard.enabled", true);
+        this.defaultFlightRate = Math.max(0, config.getDouble("worldguard.default-rate", 1.0));
+        if (!config.contains("worldguard.no-fly-region-rate", true) && config.contains("worldguard.pause-time-in-no-fly-regions", true)) {
+            // Configs from before rates existed: pausing is a rate of 0
+            this.noFlyRegionRate = config.getBoolean("worldguard.pause-time-in-no-fly-regions") ? 0 : defaultFlightRate;
+        } else {
+            this.noFlyRegionRate = Math.max(0, config.getDouble("worldguard.no-fly-region-rate", 0));
+        }
+        this.notifyRegionChange = config.getBoolean("worldguard.notify-region-change", true);
+        this.noFlyRegionEnterMessage = compilePrefixed(config.getString("worldguard.no-fly-region-enter-message"));
+        this.noFlyRegionExitMessage = compilePrefixed(config.getString("worldguard.no-fly-region-exit-message"));
+        
+        this.regionCacheEnabled = config.getBoolean("worldguard.cache.enabled", true);
+        this.regionCacheTtlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, config.getLong("worldguard.cache.ttl-seconds", 300)));
+        this.regionCacheInvalidateCommands = lowercaseSet(config.getStringList("worldguard.cache.invalidate-commands"));
+        this.regionSampleDistance = Math.max(0, config.getDouble("worldguard.tracking.sample-distance", 2.0));
+        this.regionSampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getLong("worldguard.tracking.sample-interval-ms", 250)));
+        
+        this.permissionTtlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, config.getLong("cache.permissions.ttl-seconds", 60)));
+        this.permissionInvalidateCommands = lowercaseSet(config.getStringList("cache.permissions.invalidate-commands"));
+        
+        this.autosaveEnabled = config.getBoolean("storage.autosave.enabled", true);
+        this.autosaveIntervalTicks = Math.max(1, config.getLong("storage.autosave.interval-seconds", 300)) * 20L;
+        this.autosaveMaxPerTick = Math.max(1, config.getInt("storage.autosave.max-per-tick", 50));
+        this.autosaveMaxCheckedPerTick = Math.max(autosaveMaxPerTick, config.getInt("storage.autosave.max-checked-per-tick", 2000));
+        
+        Map<String, Message> compiled = new HashMap<>();
+        Map<String, Message> unprefixed = new HashMap<>();
+        ConfigurationSection section = config.getConfigurationSection("messages");
+        if (section != null) {
+            // Keys added in newer versions are missing from old configs, their text comes from the defaults
+            Set<String> keys = new HashSet<>(section.getKeys(false));
+            Configuration defaults = config.getDefaults();
+            ConfigurationSection defaultSection = defaults != null ? defaults.getConfigurationSection("messages") : null;
+            if (defaultSection != null) {
+                keys.addAll(defaultSection.getKeys(false));
+            }
+            for (String key : keys) {
+                if (!key.equals("prefix")) {
+                    String text = section.getString(key);
+                    unprefixed.put(key, Message.compile(text, messageSyntax));
+                    compiled.put(key, compilePrefixed(text));
+                }
+            }
+        }
+        this.messages = Collections.unmodifiableMap(compiled);
+        this.unprefixedMessages = Collections.unmodifiableMap(unprefixed);
+    }
+    
+    // The prefix is parsed together with the text, so its open colors and tags carry over as before
+    private Message compilePrefixed(String text) {
+        if (text == null || text.isEmpty()) {
+            return Message.empty();
+        }
+        return Message.compile(prefix + text, messageSyntax);
+    }
+    
+    // Dates are shown in the server's time zone, an invalid pattern falls back to the default
+    private static DateTimeFormatter loadDateFormatter(String pattern) {
+        try {
+            return DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.systemDefault());
+        } catch (IllegalArgumentException e) {
+            return DateTimeFormatter.ofPattern(DEFAULT_DATE_FORMAT).withZone(ZoneId.systemDefault());
+        }
+    }
+    
+    private static Set<String> lowercaseSet(List<String> values) {
+        Set<String> set = new HashSet<>();
+        for (String value : values) {
+            set.add(value.toLowerCase(Locale.ROOT));
+        }
+        return Collections.unmodifiableSet(set);
+    }
+    
+    /**
+     * Get the formatter compiled from the time-format section
+     * @return TimeFormatter
+     */
+    public TimeFormatter getTimeFormatter() {
+        return timeFormatter;
+    }
+    
+    /**
+     * Get the formatter for dates, such as those in /tempfly history
+     * @return Date formatter in the server's time zone
+     */
+    public DateTimeFormatter getDateFormatter() {
+        return dateFormatter;
+    }
+    
+    /**
+     * Build a snapshot of the given config
+     * @param config Loaded config
+     * @return Settings
+     */
+    public static Settings load(FileConfiguration config) {
+        return new Settings(config);
+    }
+    
+    /**
+     * Get a message from the messages section, with the prefix in front
+     * @param key Key below messages
+     * @return Message, an empty message if the key does not exist or is blank
+     */
+    public Message getMessage(String key) {
+        Message message = messages.get(key);
+        return message != null ? message : Message.empty();
+    }
+    
+    /**
+     * Get a message from the messages section without the prefix, for kick screens and follow-up lines
+     * @param key Key below messages
+     * @return Message, an empty message if the key does not exist or is blank
+     */
+    public Message getUnprefixedMessage(String key) {
+        Message message = unprefixedMessages.get(key);
+        return message != null ? message : Message.empty();
+    }
+    
+    /**
+     * Get the time given by /tempfly give when no time is specified
+     * @return Time in seconds
+     */
+    public long getDefaultTime() {
+        return defaultTime;
+    }
+    
+    /**
+     * Get the multiplier applied for players with the booster permission
+     * @return Booster multiplier
+     */
+    public double getBoosterMultiplier() {
+        return boosterMultiplier;
+    }
+    
+    /**
+     * Check if flight is disabled when time runs out
+     * @return true if disabled on expiry
+     */
+    public boolean isDisableOnExpiry() {
+        return disableOnExpiry;
+    }
+    
+    /**
+     * Check if flight is disabled when a player takes damage
+     * @return true if disabled on damage
+     */
+    public boolean isDisableOnDamage() {
+        return disableOnDamage;
+    }
+    
+    /**
+     * Check if player data is saved right away when a player disconnects
+     * @return true if saved on disconnect
+     */
+    public boolean isSaveOnDisconnect() {
+        return saveOnDisconnect;
+    }
+    
+    /**
+     * Check if flight time is accounted lazily instead of every tick
+     * @return true for lazy accounting
+     */
+    public boolean isLazyAccounting() {
+        return lazyAccounting;
+    }
+    
+    /**
+     * Get the time tick accounting may spend per tick
+     * @return Budget in nanoseconds
+     */
+    public long getTickBudgetNanos() {
+        return tickBudgetNanos;
+    }
+    
+    /**
+     * Get the remaining times at which flying players are warned
+     * @return Warning thresholds in seconds
+     */
+    public long[] getWarningSeconds() {
+        return warningSeconds.clone();
+    }
+    
+    /**
+     * Get the number of players notified per tick after a bulk give
+     * @return Notifications per tick
+     */
+    public int getBulkNotificationsPerTick() {
+        return bulkNotificationsPerTick;
+    }
+    
+    /**
+     * Get the maximum number of player names suggested at once
+     * @return Suggestion limit
+     */
+    public int getTabCompleteLimit() {
+        return tabCompleteLimit;
+    }
+    
+    /**
+     * Check if offline players are suggested as command targets
+     * @return true if every player that ever joined is suggested
+     */
+    public boolean isTabCompleteOffline() {
+        return tabCompleteOffline;
+    }
+    
+    /**
+     * Get the number of recently used amounts suggested for time arguments
+     * @return Recent amount count
+     */
+    public int getTabCompleteRecentTimes() {
+        return tabCompleteRecentTimes;
+    }
+    
+    /**
+     * Check if the WorldGuard integration is enabled
+     * @return true if enabled
+     */
+    public boolean isWorldGuardEnabled() {
+        return worldGuardEnabled;
+    }
+    
+    /**
+     * Get the rate flight time is used at in regions without a tempfly-rate flag
+     * @return Seconds of flight time used per second of flight
+     */
+    public double getDefaultFlightRate() {
+        return defaultFlightRate;
+    }
+    
+    /**
+     * Get the rate flight time is used at in no-fly regions without a tempfly-rate flag
+     * @return Seconds of flight time used per second of flight, 0 pauses the time
+     */
+    public double getNoFlyRegionRate() {
+        return noFlyRegionRate;
+    }
+    
+    /**
+     * Check if players are told when they enter or leave a no-fly region
+     * @return true if notified
+     */
+    public boolean isNotifyRegionChange() {
+        return notifyRegionChange;
+    }
+    
+    /**
+     * Get the message shown when entering a no-fly region
+     * @return Prefixed message
+     */
+    public Message getNoFlyRegionEnterMessage() {
+        return noFlyRegionEnterMessage;
+    }
+    
+    /**
+     * Get the message shown when leaving a no-fly region
+     * @return Prefixed message
+     */
+    public Message getNoFlyRegionExitMessage() {
+        return noFlyRegionExitMessage;
+    }
+    
+    /**
+     * Check if tempfly-allowed verdicts are cached per chunk section
+     * @return true if the region cache is enabled
+     */
+    public boolean isRegionCacheEnabled() {
+        return regionCacheEnabled;
+    }
+    
+    /**
+     * Get how long a cached section verdict stays valid
+     * @return TTL in nanoseconds, 0 to keep verdicts until regions change
+     */
+    public long getRegionCacheTtlNanos() {
+        return regionCacheTtlNanos;
+    }
+    
+    /**
+     * Get the lowercase labels of commands that change WorldGuard regions
+     * @return Command labels
+     */
+    public Set<String> getRegionCacheInvalidateCommands() {
+        return regionCacheInvalidateCommands;
+    }
+    
+    /**
+     * Get the distance a flyer has to move before their region is checked again
+     * @return Distance in blocks
+     */
+    public double getRegionSampleDistance() {
+        return regionSampleDistance;
+    }
+    
+    /**
+     * Get the time after which a flyer who moved to another block has their region checked again
+     * @return Interval in nanoseconds
+     */
+    public long getRegionSampleIntervalNanos() {
+        return regionSampleIntervalNanos;
+    }
+    
+    /**
+     * Get how long cached permissions stay valid
+     * @return TTL in nanoseconds
+     */
+    public long getPermissionTtlNanos() {
+        return permissionTtlNanos;
+    }
+    
+    /**
+     * Get the lowercase labels of commands that change permissions
+     * @return Command labels
+     */
+    public Set<String> getPermissionInvalidateCommands() {
+        return permissionInvalidateCommands;
+    }
+    
+    /**
+     * Check if changed player data is saved periodically
+     * @return true if autosave is enabled
+     */
+    public boolean isAutosaveEnabled() {
+        return autosaveEnabled;
+    }
+    
+    /**
+     * Get the time between the start of two autosave cycles
+     * @return Interval in ticks
+     */
+    public long getAutosaveIntervalTicks() {
+        return autosaveIntervalTicks;
+    }
+    
+    /**
+     * Get the maximum number of changed players an autosave cycle queues per tick
+     * @return Saves per tick
+     */
+    public int getAutosaveMaxPerTick() {
+        return autosaveMaxPerTick;
+    }
+    
+    /**
+     * Get the maximum number of cached players an autosave cycle checks per tick, changed or not
+     * @return Checks per tick, at least the saves per tick
+     */
+    public int getAutosaveMaxCheckedPerTick() {
+        return autosaveMaxCheckedPerTick;
+    }
+}
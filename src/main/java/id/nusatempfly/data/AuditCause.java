@@ -0,0 +1,53 @@
+package id.nusatempfly.data;
+
+/**
+ * Why a player's flight time changed, as recorded in the audit ledger
+ */
+public enum AuditCause {
+    GIVE(1, "give"),
+    TAKE(2, "take"),
+    SET(3, "set"),
+    BULK_GIVE(4, "bulk-give"),
+    EXPIRED(5, "expired");
+    
+    private static final AuditCause[] BY_CODE = new AuditCause[6];
+    
+    static {
+        for (AuditCause cause : values()) {
+            BY_CODE[cause.code] = cause;
+        }
+    }
+    
+    private final byte code;
+    private final String key;
+    
+    AuditCause(int code, String key) {
+        this.code = (byte) code;
+        this.key = key;
+    }
+    
+    /**
+     * Get the code stored in ledger records, never changes between versions
+     * @return Record code
+     */
+    public byte getCode() {
+        return code;
+    }
+    
+    /**
+     * Get the key of this cause, used for its message in the config
+     * @return Config key suffix
+     */
+    public String getKey() {
+        return key;
+    }
+    
+    /**
+     * Get the cause stored with a record code
+     * @param code Record code
+     * @return Cause, or null for an unknown code
+     */
+    public static AuditCause fromCode(byte code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
@@ -0,0 +1,81 @@
+package id.nusatempfly.data;
+
+import java.util.UUID;
+
+/**
+ * One flight time change read back from the audit ledger
+ */
+public final class AuditEntry {
+    /**
+     * Actor of changes made from the console or another plugin
+     */
+    public static final UUID CONSOLE = new UUID(0, 0);
+    /**
+     * Balance recorded when the change was made while the player's data was still loading
+     */
+    public static final long UNKNOWN_BALANCE = -1;
+    
+    private final long timestamp;
+    private final UUID actor;
+    private final UUID target;
+    private final long delta;
+    private final long balance;
+    private final AuditCause cause;
+    
+    public AuditEntry(long timestamp, UUID actor, UUID target, long delta, long balance, AuditCause cause) {
+        this.timestamp = timestamp;
+        this.actor = actor;
+        this.target = target;
+        this.delta = delta;
+        this.balance = balance;
+        this.cause = cause;
+    }
+    
+    /**
+     * Get the time of the change
+     * @return Epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    /**
+     * Get who made the change
+     * @return Actor UUID, {@link #CONSOLE} for the console, the target itself for expiry
+     */
+    public UUID getActor() {
+        return actor;
+    }
+    
+    /**
+     * Get whose flight time changed
+     * @return Target UUID
+     */
+    public UUID getTarget() {
+        return target;
+    }
+    
+    /**
+     * Get the change in seconds
+     * @return Seconds added, negative if removed
+     */
+    public long getDelta() {
+        return delta;
+    }
+    
+    /**
+     * Get the remaining flight time after the change
+     * @return Seconds, or {@link #UNKNOWN_BALANCE}
+     */
+    public long getBalance() {
+        return balance;
+    }
+    
+    /**
+     * Get why the flight time changed
+     * @return Cause, null if written by a newer version
+     */
+    public AuditCause getCause() {
+        return cause;
+    }
+}
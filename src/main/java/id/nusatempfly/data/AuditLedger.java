@@ -0,0 +1,852 @@
+package id.nusatempfly.data;
+
+import id.nusatempfly.Plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only audit ledger of flight time changes, read back by /tempfly history.
+ * <p>
+ * Each record is 61 bytes: timestamp (8), actor UUID (16), target UUID (16), delta
+ * seconds (8), resulting balance (8), cause (1) and a CRC32 of the preceding bytes (4).
+ * <p>
+ * Appends only copy into a ring buffer. A background thread writes the buffer to the
+ * active segment once per flush interval. When the active segment reaches the segment
+ * size it is sealed: its records are compressed in blocks of 1024 and followed by an index
+ * listing, per player, the number of their records and the blocks holding them. Paging
+ * through a player's history reads the active segment directly and only inflates the
+ * blocks of sealed segments that hold the requested page. Sealed segments older than
+ * the retention period are deleted. A segment whose sealing fails stays readable from its raw
+ * records and sealing is retried, no further segment is sealed until it succeeds.
+ */
+public class AuditLedger implements Runnable {
+    private static final int RECORD_SIZE = 61;
+    private static final int TARGET_OFFSET = 24;
+    private static final int CHECKSUM_OFFSET = 57;
+    private static final int BLOCK_RECORDS = 1024;
+    // Longs per entry in the ring buffer: timestamp, actor, target, delta, balance, cause
+    private static final int FIELDS = 8;
+    private static final int SEGMENT_MAGIC = 0x4E544C47;
+    private static final int FOOTER_SIZE = 12;
+    private static final String ACTIVE_NAME = "active.log";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".ldg";
+    private static final String SEALING_PREFIX = "sealing-";
+    private static final String SEALING_SUFFIX = ".log";
+    
+    private final Logger logger;
+    private final File folder;
+    private final File activeFile;
+    private final long flushIntervalMillis;
+    private final long segmentBytes;
+    private final long retentionMillis;
+    
+    // Pending entries, a power-of-two ring that doubles when the writer falls behind
+    private final Object ringLock = new Object();
+    private long[] ring = new long[FIELDS * 1024];
+    private int ringHead;
+    private int ringSize;
+    
+    // Guards the files and indexes below, held by the writer and by queries
+    private final Object ioLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private long[] scratch = new long[0];
+    private FileChannel channel;
+    private int activeRecords;
+    // Record numbers in the active segment per player, in write order
+    private final Map<UUID, RecordList> activeIndex = new HashMap<>();
+    // Sealed segments, oldest first
+    private final List<Segment> segments = new ArrayList<>();
+    // Segment moved aside whose sealing failed, newer than every sealed one, or null
+    private Unsealed unsealed;
+    private int nextSegmentNumber = 1;
+    private boolean closed;
+    
+    private final Thread thread;
+    private volatile boolean running;
+    
+    public AuditLedger(Plugin plugin, File folder) {
+        this(plugin.getLogger(), folder,
+                Math.max(1, plugin.getConfig().getLong("storage.ledger.flush-interval-ms", 1000)),
+                Math.max(1, plugin.getConfig().getLong("storage.ledger.segment-size-kb", 4096)) * 1024,
+                TimeUnit.DAYS.toMillis(Math.max(0, plugin.getConfig().getLong("storage.ledger.retention-days", 0))));
+    }
+    
+    AuditLedger(Logger logger, File folder, long flushIntervalMillis, long segmentBytes, long retentionMillis) {
+        this.logger = logger;
+        this.folder = folder;
+        this.activeFile = new File(folder, ACTIVE_NAME);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.segmentBytes = segmentBytes;
+        this.retentionMillis = retentionMillis;
+        this.thread = new Thread(this, "NusaTempFly-Ledger");
+        this.thread.setDaemon(true);
+    }
+    
+    /**
+     * A page of one player's history
+     */
+    public static final class Page {
+        private final List<AuditEntry> entries;
+        private final int total;
+        
+        private Page(List<AuditEntry> entries, int total) {
+            this.entries = entries;
+            this.total = total;
+        }
+        
+        /**
+         * Get the entries on this page
+         * @return Entries, newest first
+         */
+        public List<AuditEntry> getEntries() {
+            return entries;
+        }
+        
+        /**
+         * Get the number of entries of the player in the whole ledger
+         * @return Entry count
+         */
+        public int getTotal() {
+            return total;
+        }
+    }
+    
+    /**
+     * Open the segments left from previous runs and start the writer thread
+     * @throws IOException if the ledger folder could not be read
+     */
+    public void start() throws IOException {
+        synchronized (ioLock) {
+            Files.createDirectories(folder.toPath());
+            File[] files = folder.listFiles();
+            if (files == null) {
+                throw new IOException("Cannot list " + folder);
+            }
+            
+            Map<Integer, File> segmentFiles = new HashMap<>();
+            TreeMap<Integer, File> sealingFiles = new TreeMap<>();
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(".tmp")) {
+                    // Segment whose sealing was interrupted, its sealing file is still there
+                    Files.deleteIfExists(file.toPath());
+                    continue;
+                }
+                int number = parseNumber(name, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+                if (number > 0) {
+                    segmentFiles.put(number, file);
+                }
+                number = parseNumber(name, SEALING_PREFIX, SEALING_SUFFIX);
+                if (number > 0) {
+                    sealingFiles.put(number, file);
+                }
+            }
+            
+            // Finish sealing segments interrupted by a crash or a stop, oldest first. Queries read
+            // the unsealed segment as the newest one, so only the last may stay unsealed.
+            for (Map.Entry<Integer, File> sealing : sealingFiles.entrySet()) {
+                nextSegmentNumber = Math.max(nextSegmentNumber, sealing.getKey() + 1);
+                if (!segmentFiles.containsKey(sealing.getKey())) {
+                    try {
+                        segmentFiles.put(sealing.getKey(), writeSegment(sealing.getValue(), sealing.getKey()));
+                    } catch (IOException e) {
+                        if (!sealing.getKey().equals(sealingFiles.lastKey())) {
+                            throw e;
+                        }
+                        // Readable from the raw records until the writer thread seals it
+                        logger.log(Level.WARNING, "Failed to seal ledger segment " + sealing.getKey() + ", will retry", e);
+                        unsealed = openUnsealed(sealing.getValue(), sealing.getKey());
+                        continue;
+                    }
+                }
+                Files.deleteIfExists(sealing.getValue().toPath());
+            }
+            
+            List<Integer> numbers = new ArrayList<>(segmentFiles.keySet());
+            Collections.sort(numbers);
+            for (int number : numbers) {
+                nextSegmentNumber = Math.max(nextSegmentNumber, number + 1);
+                try {
+                    segments.add(readSegment(segmentFiles.get(number)));
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Skipping unreadable ledger segment " + segmentFiles.get(number).getName(), e);
+                }
+            }
+            deleteExpiredSegments();
+            
+            channel = FileChannel.open(activeFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            recoverActive();
+        }
+        
+        running = true;
+        thread.start();
+    }
+    
+    private static int parseNumber(String name, String prefix, String suffix) {
+        if (!name.startsWith(prefix) || !name.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Index the records of the active segment, cutting off a tail torn by a crash
+     * @throws IOException if the active segment could not be read
+     */
+    private void recoverActive() throws IOException {
+        int records = indexRecords(channel, ACTIVE_NAME, activeIndex);
+        activeRecords = records;
+        long valid = (long) records * RECORD_SIZE;
+        if (channel.size() > valid) {
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+    }
+    
+    /**
+     * Index the valid records of a raw segment by player
+     * @param source Raw segment
+     * @param name File name for the log
+     * @param index Record numbers per player to fill
+     * @return Number of valid records, reading stops at the first corrupt one
+     * @throws IOException if the segment could not be read
+     */
+    private int indexRecords(FileChannel source, String name, Map<UUID, RecordList> index) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate((int) Math.min(source.size(), Integer.MAX_VALUE));
+        while (data.hasRemaining() && source.read(data, data.position()) >= 0) {
+            // Read until full
+        }
+        data.flip();
+        
+        CRC32 checksum = new CRC32();
+        int records = 0;
+        while (data.remaining() >= RECORD_SIZE) {
+            int start = records * RECORD_SIZE;
+            checksum.reset();
+            checksum.update(data.array(), start, CHECKSUM_OFFSET);
+            if ((int) checksum.getValue() != data.getInt(start + CHECKSUM_OFFSET)) {
+                logger.warning("Stopped reading " + name + " at a corrupt record (offset " + start + ")");
+                break;
+            }
+            index.computeIfAbsent(readTarget(data, start), key -> new RecordList()).add(records);
+            records++;
+            data.position(start + RECORD_SIZE);
+        }
+        return records;
+    }
+    
+    /**
+     * Open a segment whose sealing failed for reading its raw records
+     * @param file Sealing file
+     * @param number Segment number
+     * @return Unsealed segment with its index
+     * @throws IOException if the file could not be read
+     */
+    private Unsealed openUnsealed(File file, int number) throws IOException {
+        FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        Map<UUID, RecordList> index = new HashMap<>();
+        try {
+            indexRecords(source, file.getName(), index);
+        } catch (IOException e) {
+            source.close();
+            throw e;
+        }
+        return new Unsealed(file, number, source, index);
+    }
+    
+    /**
+     * Record a flight time change. Only copies into memory, safe from any thread.
+     * @param target Player whose time changed
+     * @param actor Who made the change, {@link AuditEntry#CONSOLE} for the console
+     * @param cause Why the time changed
+     * @param delta Change in seconds
+     * @param balance Remaining seconds after the change, or {@link AuditEntry#UNKNOWN_BALANCE}
+     */
+    public void append(UUID target, UUID actor, AuditCause cause, long delta, long balance) {
+        long timestamp = System.currentTimeMillis();
+        synchronized (ringLock) {
+            int capacity = ring.length / FIELDS;
+            if (ringSize == capacity) {
+                // Unroll into a ring twice the size
+                long[] larger = new long[ring.length * 2];
+                int firstPart = Math.min(ringSize, capacity - ringHead);
+                System.arraycopy(ring, ringHead * FIELDS, larger, 0, firstPart * FIELDS);
+                System.arraycopy(ring, 0, larger, firstPart * FIELDS, (ringSize - firstPart) * FIELDS);
+                ring = larger;
+                ringHead = 0;
+                capacity *= 2;
+            }
+            
+            int slot = ((ringHead + ringSize) & (capacity - 1)) * FIELDS;
+            ring[slot] = timestamp;
+            ring[slot + 1] = actor.getMostSignificantBits();
+            ring[slot + 2] = actor.getLeastSignificantBits();
+            ring[slot + 3] = target.getMostSignificantBits();
+            ring[slot + 4] = target.getLeastSignificantBits();
+            ring[slot + 5] = delta;
+            ring[slot + 6] = balance;
+            ring[slot + 7] = cause.getCode();
+            ringSize++;
+        }
+    }
+    
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                synchronized (ringLock) {
+                    ringLock.wait(flushIntervalMillis);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            
+            try {
+                synchronized (ioLock) {
+                    flush();
+                    if (unsealed != null) {
+                        completeSealing();
+                    } else if (channel.size() >= segmentBytes) {
+                        seal();
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to write audit ledger", e);
+            }
+        }
+    }
+    
+    /**
+     * Write the buffered entries to the active segment. Must hold ioLock.
+     * @throws IOException if the segment could not be written, the entries are dropped
+     */
+    private void flush() throws IOException {
+        int count;
+        synchronized (ringLock) {
+            count = ringSize;
+            if (count == 0) {
+                return;
+            }
+            if (scratch.length < count * FIELDS) {
+                scratch = new long[ring.length];
+            }
+            int capacity = ring.length / FIELDS;
+            int firstPart = Math.min(count, capacity - ringHead);
+            System.arraycopy(ring, ringHead * FIELDS, scratch, 0, firstPart * FIELDS);
+            System.arraycopy(ring, 0, scratch, firstPart * FIELDS, (count - firstPart) * FIELDS);
+            ringHead = (ringHead + count) & (capacity - 1);
+            ringSize = 0;
+        }
+        
+        ByteBuffer out = ByteBuffer.allocate(count * RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            int field = i * FIELDS;
+            int start = out.position();
+            out.putLong(scratch[field]);
+            out.putLong(scratch[field + 1]);
+            out.putLong(scratch[field + 2]);
+            out.putLong(scratch[field + 3]);
+            out.putLong(scratch[field + 4]);
+            out.putLong(scratch[field + 5]);
+            out.putLong(scratch[field + 6]);
+            out.put((byte) scratch[field + 7]);
+            crc.reset();
+            crc.update(out.array(), start, CHECKSUM_OFFSET);
+            out.putInt((int) crc.getValue());
+        }
+        out.flip();
+        
+        long start = (long) activeRecords * RECORD_SIZE;
+        try {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Keep the segment in step with its index
+            channel.truncate(start);
+            channel.position(start);
+            throw e;
+        }
+        
+        for (int i = 0; i < count; i++) {
+            int field = i * FIELDS;
+            UUID target = new UUID(scratch[field + 3], scratch[field + 4]);
+            activeIndex.computeIfAbsent(target, key -> new RecordList()).add(activeRecords++);
+        }
+    }
+    
+    /**
+     * Turn the active segment into a compressed sealed segment and start a new one. Must hold ioLock.
+     * @throws IOException if the segment could not be sealed
+     */
+    private void seal() throws IOException {
+        int number = nextSegmentNumber++;
+        File sealing = new File(folder, SEALING_PREFIX + number + SEALING_SUFFIX);
+        channel.close();
+        Files.move(activeFile.toPath(), sealing.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(activeFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        // Until the sealed segment exists its records are read from the sealing file
+        unsealed = new Unsealed(sealing, number, FileChannel.open(sealing.toPath(), StandardOpenOption.READ), 
+                new HashMap<>(activeIndex));
+        activeRecords = 0;
+        activeIndex.clear();
+        completeSealing();
+    }
+    
+    /**
+     * Compress the segment moved aside by {@link #seal()}. On failure it stays readable
+     * and the writer thread tries again. Must hold ioLock.
+     * @throws IOException if the segment could not be sealed
+     */
+    private void completeSealing() throws IOException {
+        Unsealed sealing = unsealed;
+        File sealed = writeSegment(sealing.file, sealing.number);
+        segments.add(readSegment(sealed));
+        // Sealed now, a sealing file left behind is deleted by start() since its segment exists
+        unsealed = null;
+        sealing.channel.close();
+        Files.delete(sealing.file.toPath());
+        deleteExpiredSegments();
+    }
+    
+    /**
+     * Compress a file of raw records into a sealed segment
+     * @param source Raw records, a torn tail is ignored
+     * @param number Segment number
+     * @return Segment file
+     * @throws IOException if the source could not be read or the segment written
+     */
+    private File writeSegment(File source, int number) throws IOException {
+        byte[] data = Files.readAllBytes(source.toPath());
+        int records = data.length / RECORD_SIZE;
+        ByteBuffer view = ByteBuffer.wrap(data);
+        
+        // Per player: record count and the blocks holding their records
+        Map<UUID, int[]> counts = new LinkedHashMap<>();
+        Map<UUID, RecordList> blocks = new HashMap<>();
+        for (int i = 0; i < records; i++) {
+            UUID target = readTarget(view, i * RECORD_SIZE);
+            counts.computeIfAbsent(target, key -> new int[1])[0]++;
+            RecordList targetBlocks = blocks.computeIfAbsent(target, key -> new RecordList());
+            int block = i / BLOCK_RECORDS;
+            if (targetBlocks.size == 0 || targetBlocks.get(targetBlocks.size - 1) != block) {
+                targetBlocks.add(block);
+            }
+        }
+        
+        File sealed = new File(folder, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+        File temp = new File(folder, sealed.getName() + ".tmp");
+        int blockCount = (records + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        long[] offsets = new long[blockCount + 1];
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            byte[] compressed = new byte[BLOCK_RECORDS * RECORD_SIZE + 64];
+            long position = 0;
+            try {
+                for (int block = 0; block < blockCount; block++) {
+                    offsets[block] = position;
+                    int from = block * BLOCK_RECORDS * RECORD_SIZE;
+                    int length = Math.min(BLOCK_RECORDS, records - block * BLOCK_RECORDS) * RECORD_SIZE;
+                    deflater.reset();
+                    deflater.setInput(data, from, length);
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        int written = deflater.deflate(compressed);
+                        out.write(compressed, 0, written);
+                        position += written;
+                    }
+                }
+            } finally {
+                deflater.end();
+            }
+            offsets[blockCount] = position;
+            
+            long indexOffset = position;
+            out.writeInt(records);
+            out.writeLong(records > 0 ? view.getLong(0) : 0);
+            out.writeLong(records > 0 ? view.getLong((records - 1) * RECORD_SIZE) : 0);
+            out.writeInt(blockCount);
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            out.writeInt(counts.size());
+            for (Map.Entry<UUID, int[]> entry : counts.entrySet()) {
+                RecordList targetBlocks = blocks.get(entry.getKey());
+                out.writeLong(entry.getKey().getMostSignificantBits());
+                out.writeLong(entry.getKey().getLeastSignificantBits());
+                out.writeInt(entry.getValue()[0]);
+                out.writeInt(targetBlocks.size);
+                for (int i = 0; i < targetBlocks.size; i++) {
+                    out.writeInt(targetBlocks.get(i));
+                }
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(SEGMENT_MAGIC);
+            out.flush();
+            file.getFD().sync();
+        } catch (IOException e) {
+            // A partial segment would only be deleted on the next start
+            try {
+                Files.deleteIfExists(temp.toPath());
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        Files.move(temp.toPath(), sealed.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return sealed;
+    }
+    
+    /**
+     * Read the index of a sealed segment
+     * @param file Segment file
+     * @return Segment with its index in memory
+     * @throws IOException if the segment could not be read or is not a complete segment
+     */
+    private static Segment readSegment(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            if (length < FOOTER_SIZE) {
+                throw new IOException("Segment too short");
+            }
+            raf.seek(length - FOOTER_SIZE);
+            long indexOffset = raf.readLong();
+            if (raf.readInt() != SEGMENT_MAGIC || indexOffset < 0 || indexOffset > length - FOOTER_SIZE) {
+                throw new IOException("Segment footer missing");
+            }
+            
+            raf.seek(indexOffset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(raf.getChannel())));
+            int records = in.readInt();
+            in.readLong(); // first timestamp, only needed for inspecting segments by hand
+            long lastTimestamp = in.readLong();
+            int blockCount = in.readInt();
+            long[] offsets = new long[blockCount + 1];
+            for (int i = 0; i <= blockCount; i++) {
+                offsets[i] = in.readLong();
+            }
+            int players = in.readInt();
+            Map<UUID, Postings> index = new HashMap<>(players * 2);
+            for (int i = 0; i < players; i++) {
+                UUID target = new UUID(in.readLong(), in.readLong());
+                int count = in.readInt();
+                int[] blocks = new int[in.readInt()];
+                for (int j = 0; j < blocks.length; j++) {
+                    blocks[j] = in.readInt();
+                }
+                index.put(target, new Postings(count, blocks));
+            }
+            return new Segment(file, records, lastTimestamp, offsets, index);
+        }
+    }
+    
+    /**
+     * Delete sealed segments whose newest entry is past the retention period. Must hold ioLock.
+     */
+    private void deleteExpiredSegments() {
+        if (retentionMillis <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        while (!segments.isEmpty() && segments.get(0).lastTimestamp < cutoff) {
+            Segment expired = segments.remove(0);
+            try {
+                Files.deleteIfExists(expired.file.toPath());
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to delete expired ledger segment " + expired.file.getName(), e);
+            }
+        }
+    }
+    
+    /**
+     * Read a page of a player's history, newest first. Writes the buffered entries first,
+     * so changes made just before are included. Blocks on disk reads, call off the main thread.
+     * @param target Player UUID
+     * @param offset Entries to skip from the newest
+     * @param limit Maximum number of entries
+     * @return Page of entries with the player's total entry count
+     * @throws IOException if the ledger could not be read
+     * @throws IllegalStateException if the ledger is not started or already closed
+     */
+    public Page query(UUID target, int offset, int limit) throws IOException {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Negative offset or limit");
+        }
+        synchronized (ioLock) {
+            if (channel == null || closed) {
+                throw new IllegalStateException("Audit ledger is not open");
+            }
+            if (running) {
+                flush();
+            }
+            
+            RecordList active = activeIndex.get(target);
+            RecordList aside = unsealed != null ? unsealed.index.get(target) : null;
+            int total = (active != null ? active.size : 0) + (aside != null ? aside.size : 0);
+            for (Segment segment : segments) {
+                Postings postings = segment.index.get(target);
+                if (postings != null) {
+                    total += postings.count;
+                }
+            }
+            
+            List<AuditEntry> entries = new ArrayList<>(Math.max(0, Math.min(limit, total - offset)));
+            int skip = offset;
+            if (active != null) {
+                skip = readRawEntries(channel, active, skip, limit, entries);
+            }
+            if (aside != null) {
+                skip = readRawEntries(unsealed.channel, aside, skip, limit, entries);
+            }
+            
+            for (int s = segments.size() - 1; s >= 0 && entries.size() < limit; s--) {
+                Segment segment = segments.get(s);
+                Postings postings = segment.index.get(target);
+                if (postings == null) {
+                    continue;
+                }
+                if (skip >= postings.count) {
+                    // The whole segment is on earlier pages, no need to open it
+                    skip -= postings.count;
+                    continue;
+                }
+                skip = readEntries(segment, postings, target, skip, limit, entries);
+            }
+            return new Page(entries, total);
+        }
+    }
+    
+    // Read the player's records of a raw segment newest first, returns the entries left to skip
+    private static int readRawEntries(FileChannel source, RecordList records, int skip, int limit,
+            List<AuditEntry> entries) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        for (int i = records.size - 1 - skip; i >= 0 && entries.size() < limit; i--) {
+            record.clear();
+            long position = (long) records.get(i) * RECORD_SIZE;
+            while (record.hasRemaining() && source.read(record, position + record.position()) >= 0) {
+                // Read the whole record
+            }
+            entries.add(decode(record, 0));
+        }
+        return Math.max(0, skip - records.size);
+    }
+    
+    // Inflate the player's blocks newest first until the page is full, returns the entries left to skip
+    private int readEntries(Segment segment, Postings postings, UUID target, int skip, int limit,
+            List<AuditEntry> entries) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(segment.file, "r")) {
+            Inflater inflater = new Inflater();
+            try {
+                for (int b = postings.blocks.length - 1; b >= 0 && entries.size() < limit; b--) {
+                    int block = postings.blocks[b];
+                    byte[] compressed = new byte[(int) (segment.offsets[block + 1] - segment.offsets[block])];
+                    raf.seek(segment.offsets[block]);
+                    raf.readFully(compressed);
+                    
+                    int records = Math.min(BLOCK_RECORDS, segment.records - block * BLOCK_RECORDS);
+                    byte[] raw = new byte[records * RECORD_SIZE];
+                    inflater.reset();
+                    inflater.setInput(compressed);
+                    int inflated = 0;
+                    while (inflated < raw.length && !inflater.finished()) {
+                        inflated += inflater.inflate(raw, inflated, raw.length - inflated);
+                        if (inflater.needsInput()) {
+                            break;
+                        }
+                    }
+                    if (inflated != raw.length) {
+                        throw new IOException("Truncated block " + block + " in " + segment.file.getName());
+                    }
+                    
+                    ByteBuffer view = ByteBuffer.wrap(raw);
+                    for (int i = records - 1; i >= 0 && entries.size() < limit; i--) {
+                        if (!target.equals(readTarget(view, i * RECORD_SIZE))) {
+                            continue;
+                        }
+                        if (skip > 0) {
+                            skip--;
+                        } else {
+                            entries.add(decode(view, i * RECORD_SIZE));
+                        }
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block in " + segment.file.getName(), e);
+            } finally {
+                inflater.end();
+            }
+        }
+        return skip;
+    }
+    
+    private static UUID readTarget(ByteBuffer data, int start) {
+        return new UUID(data.getLong(start + TARGET_OFFSET), data.getLong(start + TARGET_OFFSET + 8));
+    }
+    
+    private static AuditEntry decode(ByteBuffer data, int start) {
+        return new AuditEntry(
+                data.getLong(start),
+                new UUID(data.getLong(start + 8), data.getLong(start + 16)),
+                readTarget(data, start),
+                data.getLong(start + 40),
+                data.getLong(start + 48),
+                AuditCause.fromCode(data.get(start + 56)));
+    }
+    
+    /**
+     * Get the number of sealed segments
+     * @return Segment count
+     */
+    public int getSegmentCount() {
+        synchronized (ioLock) {
+            return segments.size();
+        }
+    }
+    
+    /**
+     * Stop the writer thread and write what is left. Safe to call more than once or without
+     * {@link #start()}.
+     */
+    public void close() {
+        running = false;
+        synchronized (ringLock) {
+            ringLock.notifyAll();
+        }
+        
+        try {
+            thread.join(flushIntervalMillis * 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        synchronized (ioLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (channel == null) {
+                return; // Never started
+            }
+            try {
+                flush();
+                channel.close();
+                if (unsealed != null) {
+                    // Sealed by the next start
+                    unsealed.channel.close();
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to close audit ledger", e);
+            }
+        }
+    }
+    
+    /**
+     * Growable list of ints, record numbers or block numbers
+     */
+    private static final class RecordList {
+        private int[] values = new int[4];
+        private int size;
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        
+        int get(int index) {
+            return values[index];
+        }
+    }
+    
+    /**
+     * Where one player's records are in a sealed segment
+     */
+    private static final class Postings {
+        private final int count;
+        // Blocks holding at least one of the records, ascending
+        private final int[] blocks;
+        
+        Postings(int count, int[] blocks) {
+            this.count = count;
+            this.blocks = blocks;
+        }
+    }
+    
+    /**
+     * A segment moved aside for sealing that is still read from its raw records
+     */
+    private static final class Unsealed {
+        private final File file;
+        private final int number;
+        private final FileChannel channel;
+        // Record numbers per player, in write order
+        private final Map<UUID, RecordList> index;
+        
+        Unsealed(File file, int number, FileChannel channel, Map<UUID, RecordList> index) {
+            this.file = file;
+            this.number = number;
+            this.channel = channel;
+            this.index = index;
+        }
+    }
+    
+    /**
+     * A sealed segment with its index
+     */
+    private static final class Segment {
+        private final File file;
+        private final int records;
+        private final long lastTimestamp;
+        // Start of each compressed block, followed by the end of the last one
+        private final long[] offsets;
+        private final Map<UUID, Postings> index;
+        
+        Segment(File file, int records, long lastTimestamp, long[] offsets, Map<UUID, Postings> index) {
+            this.file = file;
+            this.records = records;
+            this.lastTimestamp = lastTimestamp;
+            this.offsets = offsets;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package id.nusatempfly.data;
+
+import id.nusatempfly.Plugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+
+/**
+ * Periodically hands changed player data to the writer.
+ * Each cycle walks the cache a slice per tick, so snapshotting a large cache
+ * never lands in a single tick, and only data whose version changed is queued.
+ */
+public class AutosaveScheduler {
+    private final Plugin plugin;
+    private final PlayerDataManager playerDataManager;
+    private BukkitTask cycleTask;
+    private BukkitTask sliceTask;
+    private Deque<UUID> cycleQueue;
+    private int cycleFlushed;
+    private long cycleStartTick;
+    private long currentTick;
+    
+    // Statistics, read by /tempfly stats
+    private int lastCycleFlushed;
+    private long lastCycleTicks;
+    private long totalFlushed;
+    private long completedCycles;
+    
+    public AutosaveScheduler(Plugin plugin, PlayerDataManager playerDataManager) {
+        this.plugin = plugin;
+        this.playerDataManager = playerDataManager;
+    }
+    
+    /**
+     * Start the autosave cycle if enabled in config
+     */
+    public void start() {
+        stop();
+        
+        if (!plugin.getSettings().isAutosaveEnabled()) {
+            return;
+        }
+        
+        long interval = plugin.getSettings().getAutosaveIntervalTicks();
+        cycleTask = Bukkit.getScheduler().runTaskTimer(plugin, this::beginCycle, interval, interval);
+    }
+    
+    /**
+     * Stop the autosave cycle, dropping a cycle that is in progress
+     */
+    public void stop() {
+        if (cycleTask != null) {
+            cycleTask.cancel();
+            cycleTask = null;
+        }
+        if (sliceTask != null) {
+            sliceTask.cancel();
+            sliceTask = null;
+        }
+        cycleQueue = null;
+    }
+    
+    private void beginCycle() {
+        // Let a slow cycle finish before starting the next one
+        if (cycleQueue != null) {
+            return;
+        }
+        
+        // Write back offline lookups that have not been used for a while
+        playerDataManager.evictExpiredOfflineData();
+        
+        cycleQueue = new ArrayDeque<>(playerDataManager.getCachedPlayers());
+        cycleFlushed = 0;
+        cycleStartTick = currentTick;
+        sliceTask = Bukkit.getScheduler().runTaskTimer(plugin, this::runSlice, 0L, 1L);
+    }
+    
+    private void runSlice() {
+        currentTick++;
+        int budget = plugin.getSettings().getAutosaveMaxPerTick();
+        int checks = plugin.getSettings().getAutosaveMaxCheckedPerTick();
+        
+        // Queued records count against the save budget; unchanged ones are cheap to skip,
+        // but a large cache is still checked over several ticks
+        while (budget > 0 && checks > 0 && !cycleQueue.isEmpty()) {
+            checks--;
+            if (playerDataManager.savePlayerData(cycleQueue.poll())) {
+                cycleFlushed++;
+                budget--;
+            }
+        }
+        
+        if (cycleQueue.isEmpty()) {
+            lastCycleFlushed = cycleFlushed;
+            lastCycleTicks = currentTick - cycleStartTick;
+            totalFlushed += cycleFlushed;
+            completedCycles++;
+            
+            sliceTask.cancel();
+            sliceTask = null;
+            cycleQueue = null;
+        }
+    }
+    
+    /**
+     * Get the number of records queued by the last completed cycle
+     * @return Records flushed
+     */
+    public int getLastCycleFlushed() {
+        return lastCycleFlushed;
+    }
+    
+    /**
+     * Get how many ticks the last completed cycle was spread over
+     * @return Tick count
+     */
+    public long getLastCycleTicks() {
+        return lastCycleTicks;
+    }
+    
+    /**
+     * Get the number of records queued by all cycles since startup
+     * @return Records flushed
+     */
+    public long getTotalFlushed() {
+        return totalFlushed;
+    }
+    
+    /**
+     * Get the number of completed cycles since startup
+     * @return Cycle count
+     */
+    public long getCompletedCycles() {
+        return completedCycles;
+    }
+}
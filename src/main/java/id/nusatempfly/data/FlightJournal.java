@@ -0,0 +1,323 @@
+package id.nusatempfly.data;
+
+import id.nusatempfly.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of flight time changes, so a crash only loses the last
+ * group-commit window instead of everything since the last save.
+ * <p>
+ * Each record is 45 bytes: sequence (8), UUID (16), delta seconds (8),
+ * resulting balance (8), flags (1) and a CRC32 of the preceding bytes (4).
+ * The resulting balance makes replay idempotent: replaying a record that
+ * already reached the storage writes the same value again. Flight state changes
+ * are not journaled on their own, so the flags are not replayed.
+ * <p>
+ * Appends only copy into a memory buffer. A background thread writes the
+ * buffer and fsyncs once per group-commit interval. When the journal grows
+ * past the compaction threshold it is rolled over to a second file, cached
+ * data is saved through the writer, and the old file is deleted once that
+ * save is on disk. A compaction that does not complete in time is given up; the
+ * old file is kept and the next roll-over appends to it.
+ */
+public class FlightJournal implements Runnable {
+    private static final int RECORD_SIZE = 45;
+    private static final int CHECKSUM_OFFSET = 41;
+    private static final byte FLAG_FLIGHT_ENABLED = 1;
+    private static final long COMPACTION_TIMEOUT_MILLIS = 60_000L;
+    
+    private final Logger logger;
+    private final File activeFile;
+    private final File compactingFile;
+    private final long groupCommitMillis;
+    private final long compactThresholdBytes;
+    
+    private final Object lock = new Object();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 256);
+    private ByteBuffer spareBuffer = ByteBuffer.allocate(RECORD_SIZE * 256);
+    private long sequence;
+    
+    private final Thread thread;
+    private volatile boolean running;
+    private volatile boolean compacting;
+    // Roll-overs so far, a completion of an earlier one must not delete the merged file
+    private volatile int compactionGeneration;
+    private long compactingSince;
+    private FileChannel channel;
+    private Runnable compactionHandler;
+    
+    public FlightJournal(Plugin plugin, File folder) {
+        this(plugin.getLogger(), folder,
+                Math.max(1, plugin.getConfig().getLong("storage.journal.group-commit-ms", 100)),
+                Math.max(1, plugin.getConfig().getLong("storage.journal.compact-threshold-kb", 4096)) * 1024);
+    }
+    
+    FlightJournal(Logger logger, File folder, long groupCommitMillis, long compactThresholdBytes) {
+        this.logger = logger;
+        this.activeFile = new File(folder, "flight.journal");
+        this.compactingFile = new File(folder, "flight.journal.old");
+        this.groupCommitMillis = groupCommitMillis;
+        this.compactThresholdBytes = compactThresholdBytes;
+        this.thread = new Thread(this, "NusaTempFly-Journal");
+        this.thread.setDaemon(true);
+    }
+    
+    /**
+     * Read every journal record left from the previous run.
+     * Only the latest balance of each player is kept. Reading stops at the first
+     * torn or corrupt record, which can only be the tail of an interrupted write.
+     * @return Latest journaled balance per player in seconds, in journal order
+     * @throws IOException if a journal file could not be read
+     */
+    public Map<UUID, Long> replay() throws IOException {
+        Map<UUID, Long> latest = new LinkedHashMap<>();
+        // The compacting file is older than the active one
+        readInto(compactingFile, latest);
+        readInto(activeFile, latest);
+        return latest;
+    }
+    
+    private void readInto(File file, Map<UUID, Long> latest) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        CRC32 checksum = new CRC32();
+        
+        while (data.remaining() >= RECORD_SIZE) {
+            int start = data.position();
+            checksum.reset();
+            checksum.update(data.array(), start, CHECKSUM_OFFSET);
+            if ((int) checksum.getValue() != data.getInt(start + CHECKSUM_OFFSET)) {
+                logger.warning("Stopped reading " + file.getName() + " at a corrupt record (offset " + start + ")");
+                return;
+            }
+            
+            long recordSequence = data.getLong();
+            UUID uuid = new UUID(data.getLong(), data.getLong());
+            data.getLong(); // delta, only needed for auditing
+            long balance = data.getLong();
+            data.get(); // flags, only needed for inspecting the journal by hand
+            data.getInt();
+            
+            sequence = Math.max(sequence, recordSequence);
+            latest.remove(uuid);
+            latest.put(uuid, balance);
+        }
+    }
+    
+    /**
+     * Delete the journal files once their contents are safely in the storage
+     * @throws IOException if a file could not be deleted
+     */
+    public void reset() throws IOException {
+        Files.deleteIfExists(compactingFile.toPath());
+        Files.deleteIfExists(activeFile.toPath());
+    }
+    
+    /**
+     * Open the journal for appending and start the group-commit thread
+     * @param compactionHandler Called on the journal thread after a roll-over. It should
+     *                          call {@link #completeCompaction(int)} with the current
+     *                          {@link #getCompactionGeneration()} once all cached data
+     *                          has been written to the storage.
+     * @throws IOException if the journal file could not be opened
+     */
+    public void start(Runnable compactionHandler) throws IOException {
+        this.compactionHandler = compactionHandler;
+        this.channel = openActive();
+        this.running = true;
+        thread.start();
+    }
+    
+    private FileChannel openActive() throws IOException {
+        return FileChannel.open(activeFile.toPath(), 
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    
+    /**
+     * Record a flight time change. Only copies into memory, safe from any thread.
+     * The balance is read while holding the journal lock, so records of concurrent
+     * changes to the same player are written in the order of their balances.
+     * @param playerData Data after the change
+     * @param delta Change in seconds
+     * @return Remaining seconds that were journaled
+     */
+    public long append(PlayerData playerData, long delta) {
+        UUID uuid = playerData.getPlayerUUID();
+        synchronized (lock) {
+            long balance = playerData.getRemainingFlightTime();
+            boolean flightEnabled = playerData.isFlightEnabled();
+            if (buffer.remaining() < RECORD_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+            
+            int start = buffer.position();
+            buffer.putLong(++sequence);
+            buffer.putLong(uuid.getMostSignificantBits());
+            buffer.putLong(uuid.getLeastSignificantBits());
+            buffer.putLong(delta);
+            buffer.putLong(balance);
+            buffer.put(flightEnabled ? FLAG_FLIGHT_ENABLED : 0);
+            
+            crc.reset();
+            crc.update(buffer.array(), start, CHECKSUM_OFFSET);
+            buffer.putInt((int) crc.getValue());
+            return balance;
+        }
+    }
+    
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                synchronized (lock) {
+                    lock.wait(groupCommitMillis);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            
+            try {
+                commit();
+                if (compacting && System.currentTimeMillis() - compactingSince > COMPACTION_TIMEOUT_MILLIS) {
+                    logger.warning("Flight journal compaction did not complete, keeping the old journal");
+                    abortCompaction();
+                }
+                if (!compacting && channel.size() >= compactThresholdBytes) {
+                    rollOver();
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to write flight journal", e);
+            }
+        }
+    }
+    
+    /**
+     * Write and fsync everything appended since the last commit
+     * @throws IOException if the journal could not be written
+     */
+    private void commit() throws IOException {
+        ByteBuffer toWrite;
+        synchronized (lock) {
+            if (buffer.position() == 0) {
+                return;
+            }
+            toWrite = buffer;
+            buffer = spareBuffer;
+            spareBuffer = toWrite;
+        }
+        
+        toWrite.flip();
+        while (toWrite.hasRemaining()) {
+            channel.write(toWrite);
+        }
+        channel.force(false);
+        toWrite.clear();
+    }
+    
+    /**
+     * Move the active journal aside and ask for the cached data to be saved
+     * @throws IOException if the journal could not be rolled over
+     */
+    private void rollOver() throws IOException {
+        channel.close();
+        if (compactingFile.exists()) {
+            // Left by a compaction that was given up, still needed for replay
+            try (FileChannel source = FileChannel.open(activeFile.toPath(), StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(compactingFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long position = 0;
+                while (position < source.size()) {
+                    position += source.transferTo(position, source.size() - position, target);
+                }
+                target.force(false);
+            }
+            Files.delete(activeFile.toPath());
+        } else {
+            Files.move(activeFile.toPath(), compactingFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = openActive();
+        compactionGeneration++;
+        compactingSince = System.currentTimeMillis();
+        compacting = true;
+        compactionHandler.run();
+    }
+    
+    /**
+     * Get the number of the latest roll-over, to pass to {@link #completeCompaction(int)}
+     * @return Compaction generation
+     */
+    public int getCompactionGeneration() {
+        return compactionGeneration;
+    }
+    
+    /**
+     * Called once everything covered by the rolled-over journal is in the storage
+     * @param generation Generation of the roll-over that was saved
+     */
+    public void completeCompaction(int generation) {
+        // A late completion of a given up compaction does not cover what was appended since
+        if (!compacting || generation != compactionGeneration) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(compactingFile.toPath());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to delete compacted flight journal", e);
+        }
+        compacting = false;
+    }
+    
+    /**
+     * Give up the running compaction, because the cached data could not be saved.
+     * The old journal is kept and the next roll-over appends to it.
+     */
+    public void abortCompaction() {
+        compacting = false;
+    }
+    
+    /**
+     * Stop the group-commit thread and write what is left
+     * @param discard Delete the journal files, because the storage is known to be up to date
+     */
+    public void close(boolean discard) {
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        
+        try {
+            thread.join(groupCommitMillis * 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        try {
+            commit();
+            channel.close();
+            if (discard) {
+                reset();
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to close flight journal", e);
+        }
+    }
+}
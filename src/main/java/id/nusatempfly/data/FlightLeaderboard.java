@@ -0,0 +1,369 @@
+package id.nusatempfly.data;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Players ranked by remaining flight time, most time first.
+ * The ranking is a persistent treap with subtree sizes: an update copies the O(log n)
+ * nodes on its path and publishes a new root, so readers on any thread take the current
+ * {@link Snapshot} with a single volatile read and never see a half-applied change.
+ * Only players with time left are ranked. Rank lookups pair the snapshot with the ranked
+ * seconds of the same update through a sequence stamp, so a rank always matches the entries.
+ */
+public class FlightLeaderboard {
+    // Positions whose entries are kept in an array per snapshot, for holograms and scoreboards
+    private static final int CACHED_POSITIONS = 100;
+    // Stored players inserted per lock hold while loading, so updates are never blocked for long
+    private static final int LOAD_BATCH_SIZE = 1000;
+    // Lock-free reads tried before a rank lookup waits for the writer
+    private static final int RANK_ATTEMPTS = 8;
+    
+    private final Object writeLock = new Object();
+    // Ranked seconds per player, written under writeLock
+    private final Map<UUID, Long> rankedSeconds = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(null, 0);
+    // Odd while a writer is between changing rankedSeconds and publishing the matching snapshot
+    private volatile long stamp;
+    // Players updated while the stored data was loading, their live value wins. Null once loaded.
+    private Set<UUID> updatedWhileLoading = new HashSet<>();
+    
+    /**
+     * Set the remaining flight time of a player
+     * @param uuid Player UUID
+     * @param seconds Remaining time in seconds, 0 removes the player from the ranking
+     */
+    public void update(UUID uuid, long seconds) {
+        synchronized (writeLock) {
+            if (updatedWhileLoading != null) {
+                updatedWhileLoading.add(uuid);
+            }
+            
+            if (seconds > 0 ? Long.valueOf(seconds).equals(rankedSeconds.get(uuid)) : !rankedSeconds.containsKey(uuid)) {
+                return;
+            }
+            
+            stamp++;
+            try {
+                Long previous = seconds > 0 ? rankedSeconds.put(uuid, seconds) : rankedSeconds.remove(uuid);
+                Entry root = snapshot.root;
+                if (previous != null) {
+                    root = remove(root, uuid, previous);
+                }
+                if (seconds > 0) {
+                    root = insert(root, new Entry(uuid, seconds));
+                }
+                publish(root);
+            } finally {
+                stamp++;
+            }
+        }
+    }
+    
+    /**
+     * Add the stored players, called once with everything found in storage.
+     * Players updated in the meantime keep their live value.
+     * @param stored Stored player data
+     */
+    public void load(Collection<PlayerDataSnapshot> stored) {
+        Iterator<PlayerDataSnapshot> iterator = stored.iterator();
+        while (iterator.hasNext()) {
+            synchronized (writeLock) {
+                stamp++;
+                try {
+                    Entry root = snapshot.root;
+                    for (int i = 0; i < LOAD_BATCH_SIZE && iterator.hasNext(); i++) {
+                        PlayerDataSnapshot data = iterator.next();
+                        UUID uuid = data.getPlayerUUID();
+                        long seconds = data.getRemainingFlightTime();
+                        if (seconds <= 0 || updatedWhileLoading.contains(uuid) || rankedSeconds.containsKey(uuid)) {
+                            continue;
+                        }
+                        rankedSeconds.put(uuid, seconds);
+                        root = insert(root, new Entry(uuid, seconds));
+                    }
+                    publish(root);
+                } finally {
+                    stamp++;
+                }
+            }
+        }
+        
+        synchronized (writeLock) {
+            updatedWhileLoading = null;
+        }
+    }
+    
+    /**
+     * Check if the stored players have been loaded
+     * @return true once loaded
+     */
+    public boolean isLoaded() {
+        synchronized (writeLock) {
+            return updatedWhileLoading == null;
+        }
+    }
+    
+    /**
+     * Get the current ranking, safe to call from any thread
+     * @return Immutable snapshot
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * Get the rank of a player in the current ranking
+     * @param uuid Player UUID
+     * @return Rank starting at 1, or 0 if the player has no time left
+     */
+    public int getRank(UUID uuid) {
+        for (int attempt = 0; attempt < RANK_ATTEMPTS; attempt++) {
+            long before = stamp;
+            if ((before & 1) == 0) {
+                Snapshot current = snapshot;
+                Long seconds = rankedSeconds.get(uuid);
+                // No update started in between, so the seconds are the ones in this snapshot
+                if (stamp == before) {
+                    return rankIn(current, uuid, seconds);
+                }
+            }
+            Thread.onSpinWait();
+        }
+        synchronized (writeLock) {
+            return rankIn(snapshot, uuid, rankedSeconds.get(uuid));
+        }
+    }
+    
+    private static int rankIn(Snapshot snapshot, UUID uuid, Long seconds) {
+        return seconds == null ? 0 : countBefore(snapshot.root, uuid, seconds) + 1;
+    }
+    
+    private void publish(Entry root) {
+        snapshot = new Snapshot(root, snapshot.version + 1);
+    }
+    
+    private static int compare(UUID uuid, long seconds, Entry entry) {
+        if (seconds != entry.seconds) {
+            return seconds > entry.seconds ? -1 : 1;
+        }
+        return uuid.compareTo(entry.uuid);
+    }
+    
+    private static int sizeOf(Entry entry) {
+        return entry == null ? 0 : entry.size;
+    }
+    
+    private static Entry insert(Entry node, Entry item) {
+        if (node == null) {
+            return item;
+        }
+        if (item.priority > node.priority) {
+            Entry[] parts = split(node, item);
+            return item.with(parts[0], parts[1]);
+        }
+        if (compare(item.uuid, item.seconds, node) < 0) {
+            return node.with(insert(node.left, item), node.right);
+        }
+        return node.with(node.left, insert(node.right, item));
+    }
+    
+    // Split into the entries ranked before the key and the ones ranked after it
+    private static Entry[] split(Entry node, Entry key) {
+        if (node == null) {
+            return new Entry[2];
+        }
+        if (compare(key.uuid, key.seconds, node) > 0) {
+            Entry[] parts = split(node.right, key);
+            parts[0] = node.with(node.left, parts[0]);
+            return parts;
+        }
+        Entry[] parts = split(node.left, key);
+        parts[1] = node.with(parts[1], node.right);
+        return parts;
+    }
+    
+    private static Entry remove(Entry node, UUID uuid, long seconds) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compare(uuid, seconds, node);
+        if (comparison == 0) {
+            return merge(node.left, node.right);
+        }
+        if (comparison < 0) {
+            return node.with(remove(node.left, uuid, seconds), node.right);
+        }
+        return node.with(node.left, remove(node.right, uuid, seconds));
+    }
+    
+    private static Entry merge(Entry left, Entry right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return left.with(left.left, merge(left.right, right));
+        }
+        return right.with(merge(left, right.left), right.right);
+    }
+    
+    private static int countBefore(Entry node, UUID uuid, long seconds) {
+        int count = 0;
+        while (node != null) {
+            int comparison = compare(uuid, seconds, node);
+            if (comparison <= 0) {
+                node = node.left;
+            } else {
+                count += sizeOf(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Ranking at one point in time
+     */
+    public static final class Snapshot {
+        private final Entry root;
+        private final long version;
+        // Entries of the first positions, built on first use
+        private volatile Entry[] top;
+        
+        private Snapshot(Entry root, long version) {
+            this.root = root;
+            this.version = version;
+        }
+        
+        /**
+         * Get the entry at a position
+         * @param position Position starting at 1
+         * @return Entry, or null if fewer players are ranked
+         */
+        public Entry get(int position) {
+            if (position < 1 || position > sizeOf(root)) {
+                return null;
+            }
+            if (position <= CACHED_POSITIONS) {
+                Entry[] entries = top;
+                if (entries == null) {
+                    entries = buildTop();
+                    top = entries;
+                }
+                return entries[position - 1];
+            }
+            return nth(position - 1);
+        }
+        
+        /**
+         * Get the number of ranked players
+         * @return Ranked player count
+         */
+        public int size() {
+            return sizeOf(root);
+        }
+        
+        /**
+         * Get the version, incremented on every published change
+         * @return Snapshot version
+         */
+        public long getVersion() {
+            return version;
+        }
+        
+        private Entry nth(int index) {
+            Entry node = root;
+            while (node != null) {
+                int leftSize = sizeOf(node.left);
+                if (index < leftSize) {
+                    node = node.left;
+                } else if (index == leftSize) {
+                    return node;
+                } else {
+                    index -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+            return null;
+        }
+        
+        private Entry[] buildTop() {
+            Entry[] entries = new Entry[Math.min(CACHED_POSITIONS, sizeOf(root))];
+            fill(root, entries, 0);
+            return entries;
+        }
+        
+        // In-order walk that stops once the array is full
+        private static int fill(Entry node, Entry[] entries, int index) {
+            if (node == null || index >= entries.length) {
+                return index;
+            }
+            index = fill(node.left, entries, index);
+            if (index < entries.length) {
+                entries[index++] = node;
+            }
+            return fill(node.right, entries, index);
+        }
+    }
+    
+    /**
+     * A ranked player, also a node of the ranking tree
+     */
+    public static final class Entry {
+        private final UUID uuid;
+        private final long seconds;
+        private final int priority;
+        private final Entry left;
+        private final Entry right;
+        private final int size;
+        
+        private Entry(UUID uuid, long seconds) {
+            this(uuid, seconds, priority(uuid), null, null);
+        }
+        
+        private Entry(UUID uuid, long seconds, int priority, Entry left, Entry right) {
+            this.uuid = uuid;
+            this.seconds = seconds;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+        
+        /**
+         * Get player UUID
+         * @return Player UUID
+         */
+        public UUID getPlayerUUID() {
+            return uuid;
+        }
+        
+        /**
+         * Get remaining flight time in seconds
+         * @return Remaining flight time
+         */
+        public long getSeconds() {
+            return seconds;
+        }
+        
+        private Entry with(Entry newLeft, Entry newRight) {
+            return new Entry(uuid, seconds, priority, newLeft, newRight);
+        }
+        
+        private static int priority(UUID uuid) {
+            // Heap priority derived from the UUID, mixed so version bits don't skew it
+            long bits = uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+            bits = (bits ^ (bits >>> 33)) * 0xff51afd7ed558ccdL;
+            bits = (bits ^ (bits >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return (int) (bits ^ (bits >>> 33));
+        }
+    }
+}
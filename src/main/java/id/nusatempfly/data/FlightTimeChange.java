@@ -0,0 +1,42 @@
+package id.nusatempfly.data;
+
+/**
+ * Kinds of flight time changes made by admin commands
+ */
+public enum FlightTimeChange {
+    GIVE(AuditCause.GIVE),
+    TAKE(AuditCause.TAKE),
+    SET(AuditCause.SET);
+    
+    private final AuditCause auditCause;
+    
+    FlightTimeChange(AuditCause auditCause) {
+        this.auditCause = auditCause;
+    }
+    
+    /**
+     * Get the cause recorded in the audit ledger for this change
+     * @return Audit cause
+     */
+    public AuditCause getAuditCause() {
+        return auditCause;
+    }
+    
+    /**
+     * Apply the change to player data
+     * @param playerData Player data
+     * @param seconds Seconds to give, take or set
+     * @return Change of the remaining flight time in seconds, taken from the same atomic update
+     */
+    public long apply(PlayerData playerData, long seconds) {
+        switch (this) {
+            case GIVE:
+                playerData.addFlightTime(seconds);
+                return seconds;
+            case TAKE:
+                return -playerData.removeFlightTime(seconds);
+            default:
+                return Math.max(0, seconds) - playerData.setRemainingFlightTime(seconds);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package id.nusatempfly.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Size- and time-bounded LRU cache for data of players that are not online,
+ * such as lookups from placeholders and admin commands.
+ * Evicted entries are handed to a callback so changed data can be written back.
+ * Not thread-safe: PlayerDataManager guards every access with its cache lock.
+ * The counters are volatile so they can be read for statistics from any thread.
+ */
+public class OfflinePlayerDataCache {
+    private final int maxSize;
+    private final long expireMillis;
+    private final Consumer<PlayerData> evictionHandler;
+    
+    // Kept in recency order by re-inserting on access, so the eldest entry is the least recently used.
+    // Insertion order (not access order) lets peek() read without reordering.
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>();
+    
+    private volatile long hits;
+    private volatile long misses;
+    private volatile long evictions;
+    
+    public OfflinePlayerDataCache(int maxSize, long expireMillis, Consumer<PlayerData> evictionHandler) {
+        this.maxSize = Math.max(1, maxSize);
+        this.expireMillis = expireMillis;
+        this.evictionHandler = evictionHandler;
+    }
+    
+    /**
+     * Get cached data, marking it as recently used
+     * @param uuid Player UUID
+     * @return Cached data, or null on a miss
+     */
+    public PlayerData get(UUID uuid) {
+        Entry entry = entries.remove(uuid);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        
+        hits++;
+        entry.lastAccess = System.currentTimeMillis();
+        entries.put(uuid, entry);
+        return entry.playerData;
+    }
+    
+    /**
+     * Get cached data without touching its recency or the counters
+     * @param uuid Player UUID
+     * @return Cached data, or null if not cached
+     */
+    public PlayerData peek(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        return entry != null ? entry.playerData : null;
+    }
+    
+    /**
+     * Add data to the cache, evicting the least recently used entries if full
+     * @param playerData Data to cache
+     */
+    public void put(PlayerData playerData) {
+        entries.remove(playerData.getPlayerUUID());
+        entries.put(playerData.getPlayerUUID(), new Entry(playerData, System.currentTimeMillis()));
+        
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            evict(eldest);
+        }
+    }
+    
+    /**
+     * Remove data from the cache without evicting it, for example when the player comes online
+     * @param uuid Player UUID
+     * @return Removed data, or null if not cached
+     */
+    public PlayerData remove(UUID uuid) {
+        Entry entry = entries.remove(uuid);
+        return entry != null ? entry.playerData : null;
+    }
+    
+    /**
+     * Evict every entry that was not used within the expiry time
+     */
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - expireMillis;
+        Iterator<Entry> iterator = entries.values().iterator();
+        
+        // Entries are in recency order, so stop at the first one that is still fresh
+        while (iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            if (eldest.lastAccess > cutoff) {
+                break;
+            }
+            iterator.remove();
+            evict(eldest);
+        }
+    }
+    
+    private void evict(Entry entry) {
+        evictions++;
+        evictionHandler.accept(entry.playerData);
+    }
+    
+    /**
+     * Get the UUIDs of every cached player
+     * @return Copy of the cached UUIDs
+     */
+    public List<UUID> keys() {
+        return new ArrayList<>(entries.keySet());
+    }
+    
+    /**
+     * Get the number of cached players
+     * @return Cache size
+     */
+    public int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Get the number of lookups served from the cache
+     * @return Hit count
+     */
+    public long getHits() {
+        return hits;
+    }
+    
+    /**
+     * Get the number of lookups that had to load from storage
+     * @return Miss count
+     */
+    public long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * Get the number of entries evicted by size or age
+     * @return Eviction count
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+    
+    private static final class Entry {
+        private final PlayerData playerData;
+        private long lastAccess;
+        
+        private Entry(PlayerData playerData, long lastAccess) {
+            this.playerData = playerData;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -1,15 +1,43 @@
 package id.nusatempfly.data;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongUnaryOperator;
 
+/**
+ * Flight data of a single player.
+ * All fields are safe to read and update from any thread: time changes are
+ * lock-free atomic operations and the flight state is published through a volatile.
+ * <p>
+ * The balance is kept in milliseconds. While the player is being charged the balance
+ * is not counted down; the remaining time is computed on read from the time elapsed
+ * since charging started, and only written back when the balance is settled.
+ * Charging uses a rate, the milliseconds of balance used per millisecond of flight.
+ * <p>
+ * A placeholder cached while the stored data loads records its changes, and replays them
+ * on top of the stored data once it arrives, so a set or take is not summed with the stored time.
+ */
 public class PlayerData {
     private final UUID playerUUID;
-    private long remainingFlightTime;
-    private boolean flightEnabled;
+    private final AtomicReference<Balance> balance = new AtomicReference<>(Balance.EMPTY);
+    private volatile boolean flightEnabled;
+    
+    // Incremented on every mutation; compared with persistedVersion to know if a save is needed
+    private final AtomicLong version = new AtomicLong();
+    private volatile long persistedVersion;
+    
+    // True while this is a placeholder waiting for its stored data
+    private volatile boolean loading;
+    // Balance changes made while loading, in order, guarded by itself
+    private final List<LongUnaryOperator> changesWhileLoading = new ArrayList<>();
+    // Flight state set while loading, null if it was not changed
+    private Boolean flightEnabledWhileLoading;
     
     public PlayerData(UUID playerUUID) {
         this.playerUUID = playerUUID;
-        this.remainingFlightTime = 0;
         this.flightEnabled = false;
     }
     
@@ -22,19 +50,193 @@ public class PlayerData {
     }
     
     /**
-     * Get remaining flight time in seconds
+     * Get remaining flight time in seconds, a started second counts as a full second
      * @return Remaining flight time
      */
     public long getRemainingFlightTime() {
-        return remainingFlightTime;
+        return toSeconds(getRemainingFlightMillis());
+    }
+    
+    /**
+     * Get remaining flight time in milliseconds
+     * @return Remaining flight time
+     */
+    public long getRemainingFlightMillis() {
+        return balance.get().remainingAt(System.nanoTime());
     }
     
     /**
      * Set remaining flight time in seconds
      * @param remainingFlightTime Time in seconds
+     * @return Remaining flight time before the change
+     */
+    public long setRemainingFlightTime(long remainingFlightTime) {
+        long newMillis = Math.max(0, remainingFlightTime) * 1000L;
+        return toSeconds(change(millis -> newMillis));
+    }
+    
+    /**
+     * Atomically add flight time
+     * @param seconds Seconds to add
+     * @return Remaining flight time after adding
+     */
+    public long addFlightTime(long seconds) {
+        return toSeconds(addFlightMillis(seconds * 1000L));
+    }
+    
+    /**
+     * Atomically add flight time in milliseconds, never going below zero
+     * @param delta Milliseconds to add, negative to remove
+     * @return Remaining flight time in milliseconds after adding
+     */
+    public long addFlightMillis(long delta) {
+        LongUnaryOperator add = millis -> Math.max(0, millis + delta);
+        return add.applyAsLong(change(add));
+    }
+    
+    /**
+     * Apply a change to the settled balance, recording it for the replay while loading
+     * @param change New balance in milliseconds from the settled one
+     * @return Settled balance in milliseconds the change was applied to
+     */
+    private long change(LongUnaryOperator change) {
+        if (loading) {
+            synchronized (changesWhileLoading) {
+                // Checked again under the lock, so a change is either replayed or made after the load
+                if (loading) {
+                    changesWhileLoading.add(change);
+                    return applyChange(change);
+                }
+            }
+        }
+        return applyChange(change);
+    }
+    
+    private long applyChange(LongUnaryOperator change) {
+        long now = System.nanoTime();
+        Balance previous = balance.getAndUpdate(current -> {
+            Balance settled = current.settle(now);
+            return settled.withMillis(change.applyAsLong(settled.millis));
+        });
+        long settled = previous.settle(now).millis;
+        if (previous.remainingAt(now) != change.applyAsLong(settled)) {
+            markDirty();
+        }
+        return settled;
+    }
+    
+    /**
+     * Atomically remove flight time, never going below zero
+     * @param seconds Seconds to remove
+     * @return Seconds actually removed, less than requested if the balance ran out
+     */
+    public long removeFlightTime(long seconds) {
+        LongUnaryOperator remove = millis -> Math.max(0, millis - seconds * 1000L);
+        long before = change(remove);
+        return toSeconds(before) - toSeconds(remove.applyAsLong(before));
+    }
+    
+    /**
+     * Atomically set flight time if it still has the expected value
+     * @param expected Expected remaining time in seconds
+     * @param newTime New remaining time in seconds
+     * @return true if the value was updated
      */
-    public void setRemainingFlightTime(long remainingFlightTime) {
-        this.remainingFlightTime = Math.max(0, remainingFlightTime);
+    public boolean compareAndSetFlightTime(long expected, long newTime) {
+        if (loading) {
+            // Compared against the placeholder, the replay could not decide it the same way
+            return false;
+        }
+        long now = System.nanoTime();
+        Balance current = balance.get();
+        if (toSeconds(current.remainingAt(now)) != expected) {
+            return false;
+        }
+        if (balance.compareAndSet(current, current.settle(now).withMillis(Math.max(0, newTime) * 1000L))) {
+            markDirty();
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Start counting down the balance from now on, or switch to another rate
+     * @param rate Milliseconds of balance used per millisecond of flight
+     * @return true if charging started, false if it was already running
+     */
+    public boolean startCharging(double rate) {
+        long now = System.nanoTime();
+        Balance previous = balance.getAndUpdate(current -> {
+            if (current.charging && current.rate == rate) {
+                return current;
+            }
+            return current.settle(now).startCharging(now, rate);
+        });
+        if (previous.charging && previous.millis != previous.remainingAt(now)) {
+            markDirty();
+        }
+        return !previous.charging;
+    }
+    
+    /**
+     * Settle the balance and stop counting it down
+     * @return true if charging was running
+     */
+    public boolean stopCharging() {
+        long now = System.nanoTime();
+        Balance previous = balance.getAndUpdate(current -> current.settle(now).stopCharging());
+        if (previous.charging && previous.millis != previous.remainingAt(now)) {
+            markDirty();
+        }
+        return previous.charging;
+    }
+    
+    /**
+     * Write the time used since charging started back into the balance.
+     * Charging continues from now on if it was running.
+     * @return Seconds that were consumed, rounded to the stored resolution
+     */
+    public long settle() {
+        long now = System.nanoTime();
+        Balance previous = balance.getAndUpdate(current -> current.settle(now));
+        if (!previous.charging) {
+            return 0;
+        }
+        long remaining = previous.remainingAt(now);
+        if (previous.millis != remaining) {
+            markDirty();
+        }
+        return toSeconds(previous.millis) - toSeconds(remaining);
+    }
+    
+    /**
+     * Check if the balance is currently being counted down
+     * @return true if charging
+     */
+    public boolean isCharging() {
+        return balance.get().charging;
+    }
+    
+    /**
+     * Get the rate the balance is counted down with
+     * @return Milliseconds of balance used per millisecond of flight, 0 if not charging
+     */
+    public double getChargingRate() {
+        Balance current = balance.get();
+        return current.charging ? current.rate : 0;
+    }
+    
+    /**
+     * Get the real time until the balance runs out at the current rate
+     * @return Milliseconds until empty, Long.MAX_VALUE if the balance is not counted down
+     */
+    public long getMillisUntilEmpty() {
+        Balance current = balance.get();
+        long remaining = current.remainingAt(System.nanoTime());
+        if (!current.charging || current.rate <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return (long) Math.ceil(remaining / current.rate);
     }
     
     /**
@@ -50,7 +252,17 @@ public class PlayerData {
      * @param flightEnabled New flight state
      */
     public void setFlightEnabled(boolean flightEnabled) {
-        this.flightEnabled = flightEnabled;
+        if (loading) {
+            synchronized (changesWhileLoading) {
+                if (loading) {
+                    flightEnabledWhileLoading = flightEnabled;
+                }
+            }
+        }
+        if (this.flightEnabled != flightEnabled) {
+            this.flightEnabled = flightEnabled;
+            markDirty();
+        }
     }
     
     /**
@@ -59,8 +271,7 @@ public class PlayerData {
      * @return true if time is still remaining, false if time expired
      */
     public boolean reduceFlightTime(long seconds) {
-        remainingFlightTime = Math.max(0, remainingFlightTime - seconds);
-        return remainingFlightTime > 0;
+        return addFlightTime(-seconds) > 0;
     }
     
     /**
@@ -68,6 +279,160 @@ public class PlayerData {
      * @return true if has time remaining
      */
     public boolean hasFlightTimeRemaining() {
-        return remainingFlightTime > 0;
+        return getRemainingFlightMillis() > 0;
+    }
+    
+    /**
+     * Mark this data as changed since the last save
+     */
+    public void markDirty() {
+        version.incrementAndGet();
+    }
+    
+    /**
+     * Check if this data changed since it was last handed to the writer
+     * @return true if a save is needed
+     */
+    public boolean isDirty() {
+        return version.get() != persistedVersion;
+    }
+    
+    /**
+     * Get the mutation counter of this data
+     * @return Current version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+    
+    /**
+     * Record that the given version has been handed to the writer
+     * @param version Version that was saved
+     */
+    public void markPersisted(long version) {
+        this.persistedVersion = version;
+    }
+    
+    /**
+     * Check if this is a placeholder whose stored data is still loading
+     * @return true if still loading
+     */
+    public boolean isLoading() {
+        return loading;
+    }
+    
+    /**
+     * Mark this as a placeholder waiting for its stored data. Changes from now on are
+     * recorded until {@link #completeLoading(PlayerData)} replays them.
+     */
+    public void startLoading() {
+        synchronized (changesWhileLoading) {
+            changesWhileLoading.clear();
+            flightEnabledWhileLoading = null;
+            loading = true;
+        }
+    }
+    
+    /**
+     * Take over the stored data and replay the changes made while loading on top of it
+     * @param stored Data read from storage, or empty data if it could not be read
+     * @return true if changes were replayed, so the result differs from what is stored
+     */
+    public boolean completeLoading(PlayerData stored) {
+        synchronized (changesWhileLoading) {
+            long millis = stored.getRemainingFlightMillis();
+            for (LongUnaryOperator change : changesWhileLoading) {
+                millis = change.applyAsLong(millis);
+            }
+            long replayed = millis;
+            long now = System.nanoTime();
+            // Charging started on the placeholder continues on the loaded balance
+            balance.updateAndGet(current -> current.settle(now).withMillis(replayed));
+            flightEnabled = flightEnabledWhileLoading != null ? flightEnabledWhileLoading : stored.isFlightEnabled();
+            
+            boolean changed = !changesWhileLoading.isEmpty() || flightEnabledWhileLoading != null;
+            changesWhileLoading.clear();
+            flightEnabledWhileLoading = null;
+            loading = false;
+            markDirty();
+            return changed;
+        }
+    }
+    
+    /**
+     * Take an immutable copy of this data for saving off the main thread
+     * @return Snapshot of the current state
+     */
+    public PlayerDataSnapshot snapshot() {
+        // Read the version first: a change racing with the copy leaves the data dirty
+        long snapshotVersion = version.get();
+        return new PlayerDataSnapshot(playerUUID, getRemainingFlightTime(), flightEnabled, snapshotVersion);
+    }
+    
+    private static long toSeconds(long millis) {
+        return (millis + 999) / 1000;
+    }
+    
+    /**
+     * Immutable balance state, replaced atomically on every change
+     */
+    private static final class Balance {
+        static final Balance EMPTY = new Balance(0, false, 0, 1.0);
+        
+        // Settled balance, or the balance at chargingSince while charging
+        final long millis;
+        final boolean charging;
+        // System.nanoTime() when charging started or was last settled
+        final long chargingSince;
+        // Milliseconds of balance used per millisecond since chargingSince
+        final double rate;
+        
+        Balance(long millis, boolean charging, long chargingSince, double rate) {
+            this.millis = millis;
+            this.charging = charging;
+            this.chargingSince = chargingSince;
+            this.rate = rate;
+        }
+        
+        long remainingAt(long now) {
+            if (!charging) {
+                return millis;
+            }
+            return Math.max(0, millis - usedAt(now));
+        }
+        
+        Balance settle(long now) {
+            if (!charging) {
+                return this;
+            }
+            long used = usedAt(now);
+            if (used == 0) {
+                return this;
+            }
+            if (used >= millis) {
+                return new Balance(0, true, now, rate);
+            }
+            // Keep the remainder by advancing the start only by the time the used milliseconds took
+            return new Balance(millis - used, true, chargingSince + (long) (used * 1_000_000L / rate), rate);
+        }
+        
+        Balance withMillis(long newMillis) {
+            return new Balance(newMillis, charging, chargingSince, rate);
+        }
+        
+        Balance startCharging(long now, double newRate) {
+            return new Balance(millis, true, now, newRate);
+        }
+        
+        Balance stopCharging() {
+            return new Balance(millis, false, 0, rate);
+        }
+        
+        private long usedAt(long now) {
+            if (rate <= 0) {
+                return 0;
+            }
+            return (long) ((now - chargingSince) / 1_000_000.0 * rate);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,30 +1,229 @@
 package id.nusatempfly.data;
 
 import id.nusatempfly.Plugin;
+import id.nusatempfly.data.storage.BinaryPlayerDataStorage;
+import id.nusatempfly.data.storage.PlayerDataStorage;
+import id.nusatempfly.data.storage.SqlitePlayerDataStorage;
+import id.nusatempfly.data.storage.YamlMigrator;
+import id.nusatempfly.data.storage.YamlPlayerDataStorage;
 
-import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 public class PlayerDataManager {
+    // Staged data older than this belongs to a login that never completed
+    private static final long PRELOAD_EXPIRY_MILLIS = 60_000L;
+    
     private final Plugin plugin;
+    // Data of online players, pinned until they quit. Readable from any thread without locking.
     private final Map<UUID, PlayerData> playerDataMap;
-    private final File playerDataFolder;
+    // Data looked up for players that are not online, guarded by cacheLock
+    private final OfflinePlayerDataCache offlineCache;
+    // Guards the offline cache and moves between the two caches, so each player has one instance
+    private final Object cacheLock = new Object();
+    // Data loaded during AsyncPlayerPreLoginEvent, waiting for the join on the main thread
+    private final Map<UUID, PreloadedData> preloadedData = new ConcurrentHashMap<>();
+    private final PlayerDataStorage storage;
+    private final PlayerDataWriter writer;
+    private final FlightJournal journal;
+    // Who changed whose flight time and why, for /tempfly history
+    private final AuditLedger ledger;
+    private final AutosaveScheduler autosaveScheduler;
+    // Players ranked by flight time, for the leaderboard placeholders
+    private final FlightLeaderboard leaderboard = new FlightLeaderboard();
+    // Names of every player that joined, for commands targeting offline players
+    private final PlayerNameIndex nameIndex;
+    // Changes to players that may be offline, serialized per player
+    private final PlayerOperationQueue operationQueue;
     
-    public PlayerDataManager(Plugin plugin) {
+    public PlayerDataManager(Plugin plugin) throws IOException {
         this.plugin = plugin;
-        this.playerDataMap = new HashMap<>();
-        this.playerDataFolder = new File(plugin.getDataFolder(), "playerdata");
+        this.playerDataMap = new ConcurrentHashMap<>();
+        this.offlineCache = new OfflinePlayerDataCache(
+                plugin.getConfig().getInt("cache.offline.max-size", 1000),
+                plugin.getConfig().getLong("cache.offline.expire-seconds", 600) * 1000L,
+                this::save);
+        this.storage = createStorage();
+        this.nameIndex = new PlayerNameIndex(new File(plugin.getDataFolder(), "names.txt"));
+        if (!nameIndex.load()) {
+            // First start with the index, take the players the server already knows. That can
+            // be every player that ever joined, so not on the main thread.
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, this::seedNameIndex);
+        }
+        this.operationQueue = new PlayerOperationQueue(plugin.getConfig().getInt("storage.operation-threads", 2));
+        
+        if (plugin.getConfig().getBoolean("storage.journal.enabled", true)) {
+            this.journal = new FlightJournal(plugin, plugin.getDataFolder());
+            replayJournal();
+            this.journal.start(this::compactJournal);
+        } else {
+            this.journal = null;
+        }
+        
+        if (plugin.getConfig().getBoolean("storage.ledger.enabled", true)) {
+            this.ledger = new AuditLedger(plugin, new File(plugin.getDataFolder(), "ledger"));
+            this.ledger.start();
+        } else {
+            this.ledger = null;
+        }
+        
+        this.writer = new PlayerDataWriter(plugin, storage);
+        this.writer.start();
+        this.autosaveScheduler = new AutosaveScheduler(plugin, this);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, this::loadLeaderboard);
+    }
+    
+    /**
+     * Fill an empty name index with the players the server knows, called once off the main thread
+     */
+    private void seedNameIndex() {
+        int seeded = 0;
+        for (OfflinePlayer player : Bukkit.getOfflinePlayers()) {
+            // A player who joined meanwhile already has their current name
+            if (nameIndex.getName(player.getUniqueId()) == null) {
+                nameIndex.update(player.getUniqueId(), player.getName());
+                seeded++;
+            }
+        }
+        plugin.getLogger().info("Indexed the names of " + seeded + " known players");
+    }
+    
+    /**
+     * Apply changes journaled before a crash on top of the storage
+     * @throws IOException if the journal or storage could not be accessed
+     */
+    private void replayJournal() throws IOException {
+        Map<UUID, Long> journaled = journal.replay();
+        if (!journaled.isEmpty()) {
+            List<PlayerDataSnapshot> recovered = new ArrayList<>(journaled.size());
+            for (Map.Entry<UUID, Long> entry : journaled.entrySet()) {
+                // Only the balance is journaled, the stored flight state is the newest one known
+                PlayerDataSnapshot stored = storage.load(entry.getKey());
+                boolean flightEnabled = stored != null && stored.isFlightEnabled();
+                recovered.add(new PlayerDataSnapshot(entry.getKey(), entry.getValue(), flightEnabled, 0));
+            }
+            storage.saveBatch(recovered);
+            storage.flush();
+            plugin.getLogger().info("Recovered flight time for " + journaled.size() + " players from the journal");
+        }
+        journal.reset();
+    }
+    
+    /**
+     * Called on the journal thread after it rolled over. Saves the cached data on the
+     * main thread, then lets the journal drop its old file once the writer stored it.
+     */
+    private void compactJournal() {
+        // While disabling, shutdown flushes everything anyway
+        if (!plugin.isEnabled()) {
+            journal.abortCompaction();
+            return;
+        }
+        
+        int generation = journal.getCompactionGeneration();
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            queueDirtyPlayerData();
+            writer.flush(() -> journal.completeCompaction(generation));
+        });
+    }
+    
+    /**
+     * Record a flight time change in the journal and the leaderboard
+     * @param playerData Data after the change
+     * @param delta Change in seconds
+     */
+    private void recordChange(PlayerData playerData, long delta) {
+        // Data staged for a join is older than this change
+        preloadedData.remove(playerData.getPlayerUUID());
+        if (playerData.isLoading()) {
+            return;
+        }
+        long remaining = journal != null ? journal.append(playerData, delta) : playerData.getRemainingFlightTime();
+        leaderboard.update(playerData.getPlayerUUID(), remaining);
+    }
+    
+    /**
+     * Record a flight time change in the audit ledger
+     * @param playerData Data after the change
+     * @param actor Who made the change
+     * @param cause Why the time changed
+     * @param delta Change in seconds
+     */
+    private void audit(PlayerData playerData, UUID actor, AuditCause cause, long delta) {
+        if (ledger != null) {
+            // The balance of data still loading is only known once the stored time is added
+            long balance = playerData.isLoading() ? AuditEntry.UNKNOWN_BALANCE : playerData.getRemainingFlightTime();
+            ledger.append(playerData.getPlayerUUID(), actor, cause, delta, balance);
+        }
+    }
+    
+    /**
+     * Build the leaderboard from storage, called once off the main thread
+     */
+    private void loadLeaderboard() {
+        try {
+            List<PlayerDataSnapshot> stored = storage.findByRemainingTimeAbove(0);
+            leaderboard.load(stored);
+            plugin.getLogger().info("Loaded flight time leaderboard with " + leaderboard.getSnapshot().size() + " players");
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load the flight time leaderboard", e);
+        }
+    }
+    
+    /**
+     * Create the storage backend selected by storage.type
+     * @return Storage backend
+     * @throws IOException if the backend could not be opened
+     */
+    private PlayerDataStorage createStorage() throws IOException {
+        YamlPlayerDataStorage yamlStorage = new YamlPlayerDataStorage(new File(plugin.getDataFolder(), "playerdata"), plugin.getLogger());
+        String type = plugin.getConfig().getString("storage.type", "yaml").toLowerCase();
         
-        if (!playerDataFolder.exists()) {
-            playerDataFolder.mkdirs();
+        switch (type) {
+            case "binary":
+                PlayerDataStorage binaryStorage = new BinaryPlayerDataStorage(new File(plugin.getDataFolder(), "playerdata.dat"));
+                migrateIfEmpty(yamlStorage, binaryStorage);
+                return binaryStorage;
+            case "sqlite":
+                PlayerDataStorage sqliteStorage = new SqlitePlayerDataStorage(new File(plugin.getDataFolder(), "playerdata.db"));
+                migrateIfEmpty(yamlStorage, sqliteStorage);
+                return sqliteStorage;
+            case "yaml":
+                return yamlStorage;
+            default:
+                plugin.getLogger().warning("Unknown storage type '" + type + "', falling back to yaml");
+                return yamlStorage;
+        }
+    }
+    
+    /**
+     * Import the YAML player files into a new, still empty backend
+     * @param yamlStorage Existing YAML storage
+     * @param target Backend that was just opened
+     * @throws IOException if the target could not be written
+     */
+    private void migrateIfEmpty(YamlPlayerDataStorage yamlStorage, PlayerDataStorage target) throws IOException {
+        if (!target.isEmpty() || yamlStorage.isEmpty()) {
+            return;
         }
+        
+        plugin.getLogger().info("Migrating YAML player data to " + plugin.getConfig().getString("storage.type") + " storage...");
+        int migrated = YamlMigrator.migrate(yamlStorage, target, plugin.getLogger());
+        plugin.getLogger().info("Migrated " + migrated + " players. The playerdata folder is no longer used and can be archived.");
     }
     
     /**
@@ -33,70 +232,482 @@ public class PlayerDataManager {
      * @return PlayerData instance
      */
     public PlayerData getPlayerData(Player player) {
-        return getPlayerData(player.getUniqueId());
+        UUID uuid = player.getUniqueId();
+        PlayerData playerData = playerDataMap.get(uuid);
+        if (playerData != null) {
+            return playerData;
+        }
+        
+        // Online players are pinned, move the data out of the offline cache if it is there
+        PlayerData loaded = null;
+        while (true) {
+            synchronized (cacheLock) {
+                playerData = playerDataMap.get(uuid);
+                if (playerData == null) {
+                    playerData = offlineCache.remove(uuid);
+                }
+                if (playerData == null) {
+                    playerData = loaded;
+                }
+                if (playerData != null) {
+                    playerDataMap.put(uuid, playerData);
+                    return playerData;
+                }
+            }
+            // Never hold the lock while reading storage
+            loaded = loadPlayerData(uuid);
+        }
     }
     
     /**
-     * Get player data by UUID
+     * Get player data by UUID. Players that are not online are kept in a bounded cache.
+     * Safe to call from any thread; online players are served without locking.
      * @param uuid Player UUID
      * @return PlayerData instance
      */
     public PlayerData getPlayerData(UUID uuid) {
-        if (!playerDataMap.containsKey(uuid)) {
-            loadPlayerData(uuid);
+        PlayerData playerData = playerDataMap.get(uuid);
+        if (playerData != null) {
+            return playerData;
+        }
+        
+        synchronized (cacheLock) {
+            playerData = lookupCached(uuid, true);
+        }
+        if (playerData != null) {
+            return playerData;
+        }
+        
+        // Never hold the lock while reading storage
+        PlayerData loaded = loadPlayerData(uuid);
+        synchronized (cacheLock) {
+            // Another thread may have cached this player while we were loading
+            playerData = lookupCached(uuid, false);
+            if (playerData != null) {
+                return playerData;
+            }
+            offlineCache.put(loaded);
+            return loaded;
+        }
+    }
+    
+    /**
+     * Find cached data in either cache. Must hold cacheLock.
+     * @param uuid Player UUID
+     * @param countAccess Whether to count this as a cache lookup
+     * @return Cached data, or null if not cached
+     */
+    private PlayerData lookupCached(UUID uuid, boolean countAccess) {
+        PlayerData playerData = playerDataMap.get(uuid);
+        if (playerData == null) {
+            playerData = countAccess ? offlineCache.get(uuid) : offlineCache.peek(uuid);
+        }
+        return playerData;
+    }
+    
+    /**
+     * Pin the data of every player that is already online, for example after /reload
+     */
+    public void loadOnlinePlayers() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            nameIndex.update(player.getUniqueId(), player.getName());
+            getPlayerData(player);
         }
-        return playerDataMap.get(uuid);
     }
     
     /**
-     * Load player data from file
+     * Load player data from storage
      * @param uuid Player UUID
+     * @return Loaded data, or empty data if it could not be read
      */
-    public void loadPlayerData(UUID uuid) {
-        File playerFile = new File(playerDataFolder, uuid.toString() + ".yml");
+    private PlayerData loadPlayerData(UUID uuid) {
+        try {
+            return readPlayerData(uuid);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load player data for " + uuid, e);
+            return new PlayerData(uuid);
+        }
+    }
+    
+    /**
+     * Read player data from storage without touching the cache.
+     * Safe to call from any thread.
+     * @param uuid Player UUID
+     * @return Loaded player data
+     * @throws IOException if the stored data could not be read
+     */
+    public PlayerData readPlayerData(UUID uuid) throws IOException {
         PlayerData playerData = new PlayerData(uuid);
         
-        if (playerFile.exists()) {
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerFile);
-            playerData.setRemainingFlightTime(config.getLong("remainingFlightTime", 0));
-            playerData.setFlightEnabled(config.getBoolean("flightEnabled", false));
-            plugin.getLogger().info("Loaded player data for " + uuid);
+        // A save that has not reached the storage yet is newer than what is stored
+        PlayerDataSnapshot stored = writer.getUnwrittenSnapshot(uuid);
+        if (stored == null) {
+            stored = storage.load(uuid);
         }
         
-        playerDataMap.put(uuid, playerData);
+        if (stored != null) {
+            playerData.setRemainingFlightTime(stored.getRemainingFlightTime());
+            playerData.setFlightEnabled(stored.isFlightEnabled());
+            plugin.getLogger().fine("Loaded player data for " + uuid);
+        }
+        
+        // Freshly loaded data matches what is stored
+        playerData.markPersisted(playerData.getVersion());
+        return playerData;
     }
     
     /**
-     * Save player data to file
+     * Load player data ahead of a join and stage it for the main thread.
+     * Called from AsyncPlayerPreLoginEvent, so this never blocks a server tick.
      * @param uuid Player UUID
+     * @throws IOException if the stored data could not be read
      */
-    public void savePlayerData(UUID uuid) {
-        if (!playerDataMap.containsKey(uuid)) {
+    public void preloadPlayerData(UUID uuid) throws IOException {
+        // Drop entries for logins that never turned into a join
+        long now = System.currentTimeMillis();
+        preloadedData.values().removeIf(staged -> now - staged.stagedAt > PRELOAD_EXPIRY_MILLIS);
+        
+        // Staged before reading, a change or save while reading drops it and the join loads again
+        PreloadedData reading = new PreloadedData(null, now);
+        preloadedData.put(uuid, reading);
+        preloadedData.replace(uuid, reading, new PreloadedData(readPlayerData(uuid), now));
+    }
+    
+    /**
+     * Discard staged data for a login that was denied
+     * @param uuid Player UUID
+     */
+    public void discardPreloadedData(UUID uuid) {
+        preloadedData.remove(uuid);
+    }
+    
+    /**
+     * Move preloaded data into the cache when a player joins.
+     * If the preload did not finish, a placeholder is cached and filled in
+     * asynchronously, then the callback runs on the main thread. If that load fails
+     * the player is kicked, like a failed preload, and the placeholder is never saved.
+     * @param uuid Player UUID
+     * @param onLoaded Callback run once the data is available
+     */
+    public void promotePreloadedData(UUID uuid, Runnable onLoaded) {
+        PreloadedData staged = preloadedData.remove(uuid);
+        PlayerData placeholder;
+        
+        synchronized (cacheLock) {
+            // Data that is already cached is at least as new as anything staged
+            PlayerData cached = playerDataMap.get(uuid);
+            if (cached == null) {
+                cached = offlineCache.remove(uuid);
+            }
+            if (cached == null && staged != null) {
+                cached = staged.playerData; // Null if the preload is still reading
+            }
+            
+            if (cached != null) {
+                playerDataMap.put(uuid, cached);
+                placeholder = null;
+            } else {
+                placeholder = new PlayerData(uuid);
+                placeholder.startLoading();
+                playerDataMap.put(uuid, placeholder);
+            }
+        }
+        
+        if (placeholder == null) {
+            onLoaded.run();
             return;
         }
         
-        PlayerData playerData = playerDataMap.get(uuid);
-        File playerFile = new File(playerDataFolder, uuid.toString() + ".yml");
-        YamlConfiguration config = new YamlConfiguration();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            PlayerData loaded;
+            try {
+                loaded = readPlayerData(uuid);
+            } catch (IOException e) {
+                // The placeholder stays loading so it is never saved over the stored balance
+                plugin.getLogger().log(Level.SEVERE, "Failed to load flight data for " + uuid, e);
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    // Not if the player already quit and joined again with a new placeholder
+                    Player player = Bukkit.getPlayer(uuid);
+                    if (player != null && playerDataMap.get(uuid) == placeholder) {
+                        player.kick(plugin.getSettings().getUnprefixedMessage("data-load-failed").build());
+                    }
+                });
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                completeLoad(placeholder, loaded);
+                onLoaded.run();
+            });
+        });
+    }
+    
+    /**
+     * Fill a placeholder with loaded data, replaying the changes made while it was loading
+     * @param placeholder Placeholder that was cached on join
+     * @param loaded Data read from storage
+     */
+    private void completeLoad(PlayerData placeholder, PlayerData loaded) {
+        if (!placeholder.completeLoading(loaded)) {
+            placeholder.markPersisted(placeholder.getVersion());
+            return;
+        }
         
-        config.set("remainingFlightTime", playerData.getRemainingFlightTime());
-        config.set("flightEnabled", playerData.isFlightEnabled());
+        recordChange(placeholder, 0);
+        save(placeholder);
+    }
+    
+    /**
+     * Queue player data to be saved by the background writer.
+     * Nothing is queued if the data has not changed since the last save.
+     * @param uuid Player UUID
+     * @return true if a save was queued
+     */
+    public boolean savePlayerData(UUID uuid) {
+        PlayerData playerData;
+        synchronized (cacheLock) {
+            playerData = lookupCached(uuid, false);
+        }
+        return playerData != null && save(playerData);
+    }
+    
+    /**
+     * Queue data to be saved if it changed since the last save
+     * @param playerData Data to save
+     * @return true if a save was queued
+     */
+    private boolean save(PlayerData playerData) {
+        PlayerDataSnapshot snapshot = takeSnapshot(playerData);
+        if (snapshot == null) {
+            return false;
+        }
+        writer.enqueue(snapshot);
+        return true;
+    }
+    
+    /**
+     * Take a snapshot to save, marking the data as persisted at its version
+     * @param playerData Data to save
+     * @return Snapshot, or null if the data is loading or has not changed
+     */
+    private PlayerDataSnapshot takeSnapshot(PlayerData playerData) {
+        if (playerData.isLoading()) {
+            return null;
+        }
         
-        try {
-            config.save(playerFile);
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to save player data for " + uuid, e);
+        // Write time used by a running flight into the balance before taking the snapshot
+        settle(playerData);
+        if (!playerData.isDirty()) {
+            return null;
         }
+        
+        PlayerDataSnapshot snapshot = playerData.snapshot();
+        playerData.markPersisted(snapshot.getVersion());
+        preloadedData.remove(playerData.getPlayerUUID());
+        return snapshot;
     }
     
     /**
      * Save all player data
      */
     public void saveAllPlayerData() {
-        for (UUID uuid : playerDataMap.keySet()) {
+        queueDirtyPlayerData();
+        plugin.getLogger().info("Queued all player data for saving");
+    }
+    
+    private void queueDirtyPlayerData() {
+        for (UUID uuid : getCachedPlayers()) {
             savePlayerData(uuid);
         }
-        plugin.getLogger().info("Saved all player data");
+    }
+    
+    /**
+     * Get the UUIDs of every cached player, online and offline
+     * @return Copy of the cached UUIDs
+     */
+    public List<UUID> getCachedPlayers() {
+        List<UUID> uuids = new ArrayList<>(playerDataMap.keySet());
+        synchronized (cacheLock) {
+            uuids.addAll(offlineCache.keys());
+        }
+        return uuids;
+    }
+    
+    /**
+     * Get the number of pinned online players
+     * @return Online cache size
+     */
+    public int getCachedCount() {
+        return playerDataMap.size();
+    }
+    
+    /**
+     * Get the bounded cache of offline player data.
+     * Its counters may be read from any thread; anything else must go through this manager.
+     * @return OfflinePlayerDataCache
+     */
+    public OfflinePlayerDataCache getOfflineCache() {
+        return offlineCache;
+    }
+    
+    /**
+     * Evict offline entries that have not been used within the expiry time
+     */
+    public void evictExpiredOfflineData() {
+        synchronized (cacheLock) {
+            offlineCache.evictExpired();
+        }
+    }
+    
+    /**
+     * Get the number of saves waiting for the writer
+     * @return Pending write count
+     */
+    public int getPendingWriteCount() {
+        return writer.getPendingCount();
+    }
+    
+    /**
+     * Get the periodic autosave scheduler
+     * @return AutosaveScheduler
+     */
+    public AutosaveScheduler getAutosaveScheduler() {
+        return autosaveScheduler;
+    }
+    
+    /**
+     * Find every stored player with more than the given flight time.
+     * This reads from storage, so call it off the main thread.
+     * @param seconds Exclusive lower bound in seconds
+     * @return Matching snapshots, in no particular order
+     * @throws IOException if the storage could not be read
+     */
+    public List<PlayerDataSnapshot> findPlayersWithTimeAbove(long seconds) throws IOException {
+        return storage.findByRemainingTimeAbove(seconds);
+    }
+    
+    /**
+     * Get the players ranked by remaining flight time
+     * @return FlightLeaderboard
+     */
+    public FlightLeaderboard getLeaderboard() {
+        return leaderboard;
+    }
+    
+    /**
+     * Get the audit ledger of flight time changes
+     * @return AuditLedger, or null if disabled in the config
+     */
+    public AuditLedger getLedger() {
+        return ledger;
+    }
+    
+    /**
+     * Get the names of every player that joined
+     * @return PlayerNameIndex
+     */
+    public PlayerNameIndex getNameIndex() {
+        return nameIndex;
+    }
+    
+    /**
+     * Get the number of players with queued offline changes
+     * @return Player count
+     */
+    public int getQueuedOperationCount() {
+        return operationQueue.getQueuedCount();
+    }
+    
+    /**
+     * Change the flight time of a player who may be offline, off the main thread.
+     * Changes to the same player are applied in order. The change goes to the cached instance
+     * of the player, so a player who joins meanwhile keeps it and nothing is overwritten.
+     * The future completes on a background thread.
+     * @param uuid Player UUID
+     * @param change Kind of change
+     * @param seconds Seconds to give, take or set
+     * @param actor Who made the change, {@link AuditEntry#CONSOLE} for the console
+     * @return Future with the remaining flight time in seconds after the change,
+     *         completed exceptionally if the stored data could not be read
+     */
+    public CompletableFuture<Long> changeFlightTime(UUID uuid, FlightTimeChange change, long seconds, UUID actor) {
+        return operationQueue.submit(uuid, () -> applyChange(uuid, change, seconds, actor));
+    }
+    
+    /**
+     * Apply a change to the cached data of a player, loading it first if needed
+     * @param uuid Player UUID
+     * @param change Kind of change
+     * @param seconds Seconds to give, take or set
+     * @param actor Who made the change
+     * @return Remaining time after the change, or null to retry while a join is still loading the data
+     * @throws IOException if the stored data could not be read
+     */
+    private Long applyChange(UUID uuid, FlightTimeChange change, long seconds, UUID actor) throws IOException {
+        PlayerData loaded = null;
+        while (true) {
+            synchronized (cacheLock) {
+                PlayerData playerData = lookupCached(uuid, false);
+                if (playerData == null && loaded != null) {
+                    offlineCache.put(loaded);
+                    playerData = loaded;
+                }
+                if (playerData != null) {
+                    // The change would be replayed once the load completes, but the
+                    // remaining time reported back is only known after it
+                    if (playerData.isLoading()) {
+                        return null;
+                    }
+                    long delta = change.apply(playerData, seconds);
+                    recordChange(playerData, delta);
+                    audit(playerData, actor, change.getAuditCause(), delta);
+                    // Online players are saved by the autosave like any other change
+                    if (!playerDataMap.containsKey(uuid)) {
+                        save(playerData);
+                    }
+                    return playerData.getRemainingFlightTime();
+                }
+            }
+            // Never hold the lock while reading storage. Unlike loadPlayerData, a failed read
+            // fails the change, so empty data never overwrites the stored time.
+            loaded = readPlayerData(uuid);
+        }
+    }
+    
+    /**
+     * Stop the background writer, waiting for queued saves to reach the disk
+     */
+    public void shutdown() {
+        autosaveScheduler.stop();
+        
+        long timeout = plugin.getConfig().getLong("storage.shutdown-timeout-seconds", 10);
+        // Offline changes queue saves, let them finish before the writer stops
+        if (!operationQueue.shutdown(timeout, TimeUnit.SECONDS)) {
+            plugin.getLogger().warning("Timed out waiting for offline flight time changes, " + 
+                    operationQueue.getQueuedCount() + " players still pending");
+        }
+        nameIndex.close();
+        
+        boolean flushed = writer.shutdown(timeout, TimeUnit.SECONDS);
+        if (!flushed) {
+            plugin.getLogger().warning("Timed out waiting for player data saves, " + 
+                    writer.getPendingCount() + " still pending");
+        }
+        
+        // Keep the journal for replay on the next start unless everything reached the storage
+        if (journal != null) {
+            journal.close(flushed);
+        }
+        
+        // Closed last, the final settles and saves above still audit expiries
+        if (ledger != null) {
+            ledger.close();
+        }
+        
+        try {
+            storage.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to close player data storage", e);
+        }
     }
     
     /**
@@ -104,9 +715,12 @@ public class PlayerDataManager {
      * @param uuid Player UUID
      */
     public void unloadPlayerData(UUID uuid) {
-        if (playerDataMap.containsKey(uuid)) {
-            savePlayerData(uuid);
-            playerDataMap.remove(uuid);
+        PlayerData playerData;
+        synchronized (cacheLock) {
+            playerData = playerDataMap.remove(uuid);
+        }
+        if (playerData != null) {
+            save(playerData);
         }
     }
     
@@ -114,36 +728,133 @@ public class PlayerDataManager {
      * Add flight time to player
      * @param uuid Player UUID
      * @param seconds Seconds to add
+     * @param actor Who gave the time, {@link AuditEntry#CONSOLE} for the console
      * @return The total time after adding
      */
-    public long addFlightTime(UUID uuid, long seconds) {
+    public long addFlightTime(UUID uuid, long seconds, UUID actor) {
         PlayerData playerData = getPlayerData(uuid);
-        long newTime = playerData.getRemainingFlightTime() + seconds;
-        playerData.setRemainingFlightTime(newTime);
+        long newTime = playerData.addFlightTime(seconds);
+        recordChange(playerData, seconds);
+        audit(playerData, actor, AuditCause.GIVE, seconds);
         return newTime;
     }
     
+    /**
+     * Add the same flight time to many players in one pass, queueing their saves as one batch
+     * @param uuids Players to give time to
+     * @param seconds Seconds to add to each
+     * @param actor Who gave the time, {@link AuditEntry#CONSOLE} for the console
+     * @return Number of players changed
+     */
+    public int addFlightTime(Collection<UUID> uuids, long seconds, UUID actor) {
+        List<PlayerDataSnapshot> batch = new ArrayList<>(uuids.size());
+        for (UUID uuid : uuids) {
+            PlayerData playerData = getPlayerData(uuid);
+            playerData.addFlightTime(seconds);
+            recordChange(playerData, seconds);
+            audit(playerData, actor, AuditCause.BULK_GIVE, seconds);
+            
+            // Data still loading gets the time added on top once it is loaded, and saves itself then
+            PlayerDataSnapshot snapshot = takeSnapshot(playerData);
+            if (snapshot != null) {
+                batch.add(snapshot);
+            }
+        }
+        writer.enqueueAll(batch);
+        return uuids.size();
+    }
+    
     /**
      * Remove flight time from player
      * @param uuid Player UUID
      * @param seconds Seconds to remove
+     * @param actor Who took the time, {@link AuditEntry#CONSOLE} for the console
      * @return The total time after removing
      */
-    public long removeFlightTime(UUID uuid, long seconds) {
+    public long removeFlightTime(UUID uuid, long seconds, UUID actor) {
         PlayerData playerData = getPlayerData(uuid);
-        long newTime = Math.max(0, playerData.getRemainingFlightTime() - seconds);
-        playerData.setRemainingFlightTime(newTime);
-        return newTime;
+        // Only the time the player actually had is taken
+        long taken = playerData.removeFlightTime(seconds);
+        recordChange(playerData, -taken);
+        audit(playerData, actor, AuditCause.TAKE, playerData.isLoading() ? -seconds : -taken);
+        return playerData.getRemainingFlightTime();
     }
     
     /**
      * Set flight time for player
      * @param uuid Player UUID
      * @param seconds Seconds to set
+     * @param actor Who set the time, {@link AuditEntry#CONSOLE} for the console
      */
-    public void setFlightTime(UUID uuid, long seconds) {
+    public void setFlightTime(UUID uuid, long seconds, UUID actor) {
         PlayerData playerData = getPlayerData(uuid);
-        playerData.setRemainingFlightTime(seconds);
+        long delta = Math.max(0, seconds) - playerData.setRemainingFlightTime(seconds);
+        recordChange(playerData, delta);
+        audit(playerData, actor, AuditCause.SET, delta);
+    }
+    
+    /**
+     * Consume flight time while a player is flying
+     * @param playerData Player data
+     * @param seconds Seconds consumed
+     * @return true if time is still remaining, false if time expired
+     */
+    public boolean consumeFlightTime(PlayerData playerData, long seconds) {
+        return consumeFlightMillis(playerData, seconds * 1000L);
+    }
+    
+    /**
+     * Consume flight time in milliseconds, journaled at whole-second resolution
+     * @param playerData Player data
+     * @param millis Milliseconds to consume
+     * @return true if time is still remaining
+     */
+    public boolean consumeFlightMillis(PlayerData playerData, long millis) {
+        long oldTime = playerData.getRemainingFlightTime();
+        boolean hasTimeRemaining = playerData.addFlightMillis(-millis) > 0;
+        recordChange(playerData, playerData.getRemainingFlightTime() - oldTime);
+        auditExpiry(playerData, oldTime);
+        return hasTimeRemaining;
+    }
+    
+    /**
+     * Start counting down a player's balance lazily, used by the lazy accounting mode.
+     * Time used at a previous rate is settled first.
+     * @param playerData Player data
+     * @param rate Milliseconds of balance used per millisecond of flight
+     */
+    public void startCharging(PlayerData playerData, double rate) {
+        settle(playerData);
+        playerData.startCharging(rate);
+    }
+    
+    /**
+     * Settle a player's balance and stop counting it down
+     * @param playerData Player data
+     */
+    public void stopCharging(PlayerData playerData) {
+        settle(playerData);
+        playerData.stopCharging();
+    }
+    
+    /**
+     * Write the time used since charging started back into the balance
+     * @param playerData Player data
+     */
+    public void settle(PlayerData playerData) {
+        long consumed = playerData.settle();
+        if (consumed != 0) {
+            recordChange(playerData, -consumed);
+            auditExpiry(playerData, playerData.getRemainingFlightTime() + consumed);
+        }
+    }
+    
+    // Time used while flying is not audited, except the use that runs the balance out
+    private void auditExpiry(PlayerData playerData, long oldTime) {
+        long newTime = playerData.getRemainingFlightTime();
+        if (oldTime > 0 && newTime <= 0) {
+            audit(playerData, playerData.getPlayerUUID(), AuditCause.EXPIRED, newTime - oldTime);
+        }
     }
     
     /**
@@ -172,4 +883,18 @@ public class PlayerDataManager {
     public boolean isFlightEnabled(UUID uuid) {
         return getPlayerData(uuid).isFlightEnabled();
     }
-}
\ No newline at end of file
+    
+    /**
+     * Player data staged by a preload, with the time it was staged.
+     * Changes and saves of the player drop it, since it no longer matches.
+     */
+    private static final class PreloadedData {
+        private final PlayerData playerData;
+        private final long stagedAt;
+        
+        private PreloadedData(PlayerData playerData, long stagedAt) {
+            this.playerData = playerData;
+            this.stagedAt = stagedAt;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package id.nusatempfly.data;
+
+import java.util.UUID;
+
+/**
+ * Immutable copy of a player's data, safe to hand to the background writer
+ */
+public final class PlayerDataSnapshot {
+    private final UUID playerUUID;
+    private final long remainingFlightTime;
+    private final boolean flightEnabled;
+    private final long version;
+    
+    public PlayerDataSnapshot(UUID playerUUID, long remainingFlightTime, boolean flightEnabled, long version) {
+        this.playerUUID = playerUUID;
+        this.remainingFlightTime = remainingFlightTime;
+        this.flightEnabled = flightEnabled;
+        this.version = version;
+    }
+    
+    /**
+     * Get player UUID
+     * @return Player UUID
+     */
+    public UUID getPlayerUUID() {
+        return playerUUID;
+    }
+    
+    /**
+     * Get remaining flight time in seconds
+     * @return Remaining flight time
+     */
+    public long getRemainingFlightTime() {
+        return remainingFlightTime;
+    }
+    
+    /**
+     * Check if flight was enabled
+     * @return true if flight was enabled
+     */
+    public boolean isFlightEnabled() {
+        return flightEnabled;
+    }
+    
+    /**
+     * Get the version of the data this snapshot was taken from
+     * @return Data version
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,213 @@
+package id.nusatempfly.data;
+
+import id.nusatempfly.Plugin;
+import id.nusatempfly.data.storage.PlayerDataStorage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Background write-behind queue for player data.
+ * Saves are queued as snapshots keyed by UUID, so repeated saves of the same
+ * player inside the coalescing window collapse into a single storage write.
+ */
+public class PlayerDataWriter implements Runnable {
+    private final Plugin plugin;
+    private final PlayerDataStorage storage;
+    private final long writeDelayMillis;
+    
+    // Snapshots waiting to be written, latest snapshot per player wins
+    private final Map<UUID, PlayerDataSnapshot> pending = new ConcurrentHashMap<>();
+    // Snapshots taken off the queue but not yet on disk, so loads never read a stale file
+    private final Map<UUID, PlayerDataSnapshot> inFlight = new ConcurrentHashMap<>();
+    
+    private final Object lock = new Object();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean flushRequested = false;
+    // Guarded by lock
+    private final List<Runnable> flushCallbacks = new ArrayList<>();
+    
+    public PlayerDataWriter(Plugin plugin, PlayerDataStorage storage) {
+        this.plugin = plugin;
+        this.storage = storage;
+        this.writeDelayMillis = Math.max(0, plugin.getConfig().getLong("storage.write-delay-ms", 1000));
+        this.thread = new Thread(this, "NusaTempFly-Writer");
+        this.thread.setDaemon(true);
+    }
+    
+    /**
+     * Start the writer thread
+     */
+    public void start() {
+        thread.start();
+    }
+    
+    /**
+     * Queue a snapshot to be written
+     * @param snapshot Snapshot to write
+     */
+    public void enqueue(PlayerDataSnapshot snapshot) {
+        pending.put(snapshot.getPlayerUUID(), snapshot);
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+    
+    /**
+     * Queue many snapshots at once, they reach the storage in the same batch
+     * @param snapshots Snapshots to write
+     */
+    public void enqueueAll(Collection<PlayerDataSnapshot> snapshots) {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        for (PlayerDataSnapshot snapshot : snapshots) {
+            pending.put(snapshot.getPlayerUUID(), snapshot);
+        }
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+    
+    /**
+     * Get the newest snapshot for a player that is not on disk yet
+     * @param uuid Player UUID
+     * @return Snapshot, or null if nothing is waiting to be written
+     */
+    public PlayerDataSnapshot getUnwrittenSnapshot(UUID uuid) {
+        PlayerDataSnapshot snapshot = pending.get(uuid);
+        return snapshot != null ? snapshot : inFlight.get(uuid);
+    }
+    
+    /**
+     * Get the number of snapshots waiting to be written
+     * @return Queue size
+     */
+    public int getPendingCount() {
+        return pending.size() + inFlight.size();
+    }
+    
+    /**
+     * Write everything queued so far without waiting for the coalescing window
+     * @param callback Run on the writer thread once everything queued before this call is stored
+     */
+    public void flush(Runnable callback) {
+        synchronized (lock) {
+            flushCallbacks.add(callback);
+            flushRequested = true;
+            lock.notifyAll();
+        }
+    }
+    
+    @Override
+    public void run() {
+        while (running || !pending.isEmpty()) {
+            List<Runnable> callbacks;
+            try {
+                synchronized (lock) {
+                    while (running && pending.isEmpty() && flushCallbacks.isEmpty()) {
+                        lock.wait();
+                    }
+                    // Give repeated saves of the same player a chance to coalesce
+                    long deadline = System.currentTimeMillis() + writeDelayMillis;
+                    long remaining = writeDelayMillis;
+                    while (running && !flushRequested && remaining > 0) {
+                        lock.wait(remaining);
+                        remaining = deadline - System.currentTimeMillis();
+                    }
+                    
+                    callbacks = new ArrayList<>(flushCallbacks);
+                    flushCallbacks.clear();
+                    flushRequested = false;
+                }
+            } catch (InterruptedException e) {
+                running = false;
+                continue;
+            }
+            
+            if (drain()) {
+                callbacks.forEach(Runnable::run);
+            } else {
+                // Nothing is guaranteed to be stored yet, try again with the next batch
+                synchronized (lock) {
+                    flushCallbacks.addAll(0, callbacks);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Write everything that is currently queued as one batch
+     * @return true if the batch was stored
+     */
+    private boolean drain() {
+        List<PlayerDataSnapshot> batch = new ArrayList<>();
+        for (UUID uuid : new ArrayList<>(pending.keySet())) {
+            PlayerDataSnapshot snapshot = pending.get(uuid);
+            if (snapshot == null) {
+                continue;
+            }
+            // Visible in inFlight before it leaves pending, so a load never misses it
+            inFlight.put(uuid, snapshot);
+            if (pending.remove(uuid, snapshot)) {
+                batch.add(snapshot);
+            } else {
+                // A newer snapshot was queued meanwhile, it is written with the next batch
+                inFlight.remove(uuid, snapshot);
+            }
+        }
+        
+        if (batch.isEmpty()) {
+            return true;
+        }
+        
+        try {
+            storage.saveBatch(batch);
+            storage.flush();
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save " + batch.size() + " player data records", e);
+            // Retry on the next cycle unless a newer snapshot was queued meanwhile
+            if (running) {
+                for (PlayerDataSnapshot snapshot : batch) {
+                    pending.putIfAbsent(snapshot.getPlayerUUID(), snapshot);
+                }
+            }
+            return false;
+        } finally {
+            for (PlayerDataSnapshot snapshot : batch) {
+                inFlight.remove(snapshot.getPlayerUUID(), snapshot);
+            }
+        }
+    }
+    
+    /**
+     * Stop the writer, flushing everything still queued
+     * @param timeout Maximum time to wait for the queue to drain
+     * @param unit Unit of the timeout
+     * @return true if every queued snapshot was written in time
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        synchronized (lock) {
+            running = false;
+            flushRequested = true;
+            lock.notifyAll();
+        }
+        
+        try {
+            thread.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        return getPendingCount() == 0;
+    }
+}
@@ -0,0 +1,194 @@
+package id.nusatempfly.data;
+
+import id.nusatempfly.util.PrefixTrie;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Names of every player that joined, so admin commands can target offline players without
+ * asking the server, whose name lookups may block on the profile service.
+ * Kept in memory and in an append-only file with one "uuid name" line per change. The newest
+ * line wins, the file is rewritten on load once it holds mostly outdated lines.
+ * Lookups are lock-free and case-insensitive, safe to call from any thread. The names are
+ * also kept in a prefix trie for tab completion.
+ */
+public class PlayerNameIndex {
+    // Outdated lines tolerated on top of the live entries before the file is rewritten
+    private static final int COMPACT_SLACK = 64;
+    
+    private final File file;
+    // Lowercase name to UUID
+    private final Map<String, UUID> uuids = new ConcurrentHashMap<>();
+    private final Map<UUID, String> names = new ConcurrentHashMap<>();
+    private final PrefixTrie completions = new PrefixTrie();
+    // Guards updates and the writer, so both maps and the file agree
+    private final Object writeLock = new Object();
+    private BufferedWriter writer;
+    
+    public PlayerNameIndex(File file) {
+        this.file = file;
+    }
+    
+    /**
+     * Read the index file and open it for appending
+     * @return true if the file existed, false if the index starts empty
+     * @throws IOException if the file could not be read or opened
+     */
+    public boolean load() throws IOException {
+        synchronized (writeLock) {
+            boolean existed = file.exists();
+            int lines = 0;
+            if (existed) {
+                try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        int separator = line.indexOf(' ');
+                        if (separator <= 0 || separator == line.length() - 1) {
+                            continue;
+                        }
+                        try {
+                            put(UUID.fromString(line.substring(0, separator)), line.substring(separator + 1));
+                            lines++;
+                        } catch (IllegalArgumentException e) {
+                            // Skip a line torn by a crash
+                        }
+                    }
+                }
+            }
+            
+            if (lines > names.size() * 2 + COMPACT_SLACK) {
+                rewrite();
+            }
+            writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            return existed;
+        }
+    }
+    
+    /**
+     * Record the current name of a player, writing it only if it changed
+     * @param uuid Player UUID
+     * @param name Current name
+     */
+    public void update(UUID uuid, String name) {
+        if (name == null || name.isEmpty() || name.equals(names.get(uuid))) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (name.equals(names.get(uuid))) {
+                return;
+            }
+            put(uuid, name);
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.write(uuid.toString());
+                writer.write(' ');
+                writer.write(name);
+                writer.newLine();
+                writer.flush();
+            } catch (IOException e) {
+                // Known until the restart, the first login after it writes the name again
+            }
+        }
+    }
+    
+    /**
+     * Find a player by name
+     * @param name Player name, any case
+     * @return UUID, or null if no player with that name joined
+     */
+    public UUID getUUID(String name) {
+        return uuids.get(name.toLowerCase(Locale.ROOT));
+    }
+    
+    /**
+     * Get the last known name of a player
+     * @param uuid Player UUID
+     * @return Name, or null if the player is unknown
+     */
+    public String getName(UUID uuid) {
+        return names.get(uuid);
+    }
+    
+    /**
+     * List the known names starting with a prefix, in alphabetical order
+     * @param prefix Name prefix, any case
+     * @param limit Maximum number of names to add
+     * @param results Collection the names are added to
+     * @return Number of names added
+     */
+    public int complete(String prefix, int limit, Collection<String> results) {
+        return completions.collect(prefix, limit, results);
+    }
+    
+    /**
+     * Get the number of known players
+     * @return Index size
+     */
+    public int size() {
+        return names.size();
+    }
+    
+    /**
+     * Close the index file
+     */
+    public void close() {
+        synchronized (writeLock) {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // Every line was flushed when it was written
+            }
+            writer = null;
+        }
+    }
+    
+    // Must hold writeLock
+    private void put(UUID uuid, String name) {
+        String previous = names.put(uuid, name);
+        if (previous != null) {
+            // Only drop the old name if nobody took it over in the meantime
+            String previousKey = previous.toLowerCase(Locale.ROOT);
+            if (uuids.remove(previousKey, uuid) && !previousKey.equals(name.toLowerCase(Locale.ROOT))) {
+                completions.remove(previous);
+            }
+        }
+        completions.add(name);
+        UUID displaced = uuids.put(name.toLowerCase(Locale.ROOT), uuid);
+        if (displaced != null && !displaced.equals(uuid)) {
+            // The name belonged to someone who renamed since, their new name is not known yet
+            names.remove(displaced, name);
+        }
+    }
+    
+    // Must hold writeLock
+    private void rewrite() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<UUID, String> entry : names.entrySet()) {
+                out.write(entry.getKey().toString());
+                out.write(' ');
+                out.write(entry.getValue());
+                out.newLine();
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
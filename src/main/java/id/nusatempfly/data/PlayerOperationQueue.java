@@ -0,0 +1,143 @@
+package id.nusatempfly.data;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Background executor for load-modify-store operations on player data.
+ * Operations on the same player run one after another in submission order, operations on
+ * different players run in parallel. An operation that finds the data still loading asks to
+ * be retried and runs again after a short delay, still ahead of later operations for that player.
+ * An operation still asking after {@link #MAX_RETRIES} retries fails, so it cannot hold up the
+ * player's later operations forever.
+ */
+public class PlayerOperationQueue {
+    private static final long RETRY_DELAY_MILLIS = 50;
+    // 10 seconds of retries
+    private static final int MAX_RETRIES = 200;
+    
+    private final ScheduledExecutorService executor;
+    // Last queued operation per player, removed once it completes and nothing was queued behind it
+    private final Map<UUID, CompletableFuture<?>> tails = new ConcurrentHashMap<>();
+    
+    public PlayerOperationQueue(int threads) {
+        this.executor = Executors.newScheduledThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "NusaTempFly-Operations");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * An operation on one player's data
+     * @param <T> Result type
+     */
+    @FunctionalInterface
+    public interface Operation<T> {
+        /**
+         * Run the operation on a background thread
+         * @return Result, or null to be retried after a short delay
+         * @throws Exception if the operation failed
+         */
+        T run() throws Exception;
+    }
+    
+    /**
+     * Queue an operation behind the ones already queued for the player
+     * @param uuid Player UUID
+     * @param operation Operation to run
+     * @param <T> Result type
+     * @return Future completed with the result, or exceptionally if the operation failed
+     */
+    public <T> CompletableFuture<T> submit(UUID uuid, Operation<T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<?> previous = tails.put(uuid, result);
+        
+        Runnable start = () -> {
+            try {
+                executor.execute(() -> attempt(operation, result, 0));
+            } catch (RuntimeException e) {
+                // Rejected after shutdown
+                result.completeExceptionally(e);
+            }
+        };
+        if (previous == null) {
+            start.run();
+        } else {
+            // A failed operation must not hold up the ones behind it
+            previous.whenComplete((ignored, error) -> start.run());
+        }
+        
+        result.whenComplete((ignored, error) -> tails.remove(uuid, result));
+        return result;
+    }
+    
+    private <T> void attempt(Operation<T> operation, CompletableFuture<T> result, int retries) {
+        T value;
+        try {
+            value = operation.run();
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        
+        if (value != null) {
+            result.complete(value);
+            return;
+        }
+        if (retries >= MAX_RETRIES) {
+            result.completeExceptionally(new TimeoutException("Operation still not ready after " + retries + " retries"));
+            return;
+        }
+        try {
+            executor.schedule(() -> attempt(operation, result, retries + 1), RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+    
+    /**
+     * Get the number of players with queued operations
+     * @return Player count
+     */
+    public int getQueuedCount() {
+        return tails.size();
+    }
+    
+    /**
+     * Stop accepting operations and wait for the queued ones
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return true if every queued operation finished
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        // Operations chained behind running ones are only handed to the executor later, wait for them first
+        for (CompletableFuture<?> tail : tails.values()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                tail.handle((ignored, error) -> null).get(remaining, TimeUnit.NANOSECONDS);
+            } catch (Exception e) {
+                break;
+            }
+        }
+        
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                    && tails.isEmpty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
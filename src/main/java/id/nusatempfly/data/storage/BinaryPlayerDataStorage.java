@@ -0,0 +1,279 @@
+package id.nusatempfly.data.storage;
+
+import id.nusatempfly.data.PlayerDataSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stores every player in a single memory-mapped file of fixed-size records.
+ * <p>
+ * Layout: a 16 byte header (magic, format version, record count, reserved)
+ * followed by 33 byte records: UUID (16), remaining seconds (8), flags (1)
+ * and a per-record write counter (8). Records never move, so an update only
+ * rewrites the 17 byte tail of an existing record in place.
+ */
+public class BinaryPlayerDataStorage implements PlayerDataStorage {
+    private static final int MAGIC = 0x4E544642; // "NTFB"
+    private static final int FORMAT_VERSION = 1;
+    
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 8;
+    
+    private static final int RECORD_SIZE = 33;
+    private static final int REMAINING_OFFSET = 16;
+    private static final int FLAGS_OFFSET = 24;
+    private static final int VERSION_OFFSET = 25;
+    
+    private static final byte FLAG_FLIGHT_ENABLED = 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final SlotIndex index = new SlotIndex();
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int recordCount;
+    
+    public BinaryPlayerDataStorage(File dataFile) throws IOException {
+        this.file = new RandomAccessFile(dataFile, "rw");
+        this.channel = file.getChannel();
+        
+        try {
+            if (channel.size() == 0) {
+                map(INITIAL_CAPACITY);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, FORMAT_VERSION);
+                buffer.putInt(COUNT_OFFSET, 0);
+                buffer.force();
+            } else {
+                open(dataFile);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Validate an existing file and rebuild the UUID index from its records
+     * @param dataFile File being opened, used for error messages
+     * @throws IOException if the file is not a valid store
+     */
+    private void open(File dataFile) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            throw new IOException(dataFile.getName() + " is too small to be a player data store");
+        }
+        
+        map((int) ((size - HEADER_SIZE) / RECORD_SIZE));
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException(dataFile.getName() + " is not a player data store");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported player data store format " + buffer.getInt(4));
+        }
+        
+        recordCount = buffer.getInt(COUNT_OFFSET);
+        if (recordCount < 0 || recordCount > capacity) {
+            throw new IOException(dataFile.getName() + " has an invalid record count " + recordCount);
+        }
+        
+        for (int slot = 0; slot < recordCount; slot++) {
+            int position = position(slot);
+            index.put(buffer.getLong(position), buffer.getLong(position + 8), slot);
+        }
+    }
+    
+    /**
+     * Map the file with room for the given number of records, growing it if needed
+     * @param newCapacity Number of records
+     * @throws IOException if the file could not be mapped
+     */
+    private void map(int newCapacity) throws IOException {
+        if (buffer != null) {
+            buffer.force();
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * RECORD_SIZE);
+        capacity = newCapacity;
+    }
+    
+    private static int position(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+    
+    @Override
+    public synchronized PlayerDataSnapshot load(UUID uuid) {
+        int slot = index.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (slot < 0) {
+            return null;
+        }
+        
+        int position = position(slot);
+        return new PlayerDataSnapshot(uuid, 
+                buffer.getLong(position + REMAINING_OFFSET), 
+                (buffer.get(position + FLAGS_OFFSET) & FLAG_FLIGHT_ENABLED) != 0, 
+                buffer.getLong(position + VERSION_OFFSET));
+    }
+    
+    @Override
+    public synchronized void save(PlayerDataSnapshot snapshot) throws IOException {
+        UUID uuid = snapshot.getPlayerUUID();
+        int slot = index.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        
+        if (slot >= 0) {
+            // Existing player: rewrite the record tail in place
+            int position = position(slot);
+            writeTail(position, snapshot, buffer.getLong(position + VERSION_OFFSET) + 1);
+            return;
+        }
+        
+        if (recordCount == capacity) {
+            // A file holding only a header opens with no room at all
+            map(Math.max(INITIAL_CAPACITY, capacity * 2));
+        }
+        
+        slot = recordCount;
+        int position = position(slot);
+        buffer.putLong(position, uuid.getMostSignificantBits());
+        buffer.putLong(position + 8, uuid.getLeastSignificantBits());
+        writeTail(position, snapshot, 1);
+        
+        // Only count the record once it is fully written
+        recordCount++;
+        buffer.putInt(COUNT_OFFSET, recordCount);
+        index.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), slot);
+    }
+    
+    @Override
+    public synchronized List<PlayerDataSnapshot> findByRemainingTimeAbove(long seconds) {
+        List<PlayerDataSnapshot> result = new ArrayList<>();
+        for (int slot = 0; slot < recordCount; slot++) {
+            int position = position(slot);
+            long remaining = buffer.getLong(position + REMAINING_OFFSET);
+            if (remaining > seconds) {
+                result.add(new PlayerDataSnapshot(
+                        new UUID(buffer.getLong(position), buffer.getLong(position + 8)), 
+                        remaining, 
+                        (buffer.get(position + FLAGS_OFFSET) & FLAG_FLIGHT_ENABLED) != 0, 
+                        buffer.getLong(position + VERSION_OFFSET)));
+            }
+        }
+        return result;
+    }
+    
+    private void writeTail(int position, PlayerDataSnapshot snapshot, long version) {
+        buffer.putLong(position + REMAINING_OFFSET, snapshot.getRemainingFlightTime());
+        buffer.put(position + FLAGS_OFFSET, snapshot.isFlightEnabled() ? FLAG_FLIGHT_ENABLED : 0);
+        buffer.putLong(position + VERSION_OFFSET, version);
+    }
+    
+    @Override
+    public synchronized void flush() {
+        buffer.force();
+    }
+    
+    @Override
+    public synchronized boolean isEmpty() {
+        return recordCount == 0;
+    }
+    
+    /**
+     * Get the number of stored players
+     * @return Record count
+     */
+    public synchronized int size() {
+        return recordCount;
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+        file.close();
+    }
+    
+    /**
+     * Open-addressing hash index from UUID to record slot, using linear probing
+     */
+    private static final class SlotIndex {
+        private long[] mostBits = new long[64];
+        private long[] leastBits = new long[64];
+        private int[] slots = newSlots(64);
+        private int size;
+        
+        private static int[] newSlots(int length) {
+            int[] slots = new int[length];
+            Arrays.fill(slots, -1);
+            return slots;
+        }
+        
+        private static int hash(long most, long least) {
+            long h = most * 0x9E3779B97F4A7C15L ^ least;
+            h ^= h >>> 32;
+            h *= 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 29));
+        }
+        
+        int get(long most, long least) {
+            int mask = slots.length - 1;
+            int i = hash(most, least) & mask;
+            while (slots[i] >= 0) {
+                if (mostBits[i] == most && leastBits[i] == least) {
+                    return slots[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+        
+        void put(long most, long least, int slot) {
+            // Keep the load factor at or below one half
+            if ((size + 1) * 2 > slots.length) {
+                resize();
+            }
+            if (insert(most, least, slot)) {
+                size++;
+            }
+        }
+        
+        private boolean insert(long most, long least, int slot) {
+            int mask = slots.length - 1;
+            int i = hash(most, least) & mask;
+            while (slots[i] >= 0) {
+                if (mostBits[i] == most && leastBits[i] == least) {
+                    slots[i] = slot;
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            mostBits[i] = most;
+            leastBits[i] = least;
+            slots[i] = slot;
+            return true;
+        }
+        
+        private void resize() {
+            long[] oldMost = mostBits;
+            long[] oldLeast = leastBits;
+            int[] oldSlots = slots;
+            
+            mostBits = new long[oldSlots.length * 2];
+            leastBits = new long[oldSlots.length * 2];
+            slots = newSlots(oldSlots.length * 2);
+            
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] >= 0) {
+                    insert(oldMost[i], oldLeast[i], oldSlots[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package id.nusatempfly.data.storage;
+
+import id.nusatempfly.data.PlayerDataSnapshot;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Backend that player data is loaded from and saved to.
+ * Loads may happen on any thread, saves only happen on the writer thread.
+ */
+public interface PlayerDataStorage {
+    
+    /**
+     * Load stored data for a player
+     * @param uuid Player UUID
+     * @return Stored snapshot, or null if nothing is stored for this player
+     * @throws IOException if the stored data could not be read
+     */
+    PlayerDataSnapshot load(UUID uuid) throws IOException;
+    
+    /**
+     * Save a snapshot, replacing anything stored for the player
+     * @param snapshot Snapshot to save
+     * @throws IOException if the data could not be written
+     */
+    void save(PlayerDataSnapshot snapshot) throws IOException;
+    
+    /**
+     * Save several snapshots at once. Backends that can group writes
+     * (for example into one transaction) should override this.
+     * @param snapshots Snapshots to save
+     * @throws IOException if the data could not be written
+     */
+    default void saveBatch(Collection<PlayerDataSnapshot> snapshots) throws IOException {
+        for (PlayerDataSnapshot snapshot : snapshots) {
+            save(snapshot);
+        }
+    }
+    
+    /**
+     * Find every stored player with more than the given flight time
+     * @param seconds Exclusive lower bound in seconds
+     * @return Matching snapshots, in no particular order
+     * @throws IOException if the storage could not be read
+     */
+    List<PlayerDataSnapshot> findByRemainingTimeAbove(long seconds) throws IOException;
+    
+    /**
+     * Make every save so far durable
+     * @throws IOException if the data could not be flushed
+     */
+    default void flush() throws IOException {
+    }
+    
+    /**
+     * Check if nothing has been stored yet
+     * @return true if the storage holds no players
+     * @throws IOException if the storage could not be read
+     */
+    boolean isEmpty() throws IOException;
+    
+    /**
+     * Flush and release the storage
+     * @throws IOException if the storage could not be closed cleanly
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,150 @@
+package id.nusatempfly.data.storage;
+
+import id.nusatempfly.data.PlayerDataSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stores players in an embedded SQLite database.
+ * Batches are written as prepared-statement upserts inside a single transaction,
+ * and remaining time is indexed so threshold queries do not need a full scan.
+ * Uses the SQLite JDBC driver bundled with the server.
+ */
+public class SqlitePlayerDataStorage implements PlayerDataStorage {
+    private static final String CREATE_TABLE = 
+            "CREATE TABLE IF NOT EXISTS player_data ("
+            + "uuid TEXT PRIMARY KEY, "
+            + "remaining_time INTEGER NOT NULL, "
+            + "flight_enabled INTEGER NOT NULL, "
+            + "version INTEGER NOT NULL)";
+    private static final String CREATE_INDEX = 
+            "CREATE INDEX IF NOT EXISTS idx_player_data_remaining ON player_data (remaining_time)";
+    private static final String SELECT = 
+            "SELECT remaining_time, flight_enabled, version FROM player_data WHERE uuid = ?";
+    private static final String SELECT_ABOVE = 
+            "SELECT uuid, remaining_time, flight_enabled, version FROM player_data WHERE remaining_time > ?";
+    private static final String UPSERT = 
+            "INSERT INTO player_data (uuid, remaining_time, flight_enabled, version) VALUES (?, ?, ?, 1) "
+            + "ON CONFLICT (uuid) DO UPDATE SET "
+            + "remaining_time = excluded.remaining_time, "
+            + "flight_enabled = excluded.flight_enabled, "
+            + "version = player_data.version + 1";
+    
+    private final Connection connection;
+    
+    public SqlitePlayerDataStorage(File databaseFile) throws IOException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+            
+            try (Statement statement = connection.createStatement()) {
+                // WAL makes the writer's commits cheaper. Loads share the one connection,
+                // so a load still waits for a commit in progress.
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute(CREATE_TABLE);
+                statement.execute(CREATE_INDEX);
+            }
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IOException("Failed to open SQLite database " + databaseFile.getName(), e);
+        }
+    }
+    
+    @Override
+    public synchronized PlayerDataSnapshot load(UUID uuid) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT)) {
+            statement.setString(1, uuid.toString());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                return new PlayerDataSnapshot(uuid, 
+                        resultSet.getLong(1), 
+                        resultSet.getInt(2) != 0, 
+                        resultSet.getLong(3));
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to load player data for " + uuid, e);
+        }
+    }
+    
+    @Override
+    public void save(PlayerDataSnapshot snapshot) throws IOException {
+        saveBatch(Collections.singletonList(snapshot));
+    }
+    
+    @Override
+    public synchronized void saveBatch(Collection<PlayerDataSnapshot> snapshots) throws IOException {
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(UPSERT)) {
+                for (PlayerDataSnapshot snapshot : snapshots) {
+                    statement.setString(1, snapshot.getPlayerUUID().toString());
+                    statement.setLong(2, snapshot.getRemainingFlightTime());
+                    statement.setInt(3, snapshot.isFlightEnabled() ? 1 : 0);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to save " + snapshots.size() + " player data records", e);
+        }
+    }
+    
+    @Override
+    public synchronized List<PlayerDataSnapshot> findByRemainingTimeAbove(long seconds) throws IOException {
+        List<PlayerDataSnapshot> result = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_ABOVE)) {
+            statement.setLong(1, seconds);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    result.add(new PlayerDataSnapshot(
+                            UUID.fromString(resultSet.getString(1)), 
+                            resultSet.getLong(2), 
+                            resultSet.getInt(3) != 0, 
+                            resultSet.getLong(4)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to query player data", e);
+        }
+        return result;
+    }
+    
+    @Override
+    public synchronized boolean isEmpty() throws IOException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT 1 FROM player_data LIMIT 1")) {
+            return !resultSet.next();
+        } catch (SQLException e) {
+            throw new IOException("Failed to query player data", e);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException("Failed to close SQLite database", e);
+        }
+    }
+}
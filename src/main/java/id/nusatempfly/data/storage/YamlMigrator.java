@@ -0,0 +1,60 @@
+package id.nusatempfly.data.storage;
+
+import id.nusatempfly.data.PlayerDataSnapshot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One-shot import of the per-player YAML files into another storage backend
+ */
+public final class YamlMigrator {
+    // Players written per batch, one transaction each on SQLite
+    private static final int BATCH_SIZE = 1000;
+    
+    private YamlMigrator() {
+    }
+    
+    /**
+     * Copy every YAML player file into the target storage.
+     * Files that cannot be read are skipped and logged, the YAML files are left untouched.
+     * @param source YAML storage to read from
+     * @param target Storage to write into
+     * @param logger Logger for progress and errors
+     * @return Number of players migrated
+     * @throws IOException if the target could not be written
+     */
+    public static int migrate(YamlPlayerDataStorage source, PlayerDataStorage target, Logger logger) throws IOException {
+        int migrated = 0;
+        List<PlayerDataSnapshot> batch = new ArrayList<>(BATCH_SIZE);
+        for (UUID uuid : source.listStoredPlayers()) {
+            PlayerDataSnapshot snapshot;
+            try {
+                snapshot = source.load(uuid);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Skipping unreadable player data for " + uuid, e);
+                continue;
+            }
+            
+            if (snapshot != null) {
+                batch.add(snapshot);
+                if (batch.size() == BATCH_SIZE) {
+                    target.saveBatch(batch);
+                    migrated += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            target.saveBatch(batch);
+            migrated += batch.size();
+        }
+        
+        target.flush();
+        return migrated;
+    }
+}
@@ -0,0 +1,130 @@
+package id.nusatempfly.data.storage;
+
+import id.nusatempfly.data.PlayerDataSnapshot;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores each player in its own <uuid>.yml file
+ */
+public class YamlPlayerDataStorage implements PlayerDataStorage {
+    private static final String EXTENSION = ".yml";
+    
+    private final File folder;
+    private final Logger logger;
+    
+    public YamlPlayerDataStorage(File folder, Logger logger) {
+        this.folder = folder;
+        this.logger = logger;
+        
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+    }
+    
+    @Override
+    public PlayerDataSnapshot load(UUID uuid) throws IOException {
+        File playerFile = new File(folder, uuid.toString() + EXTENSION);
+        if (!playerFile.exists()) {
+            return null;
+        }
+        
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.load(playerFile);
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("Corrupt player data file " + playerFile.getName(), e);
+        }
+        
+        return new PlayerDataSnapshot(uuid, 
+                config.getLong("remainingFlightTime", 0), 
+                config.getBoolean("flightEnabled", false), 
+                0);
+    }
+    
+    @Override
+    public void save(PlayerDataSnapshot snapshot) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("remainingFlightTime", snapshot.getRemainingFlightTime());
+        config.set("flightEnabled", snapshot.isFlightEnabled());
+        
+        // Write to a temporary file first so a crash never leaves a half-written file behind
+        File playerFile = new File(folder, snapshot.getPlayerUUID().toString() + EXTENSION);
+        File tempFile = new File(folder, snapshot.getPlayerUUID().toString() + EXTENSION + ".tmp");
+        Files.write(tempFile.toPath(), config.saveToString().getBytes(StandardCharsets.UTF_8));
+        
+        try {
+            Files.move(tempFile.toPath(), playerFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), playerFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    @Override
+    public List<PlayerDataSnapshot> findByRemainingTimeAbove(long seconds) {
+        // The per-file layout has no index, so this has to read every file
+        List<PlayerDataSnapshot> result = new ArrayList<>();
+        for (UUID uuid : listStoredPlayers()) {
+            PlayerDataSnapshot snapshot;
+            try {
+                snapshot = load(uuid);
+            } catch (IOException e) {
+                // One corrupt file must not hide every other player
+                logger.log(Level.WARNING, "Skipping unreadable player data for " + uuid, e);
+                continue;
+            }
+            if (snapshot != null && snapshot.getRemainingFlightTime() > seconds) {
+                result.add(snapshot);
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return listStoredPlayers().isEmpty();
+    }
+    
+    @Override
+    public void close() {
+        // Every save is already a complete file, nothing to release
+    }
+    
+    /**
+     * List every player that has a data file
+     * @return UUIDs of stored players
+     */
+    public List<UUID> listStoredPlayers() {
+        List<UUID> uuids = new ArrayList<>();
+        String[] names = folder.list();
+        if (names == null) {
+            return uuids;
+        }
+        
+        for (String name : names) {
+            if (!name.endsWith(EXTENSION)) {
+                continue;
+            }
+            try {
+                uuids.add(UUID.fromString(name.substring(0, name.length() - EXTENSION.length())));
+            } catch (IllegalArgumentException e) {
+                // Not a player data file
+            }
+        }
+        return uuids;
+    }
+}
@@ -0,0 +1,154 @@
+package id.nusatempfly.flight;
+
+import id.nusatempfly.Plugin;
+import id.nusatempfly.config.Settings;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+
+/**
+ * Gives flight time to many online players at once, for events and /tempfly give *.
+ * Players are grouped by their boosted amount, each group is applied in one pass and saved as
+ * one batch. Every group shares one pre-built message, which is sent over the following ticks
+ * together with the charging refresh, a limited number of players per tick.
+ */
+public class BulkGrant implements Runnable {
+    private final Plugin plugin;
+    private final long seconds;
+    private final UUID actor;
+    private final Queue<Notification> notifications = new ArrayDeque<>();
+    private final int perTick;
+    private BukkitTask task;
+    
+    private int playerCount;
+    private int boostedCount;
+    private long totalSeconds;
+    
+    private BulkGrant(Plugin plugin, long seconds, UUID actor) {
+        this.plugin = plugin;
+        this.seconds = seconds;
+        this.actor = actor;
+        this.perTick = plugin.getSettings().getBulkNotificationsPerTick();
+    }
+    
+    /**
+     * Give flight time to the players and start notifying them
+     * @param plugin Plugin instance
+     * @param players Online players to give time to
+     * @param seconds Base time in seconds, boosted per player like a single give
+     * @param actor Who gave the time, recorded in the audit ledger
+     * @return The grant, with its totals
+     */
+    public static BulkGrant start(Plugin plugin, Collection<? extends Player> players, long seconds, UUID actor) {
+        BulkGrant grant = new BulkGrant(plugin, seconds, actor);
+        grant.apply(players);
+        if (!grant.notifications.isEmpty()) {
+            grant.task = Bukkit.getScheduler().runTaskTimer(plugin, grant, 1L, 1L);
+        }
+        return grant;
+    }
+    
+    private void apply(Collection<? extends Player> players) {
+        FlightManager flightManager = plugin.getFlightManager();
+        Settings settings = plugin.getSettings();
+        
+        // The booster multiplier is one setting, so there are at most two groups
+        Map<Long, List<Player>> groups = new LinkedHashMap<>();
+        for (Player player : players) {
+            long boostedTime = (long) (seconds * flightManager.getBoosterMultiplier(player));
+            groups.computeIfAbsent(boostedTime, key -> new ArrayList<>()).add(player);
+        }
+        
+        String timeStr = settings.getTimeFormatter().format(seconds);
+        for (Map.Entry<Long, List<Player>> group : groups.entrySet()) {
+            long boostedTime = group.getKey();
+            List<Player> members = group.getValue();
+            List<UUID> uuids = new ArrayList<>(members.size());
+            for (Player player : members) {
+                uuids.add(player.getUniqueId());
+            }
+            plugin.getPlayerDataManager().addFlightTime(uuids, boostedTime, actor);
+            
+            long boostedExtra = boostedTime - seconds;
+            Component message = boostedExtra > 0
+                    ? settings.getMessage("time-added-booster").build(
+                            "original_time", timeStr,
+                            "booster_time", settings.getTimeFormatter().format(boostedExtra))
+                    : settings.getMessage("time-added").build("time", timeStr);
+            for (Player player : members) {
+                notifications.add(new Notification(player, message));
+            }
+            
+            playerCount += members.size();
+            if (boostedExtra > 0) {
+                boostedCount += members.size();
+            }
+            totalSeconds += boostedTime * members.size();
+        }
+    }
+    
+    @Override
+    public void run() {
+        FlightManager flightManager = plugin.getFlightManager();
+        for (int i = 0; i < perTick && !notifications.isEmpty(); i++) {
+            Notification notification = notifications.poll();
+            
+            // Until the refresh, an early expiry deadline only re-checks the balance
+            Player player = notification.player;
+            if (player.isOnline()) {
+                flightManager.refreshCharging(player);
+                player.sendMessage(notification.message);
+            }
+        }
+        if (notifications.isEmpty()) {
+            task.cancel();
+        }
+    }
+    
+    /**
+     * Get the number of players that were given time
+     * @return Player count
+     */
+    public int getPlayerCount() {
+        return playerCount;
+    }
+    
+    /**
+     * Get the number of players that got boosted time
+     * @return Boosted player count
+     */
+    public int getBoostedCount() {
+        return boostedCount;
+    }
+    
+    /**
+     * Get the time given to all players together, boosts included
+     * @return Total seconds
+     */
+    public long getTotalSeconds() {
+        return totalSeconds;
+    }
+    
+    /**
+     * A message waiting to be sent to a player
+     */
+    private static final class Notification {
+        private final Player player;
+        private final Component message;
+        
+        private Notification(Player player, Component message) {
+            this.player = player;
+            this.message = message;
+        }
+    }
+}
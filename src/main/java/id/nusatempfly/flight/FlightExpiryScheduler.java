@@ -0,0 +1,143 @@
+package id.nusatempfly.flight;
+
+import id.nusatempfly.Plugin;
+import id.nusatempfly.config.Settings;
+import id.nusatempfly.util.TimingWheel;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Schedules flight expiry and low-time warnings of charged players on a timing wheel.
+ * The wheel follows real time with a resolution of one server tick (50 ms), so each tick
+ * only does work for players whose deadline has actually arrived.
+ */
+public class FlightExpiryScheduler {
+    private static final long MILLIS_PER_TICK = 50;
+    
+    private final Plugin plugin;
+    private final long origin = System.nanoTime();
+    private final TimingWheel wheel = new TimingWheel(0);
+    // Pending expiry and warning timeouts per player
+    private final Map<UUID, List<TimingWheel.Timeout>> timeouts = new HashMap<>();
+    private long[] warningSeconds = new long[0];
+    private BukkitTask task;
+    
+    public FlightExpiryScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Start driving the wheel every server tick and read the warning thresholds
+     */
+    public void start() {
+        stop();
+        warningSeconds = plugin.getSettings().getWarningSeconds();
+        
+        wheel.advance(currentTick());
+        task = Bukkit.getScheduler().runTaskTimer(plugin, () -> wheel.advance(currentTick()), 1L, 1L);
+    }
+    
+    /**
+     * Stop driving the wheel and drop every pending timeout
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (List<TimingWheel.Timeout> playerTimeouts : timeouts.values()) {
+            playerTimeouts.forEach(TimingWheel.Timeout::cancel);
+        }
+        timeouts.clear();
+    }
+    
+    /**
+     * Replace the deadlines of a player
+     * @param player The player
+     * @param remainingMillis Remaining balance in milliseconds
+     * @param rate Milliseconds of balance used per millisecond, must be above 0
+     * @param onExpiry Run when the balance should be used up
+     */
+    public void schedule(Player player, long remainingMillis, double rate, Consumer<Player> onExpiry) {
+        UUID uuid = player.getUniqueId();
+        cancel(uuid);
+        
+        long now = currentTick();
+        long expiryTick = now + Math.max(1, ticksUntil(remainingMillis, rate));
+        List<TimingWheel.Timeout> playerTimeouts = new ArrayList<>(warningSeconds.length + 1);
+        
+        // Only warnings that are still ahead, so rescheduling never repeats one
+        for (long seconds : warningSeconds) {
+            if (remainingMillis > seconds * 1000) {
+                long warningTick = now + ticksUntil(remainingMillis - seconds * 1000, rate);
+                playerTimeouts.add(wheel.schedule(warningTick, () -> sendWarning(player, seconds)));
+            }
+        }
+        
+        playerTimeouts.add(wheel.schedule(expiryTick, () -> {
+            timeouts.remove(uuid);
+            onExpiry.accept(player);
+        }));
+        timeouts.put(uuid, playerTimeouts);
+    }
+    
+    /**
+     * Remove every pending deadline of a player
+     * @param uuid Player UUID
+     */
+    public void cancel(UUID uuid) {
+        List<TimingWheel.Timeout> playerTimeouts = timeouts.remove(uuid);
+        if (playerTimeouts != null) {
+            playerTimeouts.forEach(TimingWheel.Timeout::cancel);
+        }
+    }
+    
+    /**
+     * Get the number of pending expiry and warning deadlines
+     * @return Number of scheduled deadlines
+     */
+    public int getScheduledCount() {
+        return wheel.size();
+    }
+    
+    /**
+     * Send a warning if the remaining time passed one of the warning thresholds.
+     * Used by tick accounting, which counts the balance down once per second.
+     * @param player The player
+     * @param previousSeconds Remaining flight time in seconds before the charge
+     * @param remainingSeconds Remaining flight time in seconds after the charge
+     */
+    public void warnAtThreshold(Player player, long previousSeconds, long remainingSeconds) {
+        for (long seconds : warningSeconds) {
+            if (seconds < previousSeconds && seconds >= remainingSeconds) {
+                sendWarning(player, seconds);
+                return;
+            }
+        }
+    }
+    
+    private void sendWarning(Player player, long seconds) {
+        if (!player.isOnline()) {
+            return;
+        }
+        Settings settings = plugin.getSettings();
+        settings.getMessage("time-warning").send(player, "time", settings.getTimeFormatter().format(seconds));
+    }
+    
+    private static long ticksUntil(long balanceMillis, double rate) {
+        return (long) Math.ceil(balanceMillis / rate / MILLIS_PER_TICK);
+    }
+    
+    private long currentTick() {
+        return (System.nanoTime() - origin) / (MILLIS_PER_TICK * 1_000_000L);
+    }
+}
@@ -3,27 +3,36 @@ package id.nusatempfly.flight;
 import id.nusatempfly.Plugin;
 import id.nusatempfly.data.PlayerData;
 import id.nusatempfly.hooks.WorldGuardHook;
-import id.nusatempfly.util.TimeFormatter;
+import id.nusatempfly.permission.TempFlyPermission;
+import id.nusatempfly.util.ShardedTicker;
 
 import org.bukkit.Bukkit;
-import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 public class FlightManager {
     private final Plugin plugin;
     private BukkitTask flightTimeTask;
     private final Map<UUID, Boolean> previousFlightStates = new HashMap<>();
-    private final TimeFormatter timeFormatter;
+    // Expiry and low-time warnings of charged players in lazy accounting mode
+    private final FlightExpiryScheduler expiryScheduler;
+    // Tick accounting: players spread over the 20 ticks of a second
+    private ShardedTicker<UUID> flightTicker;
+    private boolean lazyAccounting;
+    // Lazy accounting: flying players not charged because of the bypass permission
+    private final Set<UUID> bypassing = new HashSet<>();
+    private BukkitTask permissionTask;
     private WorldGuardHook worldGuardHook;
 
     public FlightManager(Plugin plugin) {
         this.plugin = plugin;
-        this.timeFormatter = new TimeFormatter(plugin);
+        this.expiryScheduler = new FlightExpiryScheduler(plugin);
     }
     
     /**
@@ -44,18 +53,15 @@ public class FlightManager {
         PlayerData playerData = plugin.getPlayerDataManager().getPlayerData(uuid);
         
         // Check if player has time (or has bypass permission)
-        if (!playerData.hasFlightTimeRemaining() && !player.hasPermission("nusatempfly.bypass.timelimit")) {
+        if (!playerData.hasFlightTimeRemaining() && !plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT)) {
             return false;
         }
         
         // Check WorldGuard region if the integration is enabled
         if (worldGuardHook != null && worldGuardHook.isWorldGuardEnabled() && 
                 !worldGuardHook.canFlyAtLocation(player) && 
-                !player.hasPermission("nusatempfly.bypass.region")) {
-            String message = ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("worldguard.no-fly-region-enter-message"));
-            player.sendMessage(ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("messages.prefix") + message));
+                !plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_REGION)) {
+            plugin.getSettings().getNoFlyRegionEnterMessage().send(player);
             return false;
         }
 
@@ -68,6 +74,8 @@ public class FlightManager {
         
         // Update player data
         playerData.setFlightEnabled(true);
+        trackRegion(player, true);
+        refreshCharging(player);
         
         return true;
     }
@@ -86,6 +94,24 @@ public class FlightManager {
         
         // Update player data
         playerData.setFlightEnabled(false);
+        refreshCharging(player);
+        trackRegion(player, false);
+    }
+
+    /**
+     * Add or remove a player from the region tracking of the WorldGuard hook
+     * @param player The player
+     * @param flightEnabled Whether the player has TempFly enabled
+     */
+    public void trackRegion(Player player, boolean flightEnabled) {
+        if (worldGuardHook == null) {
+            return;
+        }
+        if (flightEnabled) {
+            worldGuardHook.addActiveFlyer(player);
+        } else {
+            worldGuardHook.removeActiveFlyer(player.getUniqueId());
+        }
     }
 
     /**
@@ -110,35 +136,29 @@ public class FlightManager {
      * Add flight time to player with booster consideration
      * @param player The player
      * @param seconds Base time in seconds to add
+     * @param actor Who gave the time, recorded in the audit ledger
      * @return Total time added (with booster)
      */
-    public long addFlightTime(Player player, long seconds) {
+    public long addFlightTime(Player player, long seconds, UUID actor) {
         UUID uuid = player.getUniqueId();
         double boosterMultiplier = getBoosterMultiplier(player);
         long boostedTime = (long) (seconds * boosterMultiplier);
         long boostedExtra = boostedTime - seconds; // Extra time from booster
         
-        long totalTime = plugin.getPlayerDataManager().addFlightTime(uuid, boostedTime);
+        long totalTime = plugin.getPlayerDataManager().addFlightTime(uuid, boostedTime, actor);
+        refreshCharging(player);
         
         // Send message
         if (boostedExtra > 0) {
             // Player has booster
-            String originalTimeStr = timeFormatter.format(seconds);
-            String boosterTimeStr = timeFormatter.format(boostedExtra);
-            String message = ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("messages.time-added-booster")
-                    .replace("%original_time%", originalTimeStr)
-                    .replace("%booster_time%", boosterTimeStr));
-            player.sendMessage(ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("messages.prefix") + message));
+            String originalTimeStr = plugin.getSettings().getTimeFormatter().format(seconds);
+            String boosterTimeStr = plugin.getSettings().getTimeFormatter().format(boostedExtra);
+            plugin.getSettings().getMessage("time-added-booster").send(player, 
+                    "original_time", originalTimeStr, "booster_time", boosterTimeStr);
         } else {
             // Player has no booster
-            String timeStr = timeFormatter.format(seconds);
-            String message = ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("messages.time-added")
-                    .replace("%time%", timeStr));
-            player.sendMessage(ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("messages.prefix") + message));
+            String timeStr = plugin.getSettings().getTimeFormatter().format(seconds);
+            plugin.getSettings().getMessage("time-added").send(player, "time", timeStr);
         }
         
         return boostedTime;
@@ -148,28 +168,22 @@ public class FlightManager {
      * Remove flight time from player
      * @param player The player
      * @param seconds Time to remove
+     * @param actor Who took the time, recorded in the audit ledger
      * @return Remaining time after removal
      */
-    public long removeFlightTime(Player player, long seconds) {
+    public long removeFlightTime(Player player, long seconds, UUID actor) {
         UUID uuid = player.getUniqueId();
-        long remainingTime = plugin.getPlayerDataManager().removeFlightTime(uuid, seconds);
+        long remainingTime = plugin.getPlayerDataManager().removeFlightTime(uuid, seconds, actor);
+        refreshCharging(player);
         
         // Send message
-        String timeStr = timeFormatter.format(seconds);
-        String message = ChatColor.translateAlternateColorCodes('&', 
-            plugin.getConfig().getString("messages.time-removed")
-                .replace("%time%", timeStr));
-        player.sendMessage(ChatColor.translateAlternateColorCodes('&', 
-            plugin.getConfig().getString("messages.prefix") + message));
+        String timeStr = plugin.getSettings().getTimeFormatter().format(seconds);
+        plugin.getSettings().getMessage("time-removed").send(player, "time", timeStr);
         
         // Check if player should have flight disabled
         if (remainingTime <= 0 && plugin.getPlayerDataManager().isFlightEnabled(uuid)) {
-            if (plugin.getConfig().getBoolean("flight.disable-on-expiry")) {
-                disableFlight(player);
-                String expiredMessage = ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("messages.flight-expired"));
-                player.sendMessage(ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("messages.prefix") + expiredMessage));
+            if (plugin.getSettings().isDisableOnExpiry()) {
+                expireFlight(player);
             }
         }
         
@@ -177,71 +191,231 @@ public class FlightManager {
     }
 
     /**
-     * Start task to track flight time
+     * Start tracking flight time using the mode selected by flight.accounting
      */
     public void startFlightTimeTask() {
-        // Cancel existing task if any
-        if (flightTimeTask != null) {
-            flightTimeTask.cancel();
-        }
+        // Cancel existing tracking if any
+        stopFlightTimeTask();
         
-        // Start new task (runs every second)
-        flightTimeTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+        lazyAccounting = plugin.getSettings().isLazyAccounting();
+        expiryScheduler.start();
+        if (lazyAccounting) {
+            // Nothing runs per second, balances are only settled when something changes
             for (Player player : Bukkit.getOnlinePlayers()) {
-                UUID uuid = player.getUniqueId();
-                PlayerData playerData = plugin.getPlayerDataManager().getPlayerData(uuid);
-                
-                // Jika pemain sedang terbang tapi statusnya tidak tercatat, 
-                // sinkronkan statusnya terlebih dahulu
-                if (player.isFlying() && !playerData.isFlightEnabled()) {
-                    synchronizeFlightState(player);
-                }
-                
-                // Skip players who are not using flight
-                if (!playerData.isFlightEnabled()) {
-                    continue;
-                }
-                
-                // Skip time reduction if player has bypass permission
-                if (player.hasPermission("nusatempfly.bypass.timelimit")) {
-                    continue;
-                }
-                
-                // Check if we should pause time in no-fly regions
-                boolean pauseTime = false;
-                if (worldGuardHook != null && worldGuardHook.isWorldGuardEnabled() && 
-                    plugin.getConfig().getBoolean("worldguard.pause-time-in-no-fly-regions", true)) {
-                    
-                    // Pause time if player is in a no-fly region
-                    pauseTime = !worldGuardHook.canFlyAtLocation(player);
-                }
-                
-                // Only reduce time if not paused
-                if (!pauseTime) {
-                    // Reduce flight time
-                    boolean hasTimeRemaining = playerData.reduceFlightTime(1);
-                    
-                    // Check if time expired
-                    if (!hasTimeRemaining && plugin.getConfig().getBoolean("flight.disable-on-expiry")) {
-                        disableFlight(player);
-                        String expiredMessage = ChatColor.translateAlternateColorCodes('&', 
-                            plugin.getConfig().getString("messages.flight-expired"));
-                        player.sendMessage(ChatColor.translateAlternateColorCodes('&', 
-                            plugin.getConfig().getString("messages.prefix") + expiredMessage));
-                    }
-                }
+                refreshCharging(player);
+            }
+            // Only looks up the cached permissions, they are resolved again once their TTL expired
+            permissionTask = Bukkit.getScheduler().runTaskTimer(plugin, this::recheckPermissions, 20L, 20L);
+            return;
+        }
+        
+        // Every player is charged once per second, one twentieth of them on each tick
+        flightTicker = new ShardedTicker<>(20, plugin.getSettings().getTickBudgetNanos(), this::chargePlayer);
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            flightTicker.add(player.getUniqueId());
+        }
+        flightTimeTask = Bukkit.getScheduler().runTaskTimer(plugin, flightTicker::tick, 1L, 1L);
+    }
+    
+    /**
+     * Charge one second of flight time to a player, used by tick accounting
+     * @param uuid Player UUID
+     */
+    private void chargePlayer(UUID uuid) {
+        Player player = Bukkit.getPlayer(uuid);
+        if (player == null) {
+            return;
+        }
+        PlayerData playerData = plugin.getPlayerDataManager().getPlayerData(player);
+        
+        // Jika pemain sedang terbang tapi statusnya tidak tercatat, 
+        // sinkronkan statusnya terlebih dahulu
+        if (player.isFlying() && !playerData.isFlightEnabled()) {
+            synchronizeFlightState(player);
+        }
+        
+        // Skip players who are not using flight
+        if (!playerData.isFlightEnabled()) {
+            return;
+        }
+        
+        // Skip time reduction if player has bypass permission
+        if (plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT)) {
+            return;
+        }
+        
+        // Only reduce time if the region does not make flight free
+        double rate = getFlightRate(player);
+        if (rate > 0) {
+            // Reduce flight time by one second at the region's rate
+            long previousTime = playerData.getRemainingFlightTime();
+            boolean hasTimeRemaining = plugin.getPlayerDataManager().consumeFlightMillis(playerData, Math.round(rate * 1000));
+            
+            // Check if time expired
+            if (!hasTimeRemaining && plugin.getSettings().isDisableOnExpiry()) {
+                expireFlight(player);
+            } else {
+                expiryScheduler.warnAtThreshold(player, previousTime, playerData.getRemainingFlightTime());
             }
-        }, 20L, 20L); // 20 ticks = 1 second
+        }
+    }
+    
+    /**
+     * Start tracking a player that joined
+     * @param player The player
+     */
+    public void trackPlayer(Player player) {
+        if (flightTicker != null) {
+            flightTicker.add(player.getUniqueId());
+        }
+    }
+    
+    /**
+     * Stop tracking a player that quit
+     * @param uuid Player UUID
+     */
+    public void untrackPlayer(UUID uuid) {
+        if (flightTicker != null) {
+            flightTicker.remove(uuid);
+        }
+        bypassing.remove(uuid);
+    }
+    
+    /**
+     * Get the ticker that charges players in tick accounting mode
+     * @return ShardedTicker, or null in lazy accounting mode
+     */
+    public ShardedTicker<UUID> getFlightTicker() {
+        return flightTicker;
     }
 
     /**
-     * Stop flight time task
+     * Stop flight time tracking, settling the balance of every charged player
      */
     public void stopFlightTimeTask() {
         if (flightTimeTask != null) {
             flightTimeTask.cancel();
             flightTimeTask = null;
         }
+        if (permissionTask != null) {
+            permissionTask.cancel();
+            permissionTask = null;
+        }
+        flightTicker = null;
+        bypassing.clear();
+        
+        expiryScheduler.stop();
+        
+        if (lazyAccounting) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                plugin.getPlayerDataManager().stopCharging(plugin.getPlayerDataManager().getPlayerData(player));
+            }
+        }
+    }
+    
+    /**
+     * Start or stop counting down a player's balance after their flight state changed.
+     * Only does something in lazy accounting mode.
+     * @param player The player
+     */
+    public void refreshCharging(Player player) {
+        if (!lazyAccounting) {
+            return;
+        }
+        
+        UUID uuid = player.getUniqueId();
+        PlayerData playerData = plugin.getPlayerDataManager().getPlayerData(player);
+        boolean flying = player.isOnline() && playerData.isFlightEnabled();
+        boolean bypass = flying && plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT);
+        if (bypass) {
+            bypassing.add(uuid);
+        } else {
+            bypassing.remove(uuid);
+        }
+        double rate = flying && !bypass ? getFlightRate(player) : 0;
+        
+        if (rate <= 0) {
+            expiryScheduler.cancel(uuid);
+            plugin.getPlayerDataManager().stopCharging(playerData);
+            return;
+        }
+        
+        plugin.getPlayerDataManager().startCharging(playerData, rate);
+        
+        // Reschedule expiry and warnings for the new deadline; a late tick only makes the
+        // check late, the balance itself is based on real time
+        expiryScheduler.schedule(player, playerData.getRemainingFlightMillis(), rate, this::onBalanceExpired);
+    }
+    
+    /**
+     * Start or stop counting down the balance of flying players whose bypass permission
+     * changed since it was last checked. Only does something in lazy accounting mode, tick
+     * accounting checks the permission every second.
+     */
+    public void recheckPermissions() {
+        if (!lazyAccounting) {
+            return;
+        }
+        
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            PlayerData playerData = plugin.getPlayerDataManager().getPlayerData(player);
+            if (playerData.isFlightEnabled() && plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT) 
+                    != bypassing.contains(player.getUniqueId())) {
+                refreshCharging(player);
+            }
+        }
+    }
+    
+    /**
+     * Called by the expiry scheduler when a charged player's balance should be used up
+     * @param player The player
+     */
+    private void onBalanceExpired(Player player) {
+        if (!player.isOnline()) {
+            return;
+        }
+        
+        PlayerData playerData = plugin.getPlayerDataManager().getPlayerData(player);
+        if (playerData.hasFlightTimeRemaining()) {
+            // The deadline moved without a reschedule, check again later
+            refreshCharging(player);
+            return;
+        }
+        
+        plugin.getPlayerDataManager().stopCharging(playerData);
+        if (plugin.getSettings().isDisableOnExpiry()) {
+            expireFlight(player);
+        }
+    }
+    
+    /**
+     * Get the scheduler of flight expiry and low-time warnings
+     * @return FlightExpiryScheduler
+     */
+    public FlightExpiryScheduler getExpiryScheduler() {
+        return expiryScheduler;
+    }
+    
+    /**
+     * Get the rate flight time is used at for a player, set by the tempfly-rate region flag
+     * @param player The player
+     * @return Seconds of flight time used per second of flight, 0 if flight is free
+     */
+    public double getFlightRate(Player player) {
+        if (worldGuardHook == null || !worldGuardHook.isWorldGuardEnabled()) {
+            // No regions to set a rate, every location uses the default
+            return plugin.getSettings().getDefaultFlightRate();
+        }
+        return worldGuardHook.getFlightRate(player);
+    }
+    
+    /**
+     * Disable flight for a player whose time ran out
+     * @param player The player
+     */
+    private void expireFlight(Player player) {
+        disableFlight(player);
+        plugin.getSettings().getMessage("flight-expired").send(player);
     }
 
     /**
@@ -250,8 +424,8 @@ public class FlightManager {
      * @return Booster multiplier (1.0 for no boost)
      */
     public double getBoosterMultiplier(Player player) {
-        if (player.hasPermission("nusatempfly.booster")) {
-            return plugin.getConfig().getDouble("flight.booster-multiplier", 1.5);
+        if (plugin.getPermissionCache().has(player, TempFlyPermission.BOOSTER)) {
+            return plugin.getSettings().getBoosterMultiplier();
         }
         return 1.0; // No boost
     }
@@ -267,20 +441,22 @@ public class FlightManager {
         // Jika status flight diaktifkan dalam data dan pemain masih memiliki waktu 
         // atau memiliki izin bypass, aktifkan terbang
         if (playerData.isFlightEnabled() && 
-            (playerData.hasFlightTimeRemaining() || player.hasPermission("nusatempfly.bypass.timelimit"))) {
+            (playerData.hasFlightTimeRemaining() || plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT))) {
             
             // Aktifkan terbang
             player.setAllowFlight(true);
             player.setFlying(true);
+            trackRegion(player, true);
+            refreshCharging(player);
             
-            plugin.getLogger().info("Restored flight for " + player.getName());
+            plugin.getLogger().fine("Restored flight for " + player.getName());
         } else if (playerData.isFlightEnabled() && !playerData.hasFlightTimeRemaining() && 
-                   !player.hasPermission("nusatempfly.bypass.timelimit")) {
+                   !plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT)) {
             // Jika pemain kehabisan waktu tapi status masih aktif, nonaktifkan
             playerData.setFlightEnabled(false);
             player.setAllowFlight(false);
             player.setFlying(false);
-            plugin.getLogger().info("Cleared invalid flight state for " + player.getName());
+            plugin.getLogger().fine("Cleared invalid flight state for " + player.getName());
         }
     }
 
@@ -295,8 +471,12 @@ public class FlightManager {
         // Save whether the player was flying
         playerData.setFlightEnabled(player.isFlying());
         
+        // Settle the balance, the player is about to go offline
+        expiryScheduler.cancel(uuid);
+        plugin.getPlayerDataManager().stopCharging(playerData);
+        
         // If configured to do so, save player data immediately
-        if (plugin.getConfig().getBoolean("flight.save-on-disconnect")) {
+        if (plugin.getSettings().isSaveOnDisconnect()) {
             plugin.getPlayerDataManager().savePlayerData(uuid);
         }
     }
@@ -313,20 +493,24 @@ public class FlightManager {
         // Jika pemain benar-benar terbang (isFlying) tapi statusnya tidak diaktifkan di data
         if (player.isFlying() && !playerData.isFlightEnabled()) {
             // Periksa apakah pemain memiliki waktu terbang atau bypass
-            if (playerData.hasFlightTimeRemaining() || player.hasPermission("nusatempfly.bypass.timelimit")) {
+            if (playerData.hasFlightTimeRemaining() || plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT)) {
                 playerData.setFlightEnabled(true);
-                plugin.getLogger().info("Synchronized flight state for " + player.getName() + " (enabled)");
+                trackRegion(player, true);
+                refreshCharging(player);
+                plugin.getLogger().fine("Synchronized flight state for " + player.getName() + " (enabled)");
             } else {
                 // Pemain tidak punya waktu terbang tapi masih terbang, nonaktifkan
                 player.setAllowFlight(false);
                 player.setFlying(false);
-                plugin.getLogger().info("Disabled flight for " + player.getName() + " (no time)");
+                plugin.getLogger().fine("Disabled flight for " + player.getName() + " (no time)");
             }
         }
         // Jika pemain tidak terbang tapi status di data masih aktif
         else if (!player.isFlying() && playerData.isFlightEnabled()) {
             playerData.setFlightEnabled(false);
-            plugin.getLogger().info("Synchronized flight state for " + player.getName() + " (disabled)");
+            refreshCharging(player);
+            trackRegion(player, false);
+            plugin.getLogger().fine("Synchronized flight state for " + player.getName() + " (disabled)");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,255 @@
+package id.nusatempfly.hooks;
+
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldguard.WorldGuard;
+import com.sk89q.worldguard.protection.ApplicableRegionSet;
+import com.sk89q.worldguard.protection.flags.DoubleFlag;
+import com.sk89q.worldguard.protection.flags.StateFlag;
+import com.sk89q.worldguard.protection.managers.RegionManager;
+import com.sk89q.worldguard.protection.regions.ProtectedCuboidRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
+import com.sk89q.worldguard.protection.regions.RegionContainer;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of tempfly-allowed and tempfly-rate results per 16x16x16 chunk section.
+ * A section where every region that sets one of the flags covers the whole section has
+ * the same result everywhere, so it is queried once and reused. Only sections crossed by
+ * the boundary of such a region still need a WorldGuard query for every lookup.
+ * Sections are dropped when their chunk unloads, so the cache only covers loaded chunks.
+ */
+public class RegionFlagCache {
+    private static final String PROBE_ID = "__tempfly_probe__";
+    
+    private final StateFlag flag;
+    private final DoubleFlag rateFlag;
+    private final long ttlNanos;
+    // Verdicts per world, keyed by packed section coordinates
+    private final Map<UUID, Map<Long, Verdict>> worlds = new ConcurrentHashMap<>();
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong boundaryQueries = new AtomicLong();
+    
+    /**
+     * Create a cache
+     * @param flag The tempfly-allowed flag
+     * @param rateFlag The tempfly-rate flag, null if it is not registered
+     * @param ttlNanos Time after which a verdict is computed again, 0 to keep it until invalidated
+     */
+    public RegionFlagCache(StateFlag flag, DoubleFlag rateFlag, long ttlNanos) {
+        this.flag = flag;
+        this.rateFlag = rateFlag;
+        this.ttlNanos = ttlNanos;
+    }
+    
+    /**
+     * Check if flight is allowed at a location
+     * @param location Location to check
+     * @return true if allowed
+     */
+    public boolean canFly(Location location) {
+        return lookup(location).allowed;
+    }
+    
+    /**
+     * Get the tempfly-rate value at a location
+     * @param location Location to check
+     * @return Rate set by the regions, or null if none sets it
+     */
+    public Double getRate(Location location) {
+        return lookup(location).rate;
+    }
+    
+    private Verdict lookup(Location location) {
+        World world = location.getWorld();
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+        long key = sectionKey(x >> 4, y >> 4, z >> 4);
+        
+        Map<Long, Verdict> sections = worlds.computeIfAbsent(world.getUID(), uid -> new ConcurrentHashMap<>());
+        Verdict verdict = sections.get(key);
+        long now = System.nanoTime();
+        if (verdict == null || (ttlNanos > 0 && now - verdict.computedAt > ttlNanos)) {
+            misses.incrementAndGet();
+            verdict = computeVerdict(world, x >> 4, y >> 4, z >> 4, now);
+            sections.put(key, verdict);
+        } else if (!verdict.boundary) {
+            hits.incrementAndGet();
+            return verdict;
+        }
+        
+        if (!verdict.boundary) {
+            return verdict;
+        }
+        boundaryQueries.incrementAndGet();
+        return query(location, true, now);
+    }
+    
+    /**
+     * Drop every cached verdict, used when regions changed
+     */
+    public void invalidateAll() {
+        worlds.clear();
+    }
+    
+    /**
+     * Drop the cached verdicts of one world
+     * @param worldId World UUID
+     */
+    public void invalidateWorld(UUID worldId) {
+        worlds.remove(worldId);
+    }
+    
+    /**
+     * Drop the cached verdicts of every section of a chunk
+     * @param chunk Chunk that is unloading
+     */
+    public void invalidateChunk(Chunk chunk) {
+        World world = chunk.getWorld();
+        Map<Long, Verdict> sections = worlds.get(world.getUID());
+        if (sections == null) {
+            return;
+        }
+        int maxSectionY = (world.getMaxHeight() - 1) >> 4;
+        for (int sectionY = world.getMinHeight() >> 4; sectionY <= maxSectionY; sectionY++) {
+            sections.remove(sectionKey(chunk.getX(), sectionY, chunk.getZ()));
+        }
+    }
+    
+    /**
+     * Get the number of lookups answered from a cached verdict
+     * @return Hit count
+     */
+    public long getHits() {
+        return hits.get();
+    }
+    
+    /**
+     * Get the number of lookups that had to compute a section verdict
+     * @return Miss count
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    /**
+     * Get the number of lookups in boundary sections that needed a real query
+     * @return Boundary query count
+     */
+    public long getBoundaryQueries() {
+        return boundaryQueries.get();
+    }
+    
+    /**
+     * Get the share of lookups answered without querying WorldGuard
+     * @return Hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get() + boundaryQueries.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+    
+    /**
+     * Get the number of cached sections
+     * @return Section count over all worlds
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Long, Verdict> sections : worlds.values()) {
+            size += sections.size();
+        }
+        return size;
+    }
+    
+    private Verdict computeVerdict(World world, int sectionX, int sectionY, int sectionZ, long now) {
+        RegionContainer container = WorldGuard.getInstance().getPlatform().getRegionContainer();
+        RegionManager regionManager = container.get(BukkitAdapter.adapt(world));
+        
+        int minX = sectionX << 4;
+        int minY = sectionY << 4;
+        int minZ = sectionZ << 4;
+        Location center = new Location(world, minX + 8, minY + 8, minZ + 8);
+        if (regionManager == null) {
+            return query(center, false, now);
+        }
+        
+        BlockVector3 min = BlockVector3.at(minX, minY, minZ);
+        BlockVector3 max = BlockVector3.at(minX + 15, minY + 15, minZ + 15);
+        ApplicableRegionSet regions = regionManager.getApplicableRegions(new ProtectedCuboidRegion(PROBE_ID, true, min, max));
+        for (ProtectedRegion region : regions) {
+            if (setsFlag(region) && !coversSection(region, minX, minY, minZ)) {
+                return new Verdict(false, null, true, now);
+            }
+        }
+        
+        // Every region that matters covers the whole section, one query answers all of it
+        return query(center, false, now);
+    }
+    
+    private boolean setsFlag(ProtectedRegion region) {
+        // Children inherit the flag from their parents
+        for (ProtectedRegion current = region; current != null; current = current.getParent()) {
+            if (current.getFlag(flag) != null || (rateFlag != null && current.getFlag(rateFlag) != null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean coversSection(ProtectedRegion region, int minX, int minY, int minZ) {
+        // Corners only prove coverage for boxes, any other shape counts as a boundary
+        if (!(region instanceof ProtectedCuboidRegion)) {
+            return false;
+        }
+        for (int corner = 0; corner < 8; corner++) {
+            int x = minX + ((corner & 1) != 0 ? 15 : 0);
+            int y = minY + ((corner & 2) != 0 ? 15 : 0);
+            int z = minZ + ((corner & 4) != 0 ? 15 : 0);
+            if (!region.contains(BlockVector3.at(x, y, z))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private Verdict query(Location location, boolean boundary, long now) {
+        RegionContainer container = WorldGuard.getInstance().getPlatform().getRegionContainer();
+        // One region lookup answers both flags
+        ApplicableRegionSet regions = container.createQuery().getApplicableRegions(BukkitAdapter.adapt(location));
+        Double rate = rateFlag != null ? regions.queryValue(null, rateFlag) : null;
+        return new Verdict(regions.testState(null, flag), rate, boundary, now);
+    }
+    
+    private static long sectionKey(int sectionX, int sectionY, int sectionZ) {
+        // 26 bits for x and z, 12 bits for y covers every world height
+        return ((long) (sectionX & 0x3FFFFFF) << 38) | ((long) (sectionZ & 0x3FFFFFF) << 12) | (sectionY & 0xFFF);
+    }
+    
+    /**
+     * Cached result for one section
+     */
+    private static final class Verdict {
+        final boolean allowed;
+        final Double rate;
+        // True if regions with the flags end inside the section, lookups must query
+        final boolean boundary;
+        final long computedAt;
+        
+        Verdict(boolean allowed, Double rate, boolean boundary, long computedAt) {
+            this.allowed = allowed;
+            this.rate = rate;
+            this.boundary = boundary;
+            this.computedAt = computedAt;
+        }
+    }
+}
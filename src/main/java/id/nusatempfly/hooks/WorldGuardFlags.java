@@ -1,6 +1,7 @@
 package id.nusatempfly.hooks;
 
 import com.sk89q.worldguard.WorldGuard;
+import com.sk89q.worldguard.protection.flags.DoubleFlag;
 import com.sk89q.worldguard.protection.flags.Flag;
 import com.sk89q.worldguard.protection.flags.StateFlag;
 import com.sk89q.worldguard.protection.flags.registry.FlagConflictException;
@@ -17,6 +18,9 @@ public class WorldGuardFlags {
     // The custom flag we want to register
     public static StateFlag TEMP_FLY_ALLOWED;
     
+    // Flight time used per second of flight inside a region
+    public static DoubleFlag TEMP_FLY_RATE;
+    
     /**
      * This method should be called during server startup
      * It's separate from the plugin's enable method
@@ -44,5 +48,20 @@ public class WorldGuardFlags {
         } catch (Exception e) {
             Bukkit.getLogger().warning("NusaTempFly: Failed to register WorldGuard flag: " + e.getMessage());
         }
+        
+        try {
+            FlagRegistry registry = WorldGuard.getInstance().getFlagRegistry();
+            DoubleFlag flag = new DoubleFlag("tempfly-rate");
+            registry.register(flag);
+            TEMP_FLY_RATE = flag;
+        } catch (FlagConflictException e) {
+            Bukkit.getLogger().info("NusaTempFly: WorldGuard flag tempfly-rate already exists, using the existing one");
+            Flag<?> existing = WorldGuard.getInstance().getFlagRegistry().get("tempfly-rate");
+            if (existing instanceof DoubleFlag) {
+                TEMP_FLY_RATE = (DoubleFlag) existing;
+            }
+        } catch (Exception e) {
+            Bukkit.getLogger().warning("NusaTempFly: Failed to register WorldGuard flag tempfly-rate: " + e.getMessage());
+        }
     }
 }
\ No newline at end of file
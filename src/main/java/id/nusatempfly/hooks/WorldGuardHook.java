@@ -1,17 +1,28 @@
 package id.nusatempfly.hooks;
 
 import id.nusatempfly.Plugin;
+import id.nusatempfly.permission.TempFlyPermission;
 import org.bukkit.Bukkit;
-import org.bukkit.ChatColor;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.bukkit.event.vehicle.VehicleMoveEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldguard.WorldGuard;
 import com.sk89q.worldguard.bukkit.WorldGuardPlugin;
+import com.sk89q.worldguard.protection.flags.DoubleFlag;
 import com.sk89q.worldguard.protection.flags.Flag;
 import com.sk89q.worldguard.protection.flags.StateFlag;
 import com.sk89q.worldguard.protection.flags.registry.FlagRegistry;
@@ -19,6 +30,7 @@ import com.sk89q.worldguard.protection.regions.RegionContainer;
 import com.sk89q.worldguard.protection.regions.RegionQuery;
 
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
 
@@ -29,19 +41,25 @@ public class WorldGuardHook implements Listener {
     private final Plugin plugin;
     private boolean worldGuardEnabled = false;
     private StateFlag TEMP_FLY_ALLOWED;
+    private DoubleFlag TEMP_FLY_RATE;
     
-    // Map to track players' last region status
-    private final Map<UUID, Boolean> lastRegionAllowFlight = new HashMap<>();
+    // Players with TempFly enabled and where their region was last checked,
+    // moves of everyone else are ignored without any lookup
+    private final Map<UUID, FlyerState> activeFlyers = new HashMap<>();
+    
+    // Verdicts per chunk section, null when the cache is disabled
+    private volatile RegionFlagCache regionCache;
 
     public WorldGuardHook(Plugin plugin) {
         this.plugin = plugin;
         
         // Check if WorldGuard is present and enabled in config
         if (Bukkit.getPluginManager().getPlugin("WorldGuard") != null && 
-                plugin.getConfig().getBoolean("worldguard.enabled", true)) {
+                plugin.getSettings().isWorldGuardEnabled()) {
             try {
                 // Look for the flag first instead of trying to register it
                 lookupFlag();
+                reloadRegionCache();
                 worldGuardEnabled = true;
                 plugin.getLogger().info("WorldGuard integration enabled successfully!");
                 
@@ -79,6 +97,10 @@ public class WorldGuardHook implements Listener {
             // Create fallback flag
             TEMP_FLY_ALLOWED = new StateFlag("tempfly-allowed", true);
         }
+        
+        // Without a registered rate flag only the configured rates apply
+        Flag<?> rateFlag = registry.get("tempfly-rate");
+        TEMP_FLY_RATE = rateFlag instanceof DoubleFlag ? (DoubleFlag) rateFlag : null;
     }
     
     /**
@@ -87,22 +109,38 @@ public class WorldGuardHook implements Listener {
      * @return true if allowed, false if not
      */
     public boolean canFlyAtLocation(Player player) {
+        return canFlyAtLocation(player, player.getLocation());
+    }
+    
+    /**
+     * Check if a player can fly at a location
+     * @param player The player
+     * @param location Location to check
+     * @return true if allowed, false if not
+     */
+    public boolean canFlyAtLocation(Player player, Location location) {
         if (!worldGuardEnabled || TEMP_FLY_ALLOWED == null) {
             return true; // If WorldGuard is not enabled, flight is allowed everywhere
         }
         
         // Check if player has bypass permission
-        if (player.hasPermission("nusatempfly.bypass.region")) {
+        if (plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_REGION)) {
             return true;
         }
         
         try {
+            // Sections without a region boundary are answered from the cache
+            RegionFlagCache cache = regionCache;
+            if (cache != null) {
+                return cache.canFly(location);
+            }
+            
             // Get WorldGuard region container and query
             RegionContainer container = WorldGuard.getInstance().getPlatform().getRegionContainer();
             RegionQuery query = container.createQuery();
             
-            // Check if flight is allowed at the player's location
-            com.sk89q.worldedit.util.Location loc = BukkitAdapter.adapt(player.getLocation());
+            // Check if flight is allowed at the location
+            com.sk89q.worldedit.util.Location loc = BukkitAdapter.adapt(location);
             
             // Test state flag directly for the location
             return query.testState(loc, null, TEMP_FLY_ALLOWED);
@@ -112,43 +150,238 @@ public class WorldGuardHook implements Listener {
         }
     }
     
+    /**
+     * Get the rate flight time is used at for a player.
+     * Active flyers get the rate found at their last region check, so charging
+     * does not query WorldGuard.
+     * @param player The player
+     * @return Milliseconds of flight time used per millisecond of flight
+     */
+    public double getFlightRate(Player player) {
+        FlyerState state = activeFlyers.get(player.getUniqueId());
+        if (state != null) {
+            return state.rate;
+        }
+        Location location = player.getLocation();
+        return resolveRate(location, canFlyAtLocation(player, location));
+    }
+    
+    /**
+     * Resolve the rate at a location from the tempfly-rate flag and the configured rates
+     * @param location Location to check
+     * @param canFly Whether the player can fly at the location
+     * @return Rate, never below 0
+     */
+    private double resolveRate(Location location, boolean canFly) {
+        if (!worldGuardEnabled) {
+            return 1.0;
+        }
+        
+        Double rate = null;
+        if (TEMP_FLY_RATE != null) {
+            try {
+                RegionFlagCache cache = regionCache;
+                if (cache != null) {
+                    rate = cache.getRate(location);
+                } else {
+                    RegionQuery query = WorldGuard.getInstance().getPlatform().getRegionContainer().createQuery();
+                    rate = query.queryValue(BukkitAdapter.adapt(location), null, TEMP_FLY_RATE);
+                }
+            } catch (Exception e) {
+                plugin.getLogger().warning("Error checking WorldGuard region rate: " + e.getMessage());
+            }
+        }
+        
+        if (rate == null) {
+            rate = canFly ? plugin.getSettings().getDefaultFlightRate() : plugin.getSettings().getNoFlyRegionRate();
+        }
+        return Math.max(0, rate);
+    }
+    
+    /**
+     * Create the region cache again with the current settings
+     */
+    public void reloadRegionCache() {
+        regionCache = plugin.getSettings().isRegionCacheEnabled() && TEMP_FLY_ALLOWED != null ? 
+                new RegionFlagCache(TEMP_FLY_ALLOWED, TEMP_FLY_RATE, plugin.getSettings().getRegionCacheTtlNanos()) : null;
+    }
+    
+    /**
+     * Get the cache of tempfly-allowed verdicts
+     * @return RegionFlagCache, or null if disabled
+     */
+    public RegionFlagCache getRegionCache() {
+        return regionCache;
+    }
+    
+    /**
+     * Drop cached verdicts after a region command
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        handleRegionCommand(event.getMessage().substring(1));
+    }
+    
+    /**
+     * Drop cached verdicts after a region command from the console
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onServerCommand(ServerCommandEvent event) {
+        handleRegionCommand(event.getCommand());
+    }
+    
+    private void handleRegionCommand(String commandLine) {
+        if (regionCache == null) {
+            return;
+        }
+        String label = commandLine.trim().split(" ", 2)[0].toLowerCase(Locale.ROOT);
+        int colon = label.indexOf(':');
+        if (colon >= 0) {
+            label = label.substring(colon + 1);
+        }
+        if (plugin.getSettings().getRegionCacheInvalidateCommands().contains(label)) {
+            // WorldGuard changes the regions while running the command, drop the cache after it
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                RegionFlagCache cache = regionCache;
+                if (cache != null) {
+                    cache.invalidateAll();
+                }
+            });
+        }
+    }
+    
+    /**
+     * Forget the sections of an unloaded chunk, nobody is flying there
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        RegionFlagCache cache = regionCache;
+        if (cache != null) {
+            cache.invalidateChunk(event.getChunk());
+        }
+    }
+    
+    /**
+     * Forget every section of an unloaded world
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        RegionFlagCache cache = regionCache;
+        if (cache != null) {
+            cache.invalidateWorld(event.getWorld().getUID());
+        }
+    }
+    
+    /**
+     * Start tracking region changes of a player who enabled TempFly
+     * @param player The player
+     */
+    public void addActiveFlyer(Player player) {
+        if (!worldGuardEnabled || TEMP_FLY_ALLOWED == null || activeFlyers.containsKey(player.getUniqueId())) {
+            return;
+        }
+        Location location = player.getLocation();
+        boolean canFly = canFlyAtLocation(player, location);
+        FlyerState state = new FlyerState();
+        state.update(location, System.nanoTime(), canFly, resolveRate(location, canFly));
+        activeFlyers.put(player.getUniqueId(), state);
+    }
+    
+    /**
+     * Stop tracking region changes of a player who disabled TempFly
+     * @param uuid Player UUID
+     */
+    public void removeActiveFlyer(UUID uuid) {
+        activeFlyers.remove(uuid);
+    }
+    
+    /**
+     * Get the number of players whose region changes are tracked
+     * @return Active flyer count
+     */
+    public int getActiveFlyerCount() {
+        return activeFlyers.size();
+    }
+    
     /**
      * Track player movement between regions to toggle flight
      */
-    @EventHandler
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerMove(PlayerMoveEvent event) {
-        if (!worldGuardEnabled || TEMP_FLY_ALLOWED == null) {
+        if (activeFlyers.isEmpty()) {
             return;
         }
-        
-        Player player = event.getPlayer();
-        UUID uuid = player.getUniqueId();
-        
-        // Only check if the player has TempFly enabled
-        if (!plugin.getPlayerDataManager().isFlightEnabled(uuid)) {
+        checkRegion(event.getPlayer(), event.getTo(), false);
+    }
+    
+    /**
+     * Check the destination of a teleport right away, once no other plugin can cancel or redirect it
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        if (activeFlyers.isEmpty()) {
             return;
         }
-        
-        // Only check if the player has actually moved to a different block
-        Location from = event.getFrom();
-        Location to = event.getTo();
-        if (from.getBlockX() == to.getBlockX() && 
-            from.getBlockY() == to.getBlockY() && 
-            from.getBlockZ() == to.getBlockZ()) {
+        checkRegion(event.getPlayer(), event.getTo(), true);
+    }
+    
+    /**
+     * Check the respawn location right away
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        if (activeFlyers.isEmpty()) {
             return;
         }
-        
-        // Check if player can fly at the new location
-        boolean canFly = canFlyAtLocation(player);
-        
-        // If this is the first time we're checking this player's region, initialize their status
-        if (!lastRegionAllowFlight.containsKey(uuid)) {
-            lastRegionAllowFlight.put(uuid, canFly);
+        checkRegion(event.getPlayer(), event.getRespawnLocation(), true);
+    }
+    
+    /**
+     * Track passengers of a moving vehicle, players riding one get no move events
+     */
+    @EventHandler
+    public void onVehicleMove(VehicleMoveEvent event) {
+        if (activeFlyers.isEmpty()) {
+            return;
+        }
+        for (Entity passenger : event.getVehicle().getPassengers()) {
+            if (passenger instanceof Player) {
+                checkRegion((Player) passenger, event.getTo(), false);
+            }
+        }
+    }
+    
+    /**
+     * Check the region of an active flyer and toggle flight when it changed
+     * @param player The player
+     * @param to Location the player is moving to
+     * @param force Check now instead of waiting for the sampling distance or interval
+     */
+    private void checkRegion(Player player, Location to, boolean force) {
+        FlyerState state = activeFlyers.get(player.getUniqueId());
+        if (state == null || to == null) {
             return;
         }
         
-        // Check if the player's flight permission has changed
-        boolean previousCanFly = lastRegionAllowFlight.get(uuid);
+        long now = System.nanoTime();
+        if (!force && !state.isWorld(to.getWorld())) {
+            force = true;
+        }
+        if (!force) {
+            // Check after moving far enough, or after the interval once the player left the checked block
+            double distance = plugin.getSettings().getRegionSampleDistance();
+            if (state.distanceSquared(to) < distance * distance && 
+                    (now - state.checkedAt < plugin.getSettings().getRegionSampleIntervalNanos() || state.isSameBlock(to))) {
+                return;
+            }
+        }
+        
+        // Check if player can fly at the new location, and at which rate
+        boolean canFly = canFlyAtLocation(player, to);
+        double rate = resolveRate(to, canFly);
+        boolean previousCanFly = state.canFly;
+        double previousRate = state.rate;
+        state.update(to, now, canFly, rate);
         
         if (previousCanFly && !canFly) {
             // Player entered a no-fly region
@@ -156,10 +389,10 @@ public class WorldGuardHook implements Listener {
         } else if (!previousCanFly && canFly) {
             // Player exited a no-fly region
             handleExitNoFlyRegion(player);
+        } else if (rate != previousRate) {
+            // Charge the new rate from here on
+            plugin.getFlightManager().refreshCharging(player);
         }
-        
-        // Update player's last region status
-        lastRegionAllowFlight.put(uuid, canFly);
     }
     
     /**
@@ -171,12 +404,12 @@ public class WorldGuardHook implements Listener {
         player.setAllowFlight(false);
         player.setFlying(false);
         
+        // Switch lazy time accounting to the rate of the region
+        plugin.getFlightManager().refreshCharging(player);
+        
         // Send message if configured to do so
-        if (plugin.getConfig().getBoolean("worldguard.notify-region-change", true)) {
-            String message = ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("worldguard.no-fly-region-enter-message"));
-            player.sendMessage(ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("messages.prefix") + message));
+        if (plugin.getSettings().isNotifyRegionChange()) {
+            plugin.getSettings().getNoFlyRegionEnterMessage().send(player);
         }
     }
     
@@ -188,6 +421,9 @@ public class WorldGuardHook implements Listener {
     private void handleExitNoFlyRegion(Player player) {
         UUID uuid = player.getUniqueId();
         
+        // Switch lazy time accounting back to the rate outside the region
+        plugin.getFlightManager().refreshCharging(player);
+        
         // Only re-enable flight if the player still has TempFly enabled in our system
         if (plugin.getPlayerDataManager().isFlightEnabled(uuid) && 
             plugin.getPlayerDataManager().getRemainingFlightTime(uuid) > 0) {
@@ -197,11 +433,8 @@ public class WorldGuardHook implements Listener {
             player.setFlying(true);
             
             // Send message if configured to do so
-            if (plugin.getConfig().getBoolean("worldguard.notify-region-change", true)) {
-                String message = ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("worldguard.no-fly-region-exit-message"));
-                player.sendMessage(ChatColor.translateAlternateColorCodes('&', 
-                    plugin.getConfig().getString("messages.prefix") + message));
+            if (plugin.getSettings().isNotifyRegionChange()) {
+                plugin.getSettings().getNoFlyRegionExitMessage().send(player);
             }
         }
     }
@@ -228,6 +461,47 @@ public class WorldGuardHook implements Listener {
      * @param uuid Player UUID
      */
     public void removePlayer(UUID uuid) {
-        lastRegionAllowFlight.remove(uuid);
+        activeFlyers.remove(uuid);
+    }
+    
+    /**
+     * Where the region of an active flyer was last checked and the results
+     */
+    private static final class FlyerState {
+        private UUID worldId;
+        private double x;
+        private double y;
+        private double z;
+        private long checkedAt;
+        private boolean canFly;
+        private double rate;
+        
+        void update(Location location, long now, boolean canFly, double rate) {
+            World world = location.getWorld();
+            this.worldId = world != null ? world.getUID() : null;
+            this.x = location.getX();
+            this.y = location.getY();
+            this.z = location.getZ();
+            this.checkedAt = now;
+            this.canFly = canFly;
+            this.rate = rate;
+        }
+        
+        boolean isWorld(World world) {
+            return world != null && world.getUID().equals(worldId);
+        }
+        
+        boolean isSameBlock(Location location) {
+            return (int) Math.floor(x) == location.getBlockX() && 
+                    (int) Math.floor(y) == location.getBlockY() && 
+                    (int) Math.floor(z) == location.getBlockZ();
+        }
+        
+        double distanceSquared(Location location) {
+            double dx = location.getX() - x;
+            double dy = location.getY() - y;
+            double dz = location.getZ() - z;
+            return dx * dx + dy * dy + dz * dz;
+        }
     }
 }
\ No newline at end of file
@@ -1,8 +1,8 @@
 package id.nusatempfly.listeners;
 
 import id.nusatempfly.Plugin;
+import id.nusatempfly.permission.TempFlyPermission;
 import id.nusatempfly.data.PlayerData;
-import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -28,27 +28,29 @@ public class FlightToggleListener implements Listener {
         // If toggling flight on
         if (event.isFlying()) {
             // Check if player has permission to use
-            if (!player.hasPermission("nusatempfly.use")) {
+            if (!plugin.getPermissionCache().has(player, TempFlyPermission.USE)) {
                 return; // Allow default behavior
             }
             
             // Check if player has flight time or bypass permission
-            if (!playerData.hasFlightTimeRemaining() && !player.hasPermission("nusatempfly.bypass.timelimit")) {
+            if (!playerData.hasFlightTimeRemaining() && !plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_TIMELIMIT)) {
                 event.setCancelled(true);
-                String prefix = ChatColor.translateAlternateColorCodes('&', 
-                        plugin.getConfig().getString("messages.prefix"));
-                player.sendMessage(prefix + ChatColor.RED + "You don't have any flight time remaining!");
+                plugin.getSettings().getMessage("no-time-remaining").send(player);
                 return;
             }
             
             // If we get here, player can use flight
             playerData.setFlightEnabled(true);
+            plugin.getFlightManager().trackRegion(player, true);
+            plugin.getFlightManager().refreshCharging(player);
         } 
         // If toggling flight off
         else {
             // Only manage our own flight states
             if (playerData.isFlightEnabled()) {
                 playerData.setFlightEnabled(false);
+                plugin.getFlightManager().refreshCharging(player);
+                plugin.getFlightManager().trackRegion(player, false);
             }
         }
     }
@@ -56,7 +58,7 @@ public class FlightToggleListener implements Listener {
     @EventHandler(priority = EventPriority.NORMAL)
     public void onPlayerDamage(EntityDamageEvent event) {
         // Check if configured to disable flight on damage
-        if (!plugin.getConfig().getBoolean("flight.disable-on-damage")) {
+        if (!plugin.getSettings().isDisableOnDamage()) {
             return;
         }
         
@@ -68,7 +70,7 @@ public class FlightToggleListener implements Listener {
         Player player = (Player) event.getEntity();
         
         // Skip if player has bypass permission
-        if (player.hasPermission("nusatempfly.bypass.damage")) {
+        if (plugin.getPermissionCache().has(player, TempFlyPermission.BYPASS_DAMAGE)) {
             return;
         }
         
@@ -83,8 +85,6 @@ public class FlightToggleListener implements Listener {
         plugin.getFlightManager().disableFlight(player);
         
         // Send message
-        String prefix = ChatColor.translateAlternateColorCodes('&', 
-                plugin.getConfig().getString("messages.prefix"));
-        player.sendMessage(prefix + ChatColor.RED + "Your flight has been disabled due to taking damage!");
+        plugin.getSettings().getMessage("flight-disabled-damage").send(player);
     }
 }
\ No newline at end of file
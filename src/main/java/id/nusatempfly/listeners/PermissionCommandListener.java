@@ -0,0 +1,51 @@
+package id.nusatempfly.listeners;
+
+import id.nusatempfly.Plugin;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+
+import java.util.Locale;
+
+/**
+ * Drops cached permissions when a command of a permission plugin is used
+ */
+public class PermissionCommandListener implements Listener {
+    private final Plugin plugin;
+    
+    public PermissionCommandListener(Plugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        // Strip the leading slash
+        handleCommand(event.getMessage().substring(1));
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onServerCommand(ServerCommandEvent event) {
+        handleCommand(event.getCommand());
+    }
+    
+    private void handleCommand(String commandLine) {
+        String label = commandLine.trim().split(" ", 2)[0].toLowerCase(Locale.ROOT);
+        // Ignore namespaced labels like luckperms:lp
+        int colon = label.indexOf(':');
+        if (colon >= 0) {
+            label = label.substring(colon + 1);
+        }
+        
+        if (plugin.getSettings().getPermissionInvalidateCommands().contains(label)) {
+            // The permission plugin applies the change while running the command, drop the cache after it
+            // and charge flying players whose bypass permission changed
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                plugin.getPermissionCache().invalidateAll();
+                plugin.getFlightManager().recheckPermissions();
+            });
+        }
+    }
+}
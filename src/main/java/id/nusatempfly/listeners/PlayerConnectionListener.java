@@ -7,9 +7,13 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.io.IOException;
 import java.util.UUID;
+import java.util.logging.Level;
 
 /**
  * Listener for player connection events (join/quit)
@@ -21,17 +25,48 @@ public class PlayerConnectionListener implements Listener {
         this.plugin = plugin;
     }
     
+    @EventHandler(priority = EventPriority.HIGH)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        
+        // Remember the name for commands targeting the player while offline
+        plugin.getPlayerDataManager().getNameIndex().update(event.getUniqueId(), event.getName());
+        
+        // Load player data off the main thread so the join never touches the disk
+        try {
+            plugin.getPlayerDataManager().preloadPlayerData(event.getUniqueId());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to preload flight data for " + event.getName(), e);
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, 
+                    plugin.getSettings().getUnprefixedMessage("data-load-failed").build());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPreLoginResult(AsyncPlayerPreLoginEvent event) {
+        // Another plugin denied the login after we preloaded, drop the staged data
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            plugin.getPlayerDataManager().discardPreloadedData(event.getUniqueId());
+        }
+    }
+    
     @EventHandler(priority = EventPriority.NORMAL)
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
         
-        // Load player data
-        plugin.getPlayerDataManager().getPlayerData(player);
+        plugin.getPermissionCache().refresh(player);
+        plugin.getFlightManager().trackPlayer(player);
         
-        // Restore flight state if needed
-        plugin.getFlightManager().restoreFlightState(player);
+        // Take over the preloaded player data, then restore flight state if needed
+        plugin.getPlayerDataManager().promotePreloadedData(player.getUniqueId(), () -> {
+            if (player.isOnline()) {
+                plugin.getFlightManager().restoreFlightState(player);
+            }
+        });
         
-        plugin.getLogger().info("Loaded flight data for " + player.getName());
+        plugin.getLogger().fine("Loaded flight data for " + player.getName());
     }
     
     @EventHandler(priority = EventPriority.NORMAL)
@@ -40,6 +75,7 @@ public class PlayerConnectionListener implements Listener {
         UUID uuid = player.getUniqueId();
         
         // Save flight state
+        plugin.getFlightManager().untrackPlayer(uuid);
         plugin.getFlightManager().saveFlightState(player);
         
         // If player had flight enabled but has no time remaining, disable it
@@ -54,10 +90,14 @@ public class PlayerConnectionListener implements Listener {
             worldGuardHook.removePlayer(uuid);
         }
         
-        // Save and unload player data
-        plugin.getPlayerDataManager().savePlayerData(uuid);
+        plugin.getPermissionCache().invalidate(uuid);
+        if (plugin.getPlaceholders() != null) {
+            plugin.getPlaceholders().invalidate(uuid);
+        }
+        
+        // Unload player data (queues a save if anything changed)
         plugin.getPlayerDataManager().unloadPlayerData(uuid);
         
-        plugin.getLogger().info("Saved and unloaded flight data for " + player.getName());
+        plugin.getLogger().fine("Saved and unloaded flight data for " + player.getName());
     }
 }
\ No newline at end of file
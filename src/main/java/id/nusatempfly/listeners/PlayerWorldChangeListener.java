@@ -22,6 +22,9 @@ public class PlayerWorldChangeListener implements Listener {
     public void onPlayerChangeWorld(PlayerChangedWorldEvent event) {
         Player player = event.getPlayer();
         
+        // Izin bisa berbeda per dunia, ambil ulang sebelum sinkronisasi
+        plugin.getPermissionCache().refresh(player);
+        
         // Sinkronkan status terbang saat pemain pindah dunia
         // Bug terjadi karena status terbang player tidak disinkronkan saat pindah dunia
         plugin.getFlightManager().synchronizeFlightState(player);
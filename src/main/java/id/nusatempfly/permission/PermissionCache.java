@@ -0,0 +1,137 @@
+package id.nusatempfly.permission;
+
+import id.nusatempfly.Plugin;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player snapshot of the plugin's permission nodes, stored as a bitset.
+ * Permission plugins resolve hasPermission by walking group trees, which is too slow for
+ * checks that run every second or on every move. A snapshot is taken on join and world
+ * change, dropped when a permission command runs, and expires after a configurable TTL.
+ * <p>
+ * Permissions are only resolved on the main thread. Checks from other threads, such as
+ * PlaceholderAPI or async tab completion, are answered from the snapshot even if it expired,
+ * and a missing or expired snapshot is resolved on the next tick.
+ */
+public class PermissionCache {
+    private final Plugin plugin;
+    private final Map<UUID, Snapshot> snapshots = new ConcurrentHashMap<>();
+    // Players whose snapshot is resolved on the next tick for a check from another thread
+    private final Set<UUID> pendingRefreshes = ConcurrentHashMap.newKeySet();
+    private volatile long ttlNanos;
+    
+    public PermissionCache(Plugin plugin) {
+        this.plugin = plugin;
+        reload();
+    }
+    
+    /**
+     * Read the TTL from the settings and drop every snapshot
+     */
+    public void reload() {
+        ttlNanos = plugin.getSettings().getPermissionTtlNanos();
+        snapshots.clear();
+    }
+    
+    /**
+     * Check a permission using the player's snapshot, resolving it again if it is missing or expired.
+     * Off the main thread a player without a snapshot is treated as not having the permission
+     * until it is resolved.
+     * @param player The player
+     * @param permission Permission to check
+     * @return true if the player has the permission
+     */
+    public boolean has(Player player, TempFlyPermission permission) {
+        Snapshot snapshot = snapshots.get(player.getUniqueId());
+        if (snapshot == null || System.nanoTime() - snapshot.resolvedAt > ttlNanos) {
+            if (!Bukkit.isPrimaryThread()) {
+                scheduleRefresh(player);
+                return snapshot != null && (snapshot.bits & permission.getMask()) != 0;
+            }
+            snapshot = refresh(player);
+        }
+        return (snapshot.bits & permission.getMask()) != 0;
+    }
+    
+    // Permission plugins are not thread-safe, resolve on the main thread once per player
+    private void scheduleRefresh(Player player) {
+        UUID uuid = player.getUniqueId();
+        if (!pendingRefreshes.add(uuid) || !plugin.isEnabled()) {
+            return;
+        }
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            pendingRefreshes.remove(uuid);
+            if (player.isOnline()) {
+                refresh(player);
+            }
+        });
+    }
+    
+    /**
+     * Resolve every permission of a player again. Must be called on the main thread.
+     * @param player The player
+     * @return New snapshot
+     */
+    public Snapshot refresh(Player player) {
+        int bits = 0;
+        for (TempFlyPermission permission : TempFlyPermission.values()) {
+            if (player.hasPermission(permission.getNode())) {
+                bits |= permission.getMask();
+            }
+        }
+        Snapshot snapshot = new Snapshot(bits, System.nanoTime());
+        snapshots.put(player.getUniqueId(), snapshot);
+        return snapshot;
+    }
+    
+    /**
+     * Drop the snapshot of a player, it is resolved again on the next check
+     * @param uuid Player UUID
+     */
+    public void invalidate(UUID uuid) {
+        snapshots.remove(uuid);
+    }
+    
+    /**
+     * Drop every snapshot
+     */
+    public void invalidateAll() {
+        snapshots.clear();
+    }
+    
+    /**
+     * Get the number of cached snapshots
+     * @return Snapshot count
+     */
+    public int size() {
+        return snapshots.size();
+    }
+    
+    /**
+     * Resolved permissions of a player at a point in time
+     */
+    public static final class Snapshot {
+        private final int bits;
+        private final long resolvedAt;
+        
+        private Snapshot(int bits, long resolvedAt) {
+            this.bits = bits;
+            this.resolvedAt = resolvedAt;
+        }
+        
+        /**
+         * Check a permission in this snapshot
+         * @param permission Permission to check
+         * @return true if the player had the permission
+         */
+        public boolean has(TempFlyPermission permission) {
+            return (bits & permission.getMask()) != 0;
+        }
+    }
+}
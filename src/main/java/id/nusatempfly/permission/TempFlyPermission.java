@@ -0,0 +1,35 @@
+package id.nusatempfly.permission;
+
+/**
+ * Permission nodes of the plugin that are checked often enough to be cached
+ */
+public enum TempFlyPermission {
+    USE("nusatempfly.use"),
+    BYPASS_TIMELIMIT("nusatempfly.bypass.timelimit"),
+    BYPASS_REGION("nusatempfly.bypass.region"),
+    BYPASS_DAMAGE("nusatempfly.bypass.damage"),
+    BOOSTER("nusatempfly.booster"),
+    ADMIN("nusatempfly.admin");
+    
+    private final String node;
+    
+    TempFlyPermission(String node) {
+        this.node = node;
+    }
+    
+    /**
+     * Get the permission node
+     * @return Permission node
+     */
+    public String getNode() {
+        return node;
+    }
+    
+    /**
+     * Get the bit of this permission in a cached permission set
+     * @return Bit mask
+     */
+    public int getMask() {
+        return 1 << ordinal();
+    }
+}
@@ -1,23 +1,55 @@
 package id.nusatempfly.placeholders;
 
 import id.nusatempfly.Plugin;
-import id.nusatempfly.util.TimeFormatter;
+import id.nusatempfly.config.Settings;
+import id.nusatempfly.data.FlightLeaderboard;
+import id.nusatempfly.data.PlayerDataManager;
+import id.nusatempfly.permission.TempFlyPermission;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
- * PlaceholderAPI integration for NusaTempFly
+ * PlaceholderAPI integration for NusaTempFly.
+ * Scoreboards and tab lists request the same placeholders many times a second, so the
+ * rendered values of online players are cached until their remaining seconds, flight
+ * state, booster or the settings change. A repeated request only does a few lookups.
+ * Leaderboard values are cached per leaderboard snapshot the same way.
  */
 public class TempFlyPlaceholders extends PlaceholderExpansion {
+    // Placeholder identifiers, lowercase
+    private static final Map<String, Request> IDENTIFIERS = new HashMap<>();
+    // Identifiers parsed or seen in another case, bounded so random requests cannot grow it forever
+    private static final int MAX_ALIASES = 256;
+    // Leaderboard positions whose rendered values are cached
+    private static final int CACHED_POSITIONS = 100;
+    private static final String NONE = "-";
+
+    static {
+        for (Placeholder placeholder : Placeholder.values()) {
+            if (placeholder.id != null) {
+                IDENTIFIERS.put(placeholder.id, new Request(placeholder, 0));
+            }
+        }
+    }
+
     private final Plugin plugin;
-    private final TimeFormatter timeFormatter;
+    private final Map<String, Request> aliases = new ConcurrentHashMap<>();
+    // Rendered values per online player
+    private final Map<UUID, RenderState> renderCache = new ConcurrentHashMap<>();
+    // Rendered leaderboard entries of the latest snapshot
+    private volatile TopRender topRender;
 
     public TempFlyPlaceholders(Plugin plugin) {
         this.plugin = plugin;
-        this.timeFormatter = new TimeFormatter(plugin);
     }
 
     @Override
@@ -47,61 +79,306 @@ public class TempFlyPlaceholders extends PlaceholderExpansion {
 
     @Override
     public String onRequest(OfflinePlayer player, @NotNull String params) {
+        Request request = lookup(params);
+        if (request == null) {
+            return null; // Invalid placeholder
+        }
+        Placeholder placeholder = request.placeholder;
+
+        // Leaderboard entries don't depend on the player, holograms request them without one
+        if (placeholder == Placeholder.TOP_NAME || placeholder == Placeholder.TOP_TIME) {
+            return renderTop(placeholder, request.position);
+        }
+
         if (player == null) {
             return "";
         }
 
-        // Get online player if available (some placeholders require an online player)
+        UUID uuid = player.getUniqueId();
+        PlayerDataManager playerDataManager = plugin.getPlayerDataManager();
+        long seconds = playerDataManager.getRemainingFlightTime(uuid);
+        boolean enabled = playerDataManager.isFlightEnabled(uuid);
+        Settings settings = plugin.getSettings();
+
+        // Get online player if available (booster placeholders require an online player)
         Player onlinePlayer = player.getPlayer();
-        
-        // Handle different placeholder requests
-        switch (params.toLowerCase()) {
+        boolean booster = onlinePlayer != null && plugin.getPermissionCache().has(onlinePlayer, TempFlyPermission.BOOSTER);
+        if (onlinePlayer == null) {
+            // Offline players are rarely shown, don't keep anything for them
+            if (placeholder == Placeholder.RANK) {
+                return renderRank(playerDataManager.getLeaderboard().getRank(uuid));
+            }
+            return render(placeholder, seconds, enabled, false, settings);
+        }
+
+        RenderState state = renderCache.get(uuid);
+        if (state == null || !state.matches(seconds, enabled, booster, settings)) {
+            state = new RenderState(seconds, enabled, booster, settings);
+            renderCache.put(uuid, state);
+        }
+
+        if (placeholder == Placeholder.RANK) {
+            // The rank also moves when other players change, only the text is cached
+            int rank = playerDataManager.getLeaderboard().getRank(uuid);
+            RankText rankText = state.rankText;
+            if (rankText == null || rankText.rank != rank) {
+                rankText = new RankText(rank, renderRank(rank));
+                state.rankText = rankText;
+            }
+            return rankText.text;
+        }
+
+        String value = state.values[placeholder.ordinal()];
+        if (value == null) {
+            // Two threads may render the same value at once, both results are equal
+            value = render(placeholder, seconds, enabled, booster, settings);
+            state.values[placeholder.ordinal()] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Drop the cached values of a player
+     * @param uuid Player UUID
+     */
+    public void invalidate(UUID uuid) {
+        renderCache.remove(uuid);
+    }
+
+    /**
+     * Find the placeholder for the requested identifier
+     * @param params Requested identifier
+     * @return Parsed request, or null if unknown
+     */
+    private Request lookup(String params) {
+        Request request = IDENTIFIERS.get(params);
+        if (request != null) {
+            return request;
+        }
+        request = aliases.get(params);
+        if (request != null) {
+            return request;
+        }
+
+        // Identifiers are case-insensitive, remember the parsed request for the next time
+        String lowercase = params.toLowerCase(Locale.ROOT);
+        request = IDENTIFIERS.get(lowercase);
+        if (request == null) {
+            request = parseTop(lowercase);
+        }
+        if (request != null && aliases.size() < MAX_ALIASES) {
+            aliases.put(params, request);
+        }
+        return request;
+    }
+
+    /**
+     * Parse top_&lt;n&gt;_name and top_&lt;n&gt;_time
+     * @param params Lowercase identifier
+     * @return Parsed request, or null if it is not a leaderboard placeholder
+     */
+    private static Request parseTop(String params) {
+        if (!params.startsWith("top_")) {
+            return null;
+        }
+        int separator = params.indexOf('_', 4);
+        if (separator < 0) {
+            return null;
+        }
+
+        Placeholder placeholder;
+        switch (params.substring(separator + 1)) {
+            case "name":
+                placeholder = Placeholder.TOP_NAME;
+                break;
+            case "time":
+                placeholder = Placeholder.TOP_TIME;
+                break;
+            default:
+                return null;
+        }
+        try {
+            int position = Integer.parseInt(params.substring(4, separator));
+            return position > 0 ? new Request(placeholder, position) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String renderTop(Placeholder placeholder, int position) {
+        FlightLeaderboard.Snapshot snapshot = plugin.getPlayerDataManager().getLeaderboard().getSnapshot();
+        Settings settings = plugin.getSettings();
+        if (position > CACHED_POSITIONS) {
+            return renderEntry(placeholder, snapshot.get(position), settings);
+        }
+
+        TopRender render = topRender;
+        if (render == null || render.snapshot != snapshot || render.settings != settings) {
+            render = new TopRender(snapshot, settings);
+            topRender = render;
+        }
+        String[] values = placeholder == Placeholder.TOP_NAME ? render.names : render.times;
+        String value = values[position - 1];
+        if (value == null) {
+            value = renderEntry(placeholder, snapshot.get(position), settings);
+            values[position - 1] = value;
+        }
+        return value;
+    }
+
+    private String renderEntry(Placeholder placeholder, FlightLeaderboard.Entry entry, Settings settings) {
+        if (entry == null) {
+            return NONE;
+        }
+        if (placeholder == Placeholder.TOP_TIME) {
+            return settings.getTimeFormatter().format(entry.getSeconds());
+        }
+
+        // Ranked players joined at some point, so the name index knows them
+        String name = plugin.getPlayerDataManager().getNameIndex().getName(entry.getPlayerUUID());
+        if (name == null) {
+            name = Bukkit.getOfflinePlayer(entry.getPlayerUUID()).getName();
+        }
+        return name != null ? name : NONE;
+    }
+
+    private static String renderRank(int rank) {
+        return rank > 0 ? String.valueOf(rank) : NONE;
+    }
+
+    private String render(Placeholder placeholder, long seconds, boolean enabled, boolean booster, Settings settings) {
+        switch (placeholder) {
             // Time remaining placeholders
-            case "time_remaining":
-                return String.valueOf(plugin.getPlayerDataManager().getRemainingFlightTime(player.getUniqueId()));
-            case "time_formatted":
-                return timeFormatter.format(plugin.getPlayerDataManager().getRemainingFlightTime(player.getUniqueId()));
-            case "time_compact":
-                return timeFormatter.formatCompact(plugin.getPlayerDataManager().getRemainingFlightTime(player.getUniqueId()));
-                
+            case TIME_REMAINING:
+                return String.valueOf(seconds);
+            case TIME_FORMATTED:
+                return settings.getTimeFormatter().format(seconds);
+            case TIME_COMPACT:
+                return settings.getTimeFormatter().formatCompact(seconds);
+
             // Flight status placeholders
-            case "enabled":
-                return plugin.getPlayerDataManager().isFlightEnabled(player.getUniqueId()) ? "Yes" : "No";
-            case "enabled_bool":
-                return plugin.getPlayerDataManager().isFlightEnabled(player.getUniqueId()) ? "true" : "false";
-                
+            case ENABLED:
+                return enabled ? "Yes" : "No";
+            case ENABLED_BOOL:
+                return enabled ? "true" : "false";
+
             // Booster placeholders
-            case "has_booster":
-                if (onlinePlayer == null) return "false";
-                return onlinePlayer.hasPermission("nusatempfly.booster") ? "true" : "false";
-            case "booster_multiplier":
-                if (onlinePlayer == null) return "1.0";
-                return String.valueOf(onlinePlayer.hasPermission("nusatempfly.booster") ? 
-                        plugin.getConfig().getDouble("flight.booster-multiplier", 1.5) : 1.0);
-            case "booster_percentage":
-                if (onlinePlayer == null) return "0%";
-                if (!onlinePlayer.hasPermission("nusatempfly.booster")) return "0%";
-                double multiplier = plugin.getConfig().getDouble("flight.booster-multiplier", 1.5);
-                int percentage = (int) ((multiplier - 1.0) * 100);
+            case HAS_BOOSTER:
+                return booster ? "true" : "false";
+            case BOOSTER_MULTIPLIER:
+                return String.valueOf(booster ? settings.getBoosterMultiplier() : 1.0);
+            case BOOSTER_PERCENTAGE:
+                if (!booster) return "0%";
+                int percentage = (int) ((settings.getBoosterMultiplier() - 1.0) * 100);
                 return percentage + "%";
-                
+
             // Time components placeholders
-            case "time_days":
-                long seconds = plugin.getPlayerDataManager().getRemainingFlightTime(player.getUniqueId());
+            case TIME_DAYS:
                 return String.valueOf(seconds / 86400);
-            case "time_hours":
-                seconds = plugin.getPlayerDataManager().getRemainingFlightTime(player.getUniqueId());
+            case TIME_HOURS:
                 return String.valueOf((seconds % 86400) / 3600);
-            case "time_minutes":
-                seconds = plugin.getPlayerDataManager().getRemainingFlightTime(player.getUniqueId());
+            case TIME_MINUTES:
                 return String.valueOf((seconds % 3600) / 60);
-            case "time_seconds":
-                seconds = plugin.getPlayerDataManager().getRemainingFlightTime(player.getUniqueId());
+            case TIME_SECONDS:
                 return String.valueOf(seconds % 60);
-                
-            // Invalid placeholder
+
             default:
                 return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Placeholders provided by this expansion
+     */
+    private enum Placeholder {
+        TIME_REMAINING("time_remaining"),
+        TIME_FORMATTED("time_formatted"),
+        TIME_COMPACT("time_compact"),
+        ENABLED("enabled"),
+        ENABLED_BOOL("enabled_bool"),
+        HAS_BOOSTER("has_booster"),
+        BOOSTER_MULTIPLIER("booster_multiplier"),
+        BOOSTER_PERCENTAGE("booster_percentage"),
+        TIME_DAYS("time_days"),
+        TIME_HOURS("time_hours"),
+        TIME_MINUTES("time_minutes"),
+        TIME_SECONDS("time_seconds"),
+        RANK("rank"),
+        // Leaderboard entries, identified by top_<n>_name and top_<n>_time
+        TOP_NAME(null),
+        TOP_TIME(null);
+
+        private static final int COUNT = values().length;
+
+        private final String id;
+
+        Placeholder(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * A requested placeholder with its leaderboard position, if any
+     */
+    private static final class Request {
+        final Placeholder placeholder;
+        final int position;
+
+        Request(Placeholder placeholder, int position) {
+            this.placeholder = placeholder;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Rendered leaderboard entries of one snapshot
+     */
+    private static final class TopRender {
+        final FlightLeaderboard.Snapshot snapshot;
+        final Settings settings;
+        final String[] names = new String[CACHED_POSITIONS];
+        final String[] times = new String[CACHED_POSITIONS];
+
+        TopRender(FlightLeaderboard.Snapshot snapshot, Settings settings) {
+            this.snapshot = snapshot;
+            this.settings = settings;
+        }
+    }
+
+    /**
+     * A rank and its text
+     */
+    private static final class RankText {
+        final int rank;
+        final String text;
+
+        RankText(int rank, String text) {
+            this.rank = rank;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Values rendered for one state of a player, replaced as a whole when the state changes
+     */
+    private static final class RenderState {
+        final long seconds;
+        final boolean enabled;
+        final boolean booster;
+        final Settings settings;
+        final String[] values = new String[Placeholder.COUNT];
+        volatile RankText rankText;
+
+        RenderState(long seconds, boolean enabled, boolean booster, Settings settings) {
+            this.seconds = seconds;
+            this.enabled = enabled;
+            this.booster = booster;
+            this.settings = settings;
+        }
+
+        boolean matches(long seconds, boolean enabled, boolean booster, Settings settings) {
+            return this.seconds == seconds && this.enabled == enabled &&
+                    this.booster == booster && this.settings == settings;
+        }
+    }
+}
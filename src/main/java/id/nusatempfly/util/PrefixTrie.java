@@ -0,0 +1,202 @@
+package id.nusatempfly.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Case-insensitive set of words that can list the words starting with a prefix.
+ * Words are stored under their lowercase form and returned as they were added, in
+ * alphabetical order. Listing walks only the nodes below the prefix and stops at the
+ * requested limit, so the cost does not grow with the number of words.
+ * <p>
+ * Thread-safe, listings from several threads run in parallel.
+ */
+public class PrefixTrie {
+    private final Node root = new Node();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    /**
+     * Add a word, replacing the spelling of an equal word in another case
+     * @param word Word to add
+     * @return true if the word was not in the trie yet
+     */
+    public boolean add(String word) {
+        String key = word.toLowerCase(Locale.ROOT);
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.childOrCreate(key.charAt(i));
+            }
+            boolean added = node.word == null;
+            node.word = word;
+            if (added) {
+                // Count the word on its path so emptied branches can be pruned
+                node = root;
+                root.words++;
+                for (int i = 0; i < key.length(); i++) {
+                    node = node.child(key.charAt(i));
+                    node.words++;
+                }
+            }
+            return added;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Remove a word
+     * @param word Word to remove, any case
+     * @return true if the word was in the trie
+     */
+    public boolean remove(String word) {
+        String key = word.toLowerCase(Locale.ROOT);
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null || node.word == null) {
+                return false;
+            }
+            node.word = null;
+            
+            node = root;
+            root.words--;
+            for (int i = 0; i < key.length(); i++) {
+                Node child = node.child(key.charAt(i));
+                if (--child.words == 0) {
+                    node.removeChild(key.charAt(i));
+                    break;
+                }
+                node = child;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * List the words starting with a prefix
+     * @param prefix Prefix, any case
+     * @param limit Maximum number of words to add
+     * @param results Collection the words are added to
+     * @return Number of words added
+     */
+    public int collect(String prefix, int limit, Collection<String> results) {
+        if (limit <= 0) {
+            return 0;
+        }
+        String key = prefix.toLowerCase(Locale.ROOT);
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            return node != null ? collect(node, limit, results) : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private static int collect(Node node, int limit, Collection<String> results) {
+        int added = 0;
+        if (node.word != null) {
+            results.add(node.word);
+            added++;
+        }
+        for (int i = 0; i < node.childCount && added < limit; i++) {
+            added += collect(node.children[i], limit - added, results);
+        }
+        return added;
+    }
+    
+    /**
+     * Get the number of words
+     * @return Word count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return root.words;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Remove every word
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.keys = Node.NO_KEYS;
+            root.children = Node.NO_CHILDREN;
+            root.childCount = 0;
+            root.words = 0;
+            root.word = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * A trie node, children are kept in sorted arrays since most nodes have only a few
+     */
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private int childCount;
+        // Words ending at or below this node
+        private int words;
+        // Word ending here as it was added, null if none does
+        private String word;
+        
+        Node child(char key) {
+            int index = Arrays.binarySearch(keys, 0, childCount, key);
+            return index >= 0 ? children[index] : null;
+        }
+        
+        Node childOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, 0, childCount, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            
+            index = -index - 1;
+            if (childCount == keys.length) {
+                int capacity = Math.max(2, childCount * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, index, keys, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            Node child = new Node();
+            keys[index] = key;
+            children[index] = child;
+            childCount++;
+            return child;
+        }
+        
+        void removeChild(char key) {
+            int index = Arrays.binarySearch(keys, 0, childCount, key);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(keys, index + 1, keys, index, childCount - index - 1);
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+    }
+}
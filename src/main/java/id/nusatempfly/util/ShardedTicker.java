@@ -0,0 +1,187 @@
+package id.nusatempfly.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Spreads periodic per-key work over a number of ticks.
+ * Keys are divided over as many shards as there are ticks in a period and every tick
+ * processes one shard, so each key is still processed once per period without the
+ * whole population landing on the same tick. Work that does not fit in the per-tick
+ * time budget is deferred to the next tick instead of overrunning the current one.
+ * <p>
+ * Not thread-safe, all calls must come from the same thread.
+ * @param <K> Key type
+ */
+public class ShardedTicker<K> {
+    private final List<Set<K>> shards;
+    private final Map<K, Integer> shardOf = new HashMap<>();
+    private final Consumer<K> action;
+    private final long budgetNanos;
+    
+    // Keys whose turn came up but did not fit in the budget, processed first on the next tick
+    private final Set<K> deferred = new LinkedHashSet<>();
+    // Reused buffer of the shard being processed, the action may add or remove keys
+    private final List<K> current = new ArrayList<>();
+    private int nextShard;
+    private long totalDeferred;
+    
+    /**
+     * Create a ticker
+     * @param shardCount Number of ticks the work is spread over
+     * @param budgetNanos Maximum time spent per tick, 0 for no limit
+     * @param action Work to do for a key once per period
+     */
+    public ShardedTicker(int shardCount, long budgetNanos, Consumer<K> action) {
+        this.shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new LinkedHashSet<>());
+        }
+        this.budgetNanos = budgetNanos;
+        this.action = action;
+    }
+    
+    /**
+     * Add a key to the least loaded shard
+     * @param key Key to add
+     */
+    public void add(K key) {
+        if (shardOf.containsKey(key)) {
+            return;
+        }
+        int shard = smallestShard();
+        shards.get(shard).add(key);
+        shardOf.put(key, shard);
+    }
+    
+    /**
+     * Remove a key. Shards that became uneven are evened out when the next period starts
+     * @param key Key to remove
+     */
+    public void remove(K key) {
+        Integer shard = shardOf.remove(key);
+        if (shard == null) {
+            return;
+        }
+        shards.get(shard).remove(key);
+        deferred.remove(key);
+    }
+    
+    /**
+     * Process the deferred keys and the shard of this tick within the time budget
+     */
+    public void tick() {
+        long start = System.nanoTime();
+        if (nextShard == 0) {
+            rebalance();
+        }
+        
+        current.clear();
+        current.addAll(deferred);
+        for (K key : shards.get(nextShard)) {
+            // A key that was deferred from the previous tick is only processed once
+            if (!deferred.contains(key)) {
+                current.add(key);
+            }
+        }
+        deferred.clear();
+        nextShard = (nextShard + 1) % shards.size();
+        
+        for (int i = 0; i < current.size(); i++) {
+            K key = current.get(i);
+            if (!shardOf.containsKey(key)) {
+                continue; // Removed by an earlier action
+            }
+            
+            // Always make progress, then stop once the budget is used up
+            if (i > 0 && budgetNanos > 0 && System.nanoTime() - start > budgetNanos) {
+                for (int j = i; j < current.size(); j++) {
+                    if (shardOf.containsKey(current.get(j)) && deferred.add(current.get(j))) {
+                        totalDeferred++;
+                    }
+                }
+                break;
+            }
+            action.accept(key);
+        }
+        current.clear();
+    }
+    
+    /**
+     * Get the number of keys
+     * @return Number of keys
+     */
+    public int size() {
+        return shardOf.size();
+    }
+    
+    /**
+     * Get the number of keys waiting for the next tick because the budget ran out
+     * @return Deferred key count
+     */
+    public int getDeferredCount() {
+        return deferred.size();
+    }
+    
+    /**
+     * Get how many times a key was deferred since the ticker was created
+     * @return Total deferrals
+     */
+    public long getTotalDeferred() {
+        return totalDeferred;
+    }
+    
+    // Between two periods every key was processed once, so moving one cannot charge it twice or skip it
+    private void rebalance() {
+        while (true) {
+            int largest = largestShard();
+            int smallest = smallestShard();
+            if (shards.get(largest).size() - shards.get(smallest).size() <= 1) {
+                return;
+            }
+            
+            K moved = null;
+            Iterator<K> iterator = shards.get(largest).iterator();
+            while (iterator.hasNext()) {
+                K key = iterator.next();
+                // A deferred key is still due this tick, it stays where it is
+                if (!deferred.contains(key)) {
+                    moved = key;
+                    iterator.remove();
+                    break;
+                }
+            }
+            if (moved == null) {
+                return;
+            }
+            shards.get(smallest).add(moved);
+            shardOf.put(moved, smallest);
+        }
+    }
+    
+    private int smallestShard() {
+        int smallest = 0;
+        for (int i = 1; i < shards.size(); i++) {
+            if (shards.get(i).size() < shards.get(smallest).size()) {
+                smallest = i;
+            }
+        }
+        return smallest;
+    }
+    
+    private int largestShard() {
+        int largest = 0;
+        for (int i = 1; i < shards.size(); i++) {
+            if (shards.get(i).size() > shards.get(largest).size()) {
+                largest = i;
+            }
+        }
+        return largest;
+    }
+}
@@ -1,13 +1,61 @@
 package id.nusatempfly.util;
 
-import id.nusatempfly.Plugin;
-import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
 
-public class TimeFormatter {
-    private final Plugin plugin;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formats and parses flight times.
+ * The time-format templates are compiled once into token arrays, formatting only appends
+ * literals and numbers. Results up to an hour are memoized since HUDs show them constantly.
+ * Instances are immutable apart from the memo tables and are replaced on reload.
+ */
+public final class TimeFormatter {
+    // Seconds up to this value are memoized
+    private static final int MEMO_LIMIT = 3600;
+    
+    private static final int LITERAL = 0;
+    private static final int DAYS = 1;
+    private static final int HOURS = 2;
+    private static final int MINUTES = 3;
+    private static final int SECONDS = 4;
+    // The number inside a unit template
+    private static final int VALUE = 5;
+    
+    private final Template format;
+    private final Template compact;
+    // Singular and plural unit templates, indexed by DAYS..SECONDS
+    private final Template[] singular = new Template[5];
+    private final Template[] plural = new Template[5];
     
-    public TimeFormatter(Plugin plugin) {
-        this.plugin = plugin;
+    private final String[] formatMemo = new String[MEMO_LIMIT + 1];
+    private final String[] compactMemo = new String[MEMO_LIMIT + 1];
+    
+    private TimeFormatter(ConfigurationSection section) {
+        this.format = Template.compile(get(section, "format", "%days% %hours% %minutes% %seconds%"),
+                new String[] {"%days%", "%hours%", "%minutes%", "%seconds%"});
+        this.compact = Template.compile(get(section, "compact", "%d%h%m%s"),
+                new String[] {"%d", "%h", "%m", "%s"});
+        
+        String[] units = {"day", "hour", "minute", "second"};
+        for (int i = 0; i < units.length; i++) {
+            singular[DAYS + i] = Template.compileUnit(get(section, units[i], "%d " + units[i]));
+            plural[DAYS + i] = Template.compileUnit(get(section, units[i] + "s", "%d " + units[i] + "s"));
+        }
+    }
+    
+    /**
+     * Compile the templates of a time-format section
+     * @param section The time-format section, null to use the defaults
+     * @return TimeFormatter
+     */
+    public static TimeFormatter load(ConfigurationSection section) {
+        return new TimeFormatter(section);
+    }
+    
+    private static String get(ConfigurationSection section, String key, String def) {
+        return section != null ? section.getString(key, def) : def;
     }
     
     /**
@@ -16,143 +64,250 @@ public class TimeFormatter {
      * @return Formatted time string
      */
     public String format(long seconds) {
-        if (seconds == 0) {
-            return "0 seconds";
-        }
-        
-        long days = seconds / 86400;
-        long hours = (seconds % 86400) / 3600;
-        long minutes = (seconds % 3600) / 60;
-        long remainingSeconds = seconds % 60;
-        
-        StringBuilder sb = new StringBuilder();
-        String format = plugin.getConfig().getString("time-format.format", "%days% %hours% %minutes% %seconds%");
-        
-        // Replace days
-        if (days > 0) {
-            String dayFormat = days == 1 ? 
-                plugin.getConfig().getString("time-format.day", "%d day") : 
-                plugin.getConfig().getString("time-format.days", "%d days");
-            format = format.replace("%days%", dayFormat.replace("%d", String.valueOf(days)));
-        } else {
-            format = format.replace("%days%", "");
-        }
-        
-        // Replace hours
-        if (hours > 0) {
-            String hourFormat = hours == 1 ? 
-                plugin.getConfig().getString("time-format.hour", "%d hour") : 
-                plugin.getConfig().getString("time-format.hours", "%d hours");
-            format = format.replace("%hours%", hourFormat.replace("%d", String.valueOf(hours)));
-        } else {
-            format = format.replace("%hours%", "");
-        }
-        
-        // Replace minutes
-        if (minutes > 0) {
-            String minuteFormat = minutes == 1 ? 
-                plugin.getConfig().getString("time-format.minute", "%d minute") : 
-                plugin.getConfig().getString("time-format.minutes", "%d minutes");
-            format = format.replace("%minutes%", minuteFormat.replace("%d", String.valueOf(minutes)));
-        } else {
-            format = format.replace("%minutes%", "");
-        }
-        
-        // Replace seconds
-        if (remainingSeconds > 0 || (days == 0 && hours == 0 && minutes == 0)) {
-            String secondFormat = remainingSeconds == 1 ? 
-                plugin.getConfig().getString("time-format.second", "%d second") : 
-                plugin.getConfig().getString("time-format.seconds", "%d seconds");
-            format = format.replace("%seconds%", secondFormat.replace("%d", String.valueOf(remainingSeconds)));
-        } else {
-            format = format.replace("%seconds%", "");
+        if (seconds >= 0 && seconds <= MEMO_LIMIT) {
+            String memo = formatMemo[(int) seconds];
+            if (memo == null) {
+                memo = render(seconds, false);
+                formatMemo[(int) seconds] = memo;
+            }
+            return memo;
         }
-        
-        // Cleanup extra spaces
-        return format.replaceAll("\\s+", " ").trim();
+        return render(seconds, false);
+    }
+    
+    /**
+     * Format time in seconds into a builder
+     * @param seconds Time in seconds
+     * @param builder Builder to append to
+     */
+    public void format(long seconds, StringBuilder builder) {
+        append(seconds, false, builder);
     }
     
     /**
-     * Format time in compact format (1d2h3m4s)
+     * Format time with the compact template (1d2h3m4s by default)
      * @param seconds Time in seconds
      * @return Compact formatted time
      */
     public String formatCompact(long seconds) {
-        if (seconds == 0) {
-            return "0s";
+        if (seconds >= 0 && seconds <= MEMO_LIMIT) {
+            String memo = compactMemo[(int) seconds];
+            if (memo == null) {
+                memo = render(seconds, true);
+                compactMemo[(int) seconds] = memo;
+            }
+            return memo;
         }
+        return render(seconds, true);
+    }
+    
+    /**
+     * Format time with the compact template into a builder
+     * @param seconds Time in seconds
+     * @param builder Builder to append to
+     */
+    public void formatCompact(long seconds, StringBuilder builder) {
+        append(seconds, true, builder);
+    }
+    
+    private String render(long seconds, boolean compactFormat) {
+        StringBuilder builder = new StringBuilder(24);
+        append(seconds, compactFormat, builder);
+        return builder.toString();
+    }
+    
+    private void append(long seconds, boolean compactFormat, StringBuilder builder) {
+        seconds = Math.max(0, seconds);
+        boolean onlySeconds = seconds < 60;
         
-        long days = seconds / 86400;
-        long hours = (seconds % 86400) / 3600;
-        long minutes = (seconds % 3600) / 60;
-        long remainingSeconds = seconds % 60;
-        
-        StringBuilder sb = new StringBuilder();
-        
-        if (days > 0) sb.append(days).append("d");
-        if (hours > 0) sb.append(hours).append("h");
-        if (minutes > 0) sb.append(minutes).append("m");
-        if (remainingSeconds > 0 || sb.length() == 0) sb.append(remainingSeconds).append("s");
+        Template template = compactFormat ? compact : format;
+        int start = builder.length();
+        for (int i = 0; i < template.kinds.length; i++) {
+            int kind = template.kinds[i];
+            if (kind == LITERAL) {
+                appendCollapsed(builder, start, template.parts[i]);
+                continue;
+            }
+            
+            // Units without a value are left out, seconds stay if nothing else is shown
+            long value = unitValue(kind, seconds);
+            if (value == 0 && !(kind == SECONDS && onlySeconds)) {
+                continue;
+            }
+            if (compactFormat) {
+                builder.append(value).append(template.parts[i]);
+                continue;
+            }
+            
+            Template unit = value == 1 ? singular[kind] : plural[kind];
+            for (int j = 0; j < unit.kinds.length; j++) {
+                if (unit.kinds[j] == VALUE) {
+                    builder.append(value);
+                } else {
+                    appendCollapsed(builder, start, unit.parts[j]);
+                }
+            }
+        }
         
-        return sb.toString();
+        // Drop trailing whitespace, runs inside were already collapsed to one space
+        if (builder.length() > start && builder.charAt(builder.length() - 1) == ' ') {
+            builder.setLength(builder.length() - 1);
+        }
+    }
+    
+    private static long unitValue(int kind, long seconds) {
+        switch (kind) {
+            case DAYS:
+                return seconds / 86400;
+            case HOURS:
+                return (seconds % 86400) / 3600;
+            case MINUTES:
+                return (seconds % 3600) / 60;
+            default:
+                return seconds % 60;
+        }
+    }
+    
+    // Append text, turning whitespace runs into one space and skipping leading whitespace
+    private static void appendCollapsed(StringBuilder builder, int start, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (builder.length() > start && builder.charAt(builder.length() - 1) != ' ') {
+                    builder.append(' ');
+                }
+            } else {
+                builder.append(c);
+            }
+        }
     }
     
     /**
      * Parse time string in format 1d2h3m4s to seconds
      * @param timeString Time string
-     * @return Time in seconds, -1 if invalid format
+     * @return Time in seconds, -1 if invalid format or too large
      */
-    public long parse(String timeString) {
+    public static long parse(String timeString) {
         if (timeString == null || timeString.isEmpty()) {
             return -1;
         }
         
-        // Remove all whitespaces
-        timeString = timeString.replaceAll("\\s+", "").toLowerCase();
-        
         long totalSeconds = 0;
-        StringBuilder currentNumber = new StringBuilder();
-        
-        for (char c : timeString.toCharArray()) {
-            if (Character.isDigit(c)) {
-                currentNumber.append(c);
-            } else {
-                // If we have accumulated some digits
-                if (currentNumber.length() > 0) {
-                    long value = Long.parseLong(currentNumber.toString());
-                    
-                    switch (c) {
-                        case 'd':
-                            totalSeconds += value * 86400; // Days to seconds
-                            break;
-                        case 'h':
-                            totalSeconds += value * 3600; // Hours to seconds
-                            break;
-                        case 'm':
-                            totalSeconds += value * 60; // Minutes to seconds
-                            break;
-                        case 's':
-                            totalSeconds += value; // Seconds
-                            break;
-                        default:
-                            return -1; // Invalid character
-                    }
-                    
-                    // Reset for next number
-                    currentNumber.setLength(0);
-                } else {
-                    // If there's no number before the unit character
+        long currentNumber = 0;
+        boolean hasNumber = false;
+        try {
+            for (int i = 0; i < timeString.length(); i++) {
+                char c = timeString.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    currentNumber = Math.addExact(Math.multiplyExact(currentNumber, 10), c - '0');
+                    hasNumber = true;
+                    continue;
+                }
+                if (Character.isWhitespace(c)) {
+                    continue;
+                }
+                
+                // A unit needs a number in front of it
+                if (!hasNumber) {
                     return -1;
                 }
+                long unitSeconds;
+                switch (Character.toLowerCase(c)) {
+                    case 'd':
+                        unitSeconds = 86400; // Days to seconds
+                        break;
+                    case 'h':
+                        unitSeconds = 3600; // Hours to seconds
+                        break;
+                    case 'm':
+                        unitSeconds = 60; // Minutes to seconds
+                        break;
+                    case 's':
+                        unitSeconds = 1; // Seconds
+                        break;
+                    default:
+                        return -1; // Invalid character
+                }
+                totalSeconds = Math.addExact(totalSeconds, Math.multiplyExact(currentNumber, unitSeconds));
+                currentNumber = 0;
+                hasNumber = false;
             }
+            
+            // Assume seconds for bare numbers
+            return Math.addExact(totalSeconds, currentNumber);
+        } catch (ArithmeticException e) {
+            return -1; // Too large
         }
+    }
+    
+    /**
+     * A template split into literal text and placeholders
+     */
+    private static final class Template {
+        // Literal text, or the unit suffix for compact placeholders
+        final String[] parts;
+        final int[] kinds;
         
-        // If there are trailing digits without a unit
-        if (currentNumber.length() > 0) {
-            // Assume seconds for bare numbers
-            totalSeconds += Long.parseLong(currentNumber.toString());
+        private Template(List<String> parts, List<Integer> kinds) {
+            this.parts = parts.toArray(new String[0]);
+            this.kinds = kinds.stream().mapToInt(Integer::intValue).toArray();
         }
         
-        return totalSeconds;
+        /**
+         * Split a template on the given placeholders, which map to DAYS..SECONDS in order
+         */
+        static Template compile(String text, String[] placeholders) {
+            List<String> parts = new ArrayList<>();
+            List<Integer> kinds = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            int i = 0;
+            outer:
+            while (i < text.length()) {
+                for (int p = 0; p < placeholders.length; p++) {
+                    if (text.startsWith(placeholders[p], i)) {
+                        if (literal.length() > 0) {
+                            parts.add(literal.toString());
+                            kinds.add(LITERAL);
+                            literal.setLength(0);
+                        }
+                        // In compact templates the letter after % is the unit suffix
+                        parts.add(placeholders[p].substring(1).replace("%", ""));
+                        kinds.add(DAYS + p);
+                        i += placeholders[p].length();
+                        continue outer;
+                    }
+                }
+                literal.append(text.charAt(i++));
+            }
+            if (literal.length() > 0) {
+                parts.add(literal.toString());
+                kinds.add(LITERAL);
+            }
+            return new Template(parts, kinds);
+        }
+        
+        /**
+         * Split a unit template such as "%d days" around its number
+         */
+        static Template compileUnit(String text) {
+            List<String> parts = new ArrayList<>();
+            List<Integer> kinds = new ArrayList<>();
+            int from = 0;
+            int index;
+            while ((index = text.indexOf("%d", from)) >= 0) {
+                if (index > from) {
+                    parts.add(text.substring(from, index));
+                    kinds.add(LITERAL);
+                }
+                parts.add("");
+                kinds.add(VALUE);
+                from = index + 2;
+            }
+            if (from < text.length()) {
+                parts.add(text.substring(from));
+                kinds.add(LITERAL);
+            }
+            return new Template(parts, kinds);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,214 @@
+package id.nusatempfly.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel for scheduling many deadlines cheaply.
+ * Each level has 64 slots; a slot on level n covers 64^n ticks. Timeouts are put on the
+ * lowest level that can hold them and cascade down as their deadline comes closer, so
+ * scheduling and cancelling are O(1) and advancing a tick only touches the timeouts that
+ * are due (plus the occasional cascade).
+ * <p>
+ * Not thread-safe, all calls must come from the same thread.
+ */
+public class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    
+    // Slot heads of every level, each slot is a doubly linked list of timeouts
+    private final Timeout[][] wheels = new Timeout[LEVELS][SLOTS];
+    // Last tick that has been processed
+    private long currentTick;
+    private int size;
+    // Reused buffer of the timeouts due in the tick being processed
+    private final List<Timeout> due = new ArrayList<>();
+    
+    /**
+     * Create a wheel starting at the given tick
+     * @param startTick Tick the wheel starts at
+     */
+    public TimingWheel(long startTick) {
+        this.currentTick = startTick;
+    }
+    
+    /**
+     * Schedule a task
+     * @param deadlineTick Tick at which the task runs, past ticks run on the next advance
+     * @param task Task to run
+     * @return Handle that can be used to cancel the task
+     */
+    public Timeout schedule(long deadlineTick, Runnable task) {
+        Timeout timeout = new Timeout(this, deadlineTick, task);
+        insert(timeout, currentTick + 1);
+        size++;
+        return timeout;
+    }
+    
+    /**
+     * Advance the wheel, running every task whose deadline has been reached
+     * @param toTick Tick to advance to
+     * @return Number of tasks that ran
+     */
+    public int advance(long toTick) {
+        int fired = 0;
+        while (currentTick < toTick) {
+            long tick = currentTick + 1;
+            currentTick = tick;
+            
+            // Bring timeouts of higher levels down when the level below wraps around
+            for (int level = 1; level < LEVELS; level++) {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                cascade(level, (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK));
+            }
+            
+            // Detach the slot first, tasks may cancel other timeouts of the same slot
+            int slot = (int) (tick & SLOT_MASK);
+            Timeout timeout = wheels[0][slot];
+            wheels[0][slot] = null;
+            due.clear();
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.prev = null;
+                timeout.next = null;
+                due.add(timeout);
+                timeout = next;
+            }
+            
+            for (Timeout dueTimeout : due) {
+                if (dueTimeout.wheel == null) {
+                    continue; // Cancelled by an earlier task
+                }
+                if (dueTimeout.deadline > tick) {
+                    // Only possible for deadlines beyond the range of the wheel
+                    insert(dueTimeout, tick + 1);
+                    continue;
+                }
+                size--;
+                dueTimeout.wheel = null;
+                dueTimeout.task.run();
+                fired++;
+            }
+        }
+        due.clear();
+        return fired;
+    }
+    
+    /**
+     * Get the last tick that has been processed
+     * @return Current tick
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+    
+    /**
+     * Get the number of scheduled tasks
+     * @return Number of pending timeouts
+     */
+    public int size() {
+        return size;
+    }
+    
+    private void cascade(int level, int slot) {
+        Timeout timeout = wheels[level][slot];
+        wheels[level][slot] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.unlink();
+            // Timeouts due in this tick land in the level 0 slot that is processed next
+            insert(timeout, currentTick);
+            timeout = next;
+        }
+    }
+    
+    private void insert(Timeout timeout, long earliestTick) {
+        // A deadline that already passed fires at the earliest tick still to be processed
+        long deadline = Math.max(timeout.deadline, earliestTick);
+        long delta = deadline - currentTick;
+        
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        if (delta >= 1L << (SLOT_BITS * LEVELS)) {
+            // Further away than the wheel reaches, park it in the last slot the top level can see
+            deadline = currentTick + (1L << (SLOT_BITS * LEVELS)) - 1;
+        }
+        
+        int slot = (int) ((deadline >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Timeout head = wheels[level][slot];
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        wheels[level][slot] = timeout;
+    }
+    
+    /**
+     * Handle of a scheduled task
+     */
+    public static final class Timeout {
+        private TimingWheel wheel;
+        private final long deadline;
+        private final Runnable task;
+        private int level;
+        private int slot;
+        private Timeout prev;
+        private Timeout next;
+        
+        private Timeout(TimingWheel wheel, long deadline, Runnable task) {
+            this.wheel = wheel;
+            this.deadline = deadline;
+            this.task = task;
+        }
+        
+        /**
+         * Get the tick at which the task runs
+         * @return Deadline tick
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+        
+        /**
+         * Check if the task is still waiting to run
+         * @return true if pending
+         */
+        public boolean isPending() {
+            return wheel != null;
+        }
+        
+        /**
+         * Cancel the task, does nothing if it already ran or was cancelled
+         */
+        public void cancel() {
+            if (wheel == null) {
+                return;
+            }
+            unlink();
+            wheel.size--;
+            wheel = null;
+        }
+        
+        private void unlink() {
+            if (prev != null) {
+                prev.next = next;
+            } else if (wheel.wheels[level][slot] == this) {
+                wheel.wheels[level][slot] = next;
+            }
+            if (next != null) {
+                next.prev = prev;
+            }
+            prev = null;
+            next = null;
+        }
+    }
+}
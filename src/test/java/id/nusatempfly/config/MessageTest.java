@@ -0,0 +1,132 @@
+package id.nusatempfly.config;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.format.TextDecoration;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MessageTest {
+    
+    @Test
+    public void fillsSlotsInLegacyTemplate() {
+        Message message = Message.compile("&aSisa waktu terbang: &e%time%&a.", Message.Syntax.LEGACY);
+        Component built = message.build("time", "5m");
+        
+        assertEquals("Sisa waktu terbang: 5m.", plain(built));
+        // The value takes the style the slot appears in
+        assertEquals(NamedTextColor.YELLOW, findText(built, "5m").color());
+    }
+    
+    @Test
+    public void fillsSlotsInMiniMessageTemplate() {
+        Message message = Message.compile("<red>Halo <bold>%player%</bold>, sisa %time%", Message.Syntax.MINIMESSAGE);
+        Component built = message.build("player", "Steve", "time", "10s");
+        
+        assertEquals("Halo Steve, sisa 10s", plain(built));
+        TextComponent player = findText(built, "Steve");
+        assertEquals(NamedTextColor.RED, player.color());
+        assertTrue(player.hasDecoration(TextDecoration.BOLD));
+        assertEquals(NamedTextColor.RED, findText(built, "10s").color());
+    }
+    
+    @Test
+    public void fillsRepeatedSlot() {
+        Message message = Message.compile("%player% dan %player%", Message.Syntax.LEGACY);
+        
+        assertEquals("Steve dan Steve", plain(message.build("player", "Steve")));
+    }
+    
+    @Test
+    public void keepsUnknownSlotAsText() {
+        Message message = Message.compile("Waktu: %time%", Message.Syntax.LEGACY);
+        
+        assertEquals("Waktu: %time%", plain(message.build()));
+        assertEquals("Waktu: %time%", plain(message.build("other", "x")));
+    }
+    
+    @Test
+    public void keepsPercentSignsThatAreNotSlots() {
+        Message message = Message.compile("Diskon 50% untuk %player%, 100%", Message.Syntax.LEGACY);
+        
+        assertEquals("Diskon 50% untuk Steve, 100%", plain(message.build("player", "Steve")));
+    }
+    
+    @Test
+    public void componentValueKeepsItsOwnStyle() {
+        Message message = Message.compile("&aPemain: %player%", Message.Syntax.LEGACY);
+        Component value = Component.text("Steve", NamedTextColor.GOLD);
+        
+        assertEquals(NamedTextColor.GOLD, findText(message.build("player", value), "Steve").color());
+        assertEquals(NamedTextColor.GREEN,
+                findText(message.build("player", Component.text("Alex")), "Alex").color());
+    }
+    
+    @Test
+    public void constantMessageIsBuiltOnce() {
+        Message message = Message.compile("&cTerbang dinonaktifkan", Message.Syntax.LEGACY);
+        
+        assertSame(message.build(), message.build("time", "5m"));
+        assertEquals("Terbang dinonaktifkan", plain(message.build()));
+    }
+    
+    @Test
+    public void slotInTagArgumentGetsNoValue() {
+        Message message = Message.compile("<hover:show_text:'%time%'>Arahkan</hover> %player%",
+                Message.Syntax.MINIMESSAGE);
+        
+        assertEquals("Arahkan Steve", plain(message.build("time", "5m", "player", "Steve")));
+    }
+    
+    @Test
+    public void emptyTextCompilesToEmptyMessage() {
+        assertTrue(Message.compile(null, Message.Syntax.LEGACY).isEmpty());
+        assertTrue(Message.compile("", Message.Syntax.MINIMESSAGE).isEmpty());
+        assertSame(Message.empty(), Message.compile("", Message.Syntax.LEGACY));
+    }
+    
+    @Test
+    public void parsesSyntaxNames() {
+        assertEquals(Message.Syntax.MINIMESSAGE, Message.Syntax.fromName("minimessage"));
+        assertEquals(Message.Syntax.MINIMESSAGE, Message.Syntax.fromName("Mini-Message"));
+        assertEquals(Message.Syntax.LEGACY, Message.Syntax.fromName("legacy"));
+        assertEquals(Message.Syntax.LEGACY, Message.Syntax.fromName(null));
+    }
+    
+    private static String plain(Component component) {
+        return PlainTextComponentSerializer.plainText().serialize(component);
+    }
+    
+    /**
+     * Find the text component with the given content, with the style it has in the built message
+     * @param component Built message
+     * @param content Text to look for
+     * @return Text component, failing the test if there is none
+     */
+    private static TextComponent findText(Component component, String content) {
+        TextComponent found = findText(component, content, component.style());
+        assertNotNull("No text \"" + content + "\" in " + component, found);
+        return found;
+    }
+    
+    private static TextComponent findText(Component component, String content, Style inherited) {
+        Style style = component.style().merge(inherited, Style.Merge.Strategy.IF_ABSENT_ON_TARGET);
+        if (component instanceof TextComponent && ((TextComponent) component).content().equals(content)) {
+            return ((TextComponent) component).style(style);
+        }
+        for (Component child : component.children()) {
+            TextComponent found = findText(child, content, style);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+}
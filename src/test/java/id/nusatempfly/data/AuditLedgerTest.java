@@ -0,0 +1,192 @@
+package id.nusatempfly.data;
+
+import id.nusatempfly.testing.CloseAfter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static id.nusatempfly.testing.TestSupport.LOGGER;
+import static id.nusatempfly.testing.TestSupport.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AuditLedgerTest {
+    private static final int RECORD_SIZE = 61;
+    private static final UUID PLAYER = new UUID(0, 1);
+    private static final UUID OTHER = new UUID(0, 2);
+    
+    private final TemporaryFolder folder = new TemporaryFolder();
+    private final CloseAfter closeAfter = new CloseAfter();
+    
+    // Close the ledgers before their folder is deleted
+    @Rule
+    public RuleChain rules = RuleChain.outerRule(folder).around(closeAfter);
+    
+    private AuditLedger create(long segmentRecords) {
+        AuditLedger ledger = new AuditLedger(LOGGER, folder.getRoot(), 5, segmentRecords * RECORD_SIZE, 0);
+        closeAfter.add(ledger::close);
+        return ledger;
+    }
+    
+    private AuditLedger open(long segmentRecords) throws IOException {
+        AuditLedger ledger = create(segmentRecords);
+        ledger.start();
+        return ledger;
+    }
+    
+    // Append deltas first to last for PLAYER, with an entry for OTHER in between each
+    private static void appendRange(AuditLedger ledger, int first, int last) {
+        for (int delta = first; delta <= last; delta++) {
+            ledger.append(PLAYER, AuditEntry.CONSOLE, AuditCause.GIVE, delta, delta * 10L);
+            ledger.append(OTHER, PLAYER, AuditCause.TAKE, -delta, 0);
+        }
+    }
+    
+    // Read all of PLAYER's history page by page and check it is every delta from last down to 1
+    private static void assertHistory(AuditLedger ledger, int last, int pageSize) throws IOException {
+        List<Long> deltas = new ArrayList<>();
+        for (int offset = 0; ; offset += pageSize) {
+            AuditLedger.Page page = ledger.query(PLAYER, offset, pageSize);
+            assertEquals(last, page.getTotal());
+            if (page.getEntries().isEmpty()) {
+                break;
+            }
+            for (AuditEntry entry : page.getEntries()) {
+                deltas.add(entry.getDelta());
+            }
+        }
+        
+        assertEquals(last, deltas.size());
+        for (int i = 0; i < last; i++) {
+            assertEquals(last - i, (long) deltas.get(i));
+        }
+    }
+    
+    @Test
+    public void queryPagesNewestFirst() throws IOException {
+        AuditLedger ledger = open(1000);
+        appendRange(ledger, 1, 5);
+        
+        AuditLedger.Page page = ledger.query(PLAYER, 0, 2);
+        assertEquals(5, page.getTotal());
+        assertEquals(2, page.getEntries().size());
+        AuditEntry newest = page.getEntries().get(0);
+        assertEquals(5, newest.getDelta());
+        assertEquals(50, newest.getBalance());
+        assertEquals(PLAYER, newest.getTarget());
+        assertEquals(AuditEntry.CONSOLE, newest.getActor());
+        assertEquals(AuditCause.GIVE, newest.getCause());
+        assertEquals(4, page.getEntries().get(1).getDelta());
+        
+        assertEquals(1, ledger.query(PLAYER, 4, 10).getEntries().size());
+        assertTrue(ledger.query(PLAYER, 10, 10).getEntries().isEmpty());
+        assertTrue(ledger.query(PLAYER, Integer.MAX_VALUE, 10).getEntries().isEmpty());
+        assertEquals(0, ledger.query(new UUID(0, 3), 0, 10).getTotal());
+    }
+    
+    @Test
+    public void queryReadsSealedSegments() throws Exception {
+        AuditLedger ledger = open(20);
+        for (int segment = 0; segment < 3; segment++) {
+            appendRange(ledger, segment * 10 + 1, segment * 10 + 10);
+            int sealed = segment + 1;
+            await(() -> ledger.getSegmentCount() == sealed);
+        }
+        appendRange(ledger, 31, 33);
+        
+        assertHistory(ledger, 33, 4);
+        assertHistory(ledger, 33, 100);
+    }
+    
+    @Test
+    public void queryReadsSegmentsOfSeveralBlocks() throws Exception {
+        AuditLedger ledger = open(3000);
+        appendRange(ledger, 1, 1500);
+        await(() -> ledger.getSegmentCount() == 1);
+        
+        assertHistory(ledger, 1500, 250);
+        assertEquals(1, ledger.query(PLAYER, 1499, 10).getEntries().size());
+    }
+    
+    @Test
+    public void recoversAfterRestart() throws Exception {
+        AuditLedger ledger = open(20);
+        appendRange(ledger, 1, 10);
+        await(() -> ledger.getSegmentCount() == 1);
+        appendRange(ledger, 11, 15);
+        ledger.close();
+        
+        // Half a record, as left by a crash in the middle of a write
+        try (FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), "active.log"), true)) {
+            out.write(new byte[30]);
+        }
+        
+        AuditLedger reopened = open(20);
+        assertEquals(1, reopened.getSegmentCount());
+        assertHistory(reopened, 15, 4);
+        
+        // Appends continue after the cut-off tail
+        appendRange(reopened, 16, 16);
+        assertHistory(reopened, 16, 100);
+    }
+    
+    @Test
+    public void sealsInterruptedSegmentOnStart() throws IOException {
+        AuditLedger ledger = open(1000);
+        appendRange(ledger, 1, 5);
+        ledger.close();
+        File sealing = new File(folder.getRoot(), "sealing-1.log");
+        Files.move(new File(folder.getRoot(), "active.log").toPath(), sealing.toPath());
+        
+        AuditLedger reopened = open(1000);
+        assertEquals(1, reopened.getSegmentCount());
+        assertFalse(sealing.exists());
+        assertHistory(reopened, 5, 2);
+    }
+    
+    @Test
+    public void failedSealingKeepsRecordsReadableAndRetries() throws Exception {
+        AuditLedger ledger = open(20);
+        // Occupy the temp file of the first segment so sealing it fails
+        File blocker = new File(folder.getRoot(), "segment-1.ldg.tmp");
+        assertTrue(new File(blocker, "file").mkdirs());
+        
+        appendRange(ledger, 1, 10);
+        await(() -> new File(folder.getRoot(), "sealing-1.log").exists());
+        appendRange(ledger, 11, 12);
+        assertEquals(0, ledger.getSegmentCount());
+        assertHistory(ledger, 12, 5);
+        
+        assertTrue(new File(blocker, "file").delete());
+        assertTrue(blocker.delete());
+        await(() -> ledger.getSegmentCount() == 1);
+        assertHistory(ledger, 12, 5);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void queryBeforeStartFails() throws IOException {
+        create(1000).query(PLAYER, 0, 10);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void queryAfterCloseFails() throws IOException {
+        AuditLedger ledger = open(1000);
+        ledger.close();
+        ledger.query(PLAYER, 0, 10);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void queryWithNegativeOffsetFails() throws IOException {
+        open(1000).query(PLAYER, -1, 10);
+    }
+}
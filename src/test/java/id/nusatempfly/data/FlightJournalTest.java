@@ -0,0 +1,152 @@
+package id.nusatempfly.data;
+
+import id.nusatempfly.testing.CloseAfter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static id.nusatempfly.testing.TestSupport.LOGGER;
+import static id.nusatempfly.testing.TestSupport.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlightJournalTest {
+    private final TemporaryFolder folder = new TemporaryFolder();
+    private final CloseAfter closeAfter = new CloseAfter();
+    
+    // Close the journals before their folder is deleted
+    @Rule
+    public RuleChain rules = RuleChain.outerRule(folder).around(closeAfter);
+    
+    private FlightJournal open(long compactThresholdBytes, Runnable compactionHandler) throws IOException {
+        FlightJournal journal = new FlightJournal(LOGGER, folder.getRoot(), 5, compactThresholdBytes);
+        journal.start(compactionHandler);
+        closeAfter.add(() -> journal.close(false));
+        return journal;
+    }
+    
+    private FlightJournal reopen() {
+        return new FlightJournal(LOGGER, folder.getRoot(), 5, Long.MAX_VALUE);
+    }
+    
+    private static void append(FlightJournal journal, PlayerData data, long seconds) {
+        long before = data.getRemainingFlightTime();
+        data.setRemainingFlightTime(seconds);
+        journal.append(data, seconds - before);
+    }
+    
+    @Test
+    public void replayReturnsLatestBalancePerPlayer() throws IOException {
+        PlayerData first = new PlayerData(new UUID(0, 1));
+        PlayerData second = new PlayerData(new UUID(0, 2));
+        FlightJournal journal = open(Long.MAX_VALUE, () -> {});
+        append(journal, first, 100);
+        append(journal, second, 50);
+        append(journal, first, 40);
+        journal.close(false);
+        
+        Map<UUID, Long> replayed = reopen().replay();
+        assertEquals(2, replayed.size());
+        assertEquals(Long.valueOf(40), replayed.get(first.getPlayerUUID()));
+        assertEquals(Long.valueOf(50), replayed.get(second.getPlayerUUID()));
+    }
+    
+    @Test
+    public void appendReturnsJournaledBalance() throws IOException {
+        PlayerData data = new PlayerData(new UUID(0, 1));
+        data.setRemainingFlightTime(75);
+        FlightJournal journal = open(Long.MAX_VALUE, () -> {});
+        
+        assertEquals(75, journal.append(data, 75));
+    }
+    
+    @Test
+    public void replayStopsAtTornTail() throws IOException {
+        PlayerData data = new PlayerData(new UUID(0, 1));
+        FlightJournal journal = open(Long.MAX_VALUE, () -> {});
+        append(journal, data, 10);
+        append(journal, data, 20);
+        journal.close(false);
+        
+        // Half a record, as left by a crash in the middle of a write
+        try (FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), "flight.journal"), true)) {
+            out.write(new byte[30]);
+        }
+        assertEquals(Long.valueOf(20), reopen().replay().get(data.getPlayerUUID()));
+    }
+    
+    @Test
+    public void closeWithDiscardDeletesJournal() throws IOException {
+        FlightJournal journal = open(Long.MAX_VALUE, () -> {});
+        append(journal, new PlayerData(new UUID(0, 1)), 10);
+        journal.close(true);
+        
+        assertTrue(reopen().replay().isEmpty());
+    }
+    
+    @Test
+    public void replayReadsRolledOverJournalFirst() throws Exception {
+        PlayerData first = new PlayerData(new UUID(0, 1));
+        PlayerData second = new PlayerData(new UUID(0, 2));
+        AtomicInteger rollOvers = new AtomicInteger();
+        FlightJournal journal = open(1, rollOvers::incrementAndGet);
+        append(journal, first, 10);
+        append(journal, second, 30);
+        await(() -> rollOvers.get() == 1);
+        
+        // Compaction not completed, so the rolled-over records are still needed
+        append(journal, first, 20);
+        journal.close(false);
+        
+        Map<UUID, Long> replayed = reopen().replay();
+        assertEquals(Long.valueOf(20), replayed.get(first.getPlayerUUID()));
+        assertEquals(Long.valueOf(30), replayed.get(second.getPlayerUUID()));
+    }
+    
+    @Test
+    public void completedCompactionDeletesRolledOverJournal() throws Exception {
+        PlayerData data = new PlayerData(new UUID(0, 1));
+        AtomicInteger rollOvers = new AtomicInteger();
+        FlightJournal journal = open(1, rollOvers::incrementAndGet);
+        append(journal, data, 10);
+        await(() -> rollOvers.get() == 1);
+        File old = new File(folder.getRoot(), "flight.journal.old");
+        assertTrue(old.exists());
+        
+        // A completion for an earlier roll-over is ignored
+        journal.completeCompaction(journal.getCompactionGeneration() - 1);
+        assertTrue(old.exists());
+        journal.completeCompaction(journal.getCompactionGeneration());
+        assertFalse(old.exists());
+    }
+    
+    @Test
+    public void abortedCompactionKeepsRecordsForNextRollOver() throws Exception {
+        PlayerData first = new PlayerData(new UUID(0, 1));
+        PlayerData second = new PlayerData(new UUID(0, 2));
+        AtomicInteger rollOvers = new AtomicInteger();
+        FlightJournal journal = open(1, rollOvers::incrementAndGet);
+        append(journal, first, 10);
+        await(() -> rollOvers.get() == 1);
+        journal.abortCompaction();
+        
+        // The next roll-over appends to the kept file instead of replacing it
+        append(journal, second, 30);
+        await(() -> rollOvers.get() == 2);
+        journal.close(false);
+        
+        assertEquals(0, new File(folder.getRoot(), "flight.journal").length());
+        Map<UUID, Long> replayed = reopen().replay();
+        assertEquals(Long.valueOf(10), replayed.get(first.getPlayerUUID()));
+        assertEquals(Long.valueOf(30), replayed.get(second.getPlayerUUID()));
+    }
+}
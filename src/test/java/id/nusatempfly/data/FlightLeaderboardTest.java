@@ -0,0 +1,134 @@
+package id.nusatempfly.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FlightLeaderboardTest {
+    
+    private static UUID uuid(int id) {
+        return new UUID(0, id);
+    }
+    
+    @Test
+    public void ranksByRemainingTimeDescending() {
+        FlightLeaderboard leaderboard = new FlightLeaderboard();
+        leaderboard.update(uuid(1), 100);
+        leaderboard.update(uuid(2), 300);
+        leaderboard.update(uuid(3), 200);
+        
+        FlightLeaderboard.Snapshot snapshot = leaderboard.getSnapshot();
+        assertEquals(3, snapshot.size());
+        assertEquals(uuid(2), snapshot.get(1).getPlayerUUID());
+        assertEquals(uuid(3), snapshot.get(2).getPlayerUUID());
+        assertEquals(uuid(1), snapshot.get(3).getPlayerUUID());
+        assertNull(snapshot.get(0));
+        assertNull(snapshot.get(4));
+        
+        assertEquals(1, leaderboard.getRank(uuid(2)));
+        assertEquals(3, leaderboard.getRank(uuid(1)));
+        assertEquals(0, leaderboard.getRank(uuid(4)));
+    }
+    
+    @Test
+    public void updateMovesAndRemovesPlayers() {
+        FlightLeaderboard leaderboard = new FlightLeaderboard();
+        leaderboard.update(uuid(1), 100);
+        leaderboard.update(uuid(2), 200);
+        
+        leaderboard.update(uuid(1), 500);
+        assertEquals(1, leaderboard.getRank(uuid(1)));
+        assertEquals(2, leaderboard.getRank(uuid(2)));
+        
+        leaderboard.update(uuid(1), 0);
+        assertEquals(0, leaderboard.getRank(uuid(1)));
+        assertEquals(1, leaderboard.getRank(uuid(2)));
+        assertEquals(1, leaderboard.getSnapshot().size());
+    }
+    
+    @Test
+    public void unchangedUpdateKeepsSnapshot() {
+        FlightLeaderboard leaderboard = new FlightLeaderboard();
+        leaderboard.update(uuid(1), 100);
+        FlightLeaderboard.Snapshot snapshot = leaderboard.getSnapshot();
+        
+        leaderboard.update(uuid(1), 100);
+        leaderboard.update(uuid(2), 0);
+        assertEquals(snapshot.getVersion(), leaderboard.getSnapshot().getVersion());
+    }
+    
+    @Test
+    public void snapshotIsNotChangedByLaterUpdates() {
+        FlightLeaderboard leaderboard = new FlightLeaderboard();
+        leaderboard.update(uuid(1), 100);
+        FlightLeaderboard.Snapshot snapshot = leaderboard.getSnapshot();
+        
+        leaderboard.update(uuid(2), 200);
+        assertEquals(1, snapshot.size());
+        assertEquals(uuid(1), snapshot.get(1).getPlayerUUID());
+        assertTrue(leaderboard.getSnapshot().getVersion() > snapshot.getVersion());
+    }
+    
+    @Test
+    public void loadKeepsLiveValues() {
+        FlightLeaderboard leaderboard = new FlightLeaderboard();
+        leaderboard.update(uuid(1), 50);
+        leaderboard.update(uuid(2), 0);
+        assertFalse(leaderboard.isLoaded());
+        
+        leaderboard.load(Arrays.asList(
+                new PlayerDataSnapshot(uuid(1), 1000, false, 1),
+                new PlayerDataSnapshot(uuid(2), 900, false, 1),
+                new PlayerDataSnapshot(uuid(3), 300, false, 1),
+                new PlayerDataSnapshot(uuid(4), 0, false, 1)));
+        
+        assertTrue(leaderboard.isLoaded());
+        assertEquals(2, leaderboard.getSnapshot().size());
+        assertEquals(1, leaderboard.getRank(uuid(3)));
+        assertEquals(2, leaderboard.getRank(uuid(1)));
+        assertEquals(0, leaderboard.getRank(uuid(2)));
+        assertEquals(0, leaderboard.getRank(uuid(4)));
+    }
+    
+    @Test
+    public void matchesSortedListUnderRandomUpdates() {
+        FlightLeaderboard leaderboard = new FlightLeaderboard();
+        Map<UUID, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        
+        for (int i = 0; i < 5000; i++) {
+            UUID uuid = uuid(random.nextInt(300));
+            // Few distinct values so ties are common
+            long seconds = random.nextInt(4) == 0 ? 0 : random.nextInt(50);
+            leaderboard.update(uuid, seconds);
+            if (seconds > 0) {
+                expected.put(uuid, seconds);
+            } else {
+                expected.remove(uuid);
+            }
+        }
+        
+        List<Map.Entry<UUID, Long>> sorted = new ArrayList<>(expected.entrySet());
+        sorted.sort(Map.Entry.<UUID, Long>comparingByValue(Comparator.reverseOrder()));
+        FlightLeaderboard.Snapshot snapshot = leaderboard.getSnapshot();
+        assertEquals(sorted.size(), snapshot.size());
+        for (int position = 1; position <= sorted.size(); position++) {
+            FlightLeaderboard.Entry entry = snapshot.get(position);
+            long seconds = sorted.get(position - 1).getValue();
+            assertEquals(seconds, entry.getSeconds());
+            assertEquals(position, leaderboard.getRank(entry.getPlayerUUID()));
+        }
+    }
+}
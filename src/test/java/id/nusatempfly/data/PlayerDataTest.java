@@ -0,0 +1,148 @@
+package id.nusatempfly.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlayerDataTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 10000;
+    
+    @Test
+    public void removeReportsWhatWasTaken() {
+        PlayerData data = new PlayerData(UUID.randomUUID());
+        data.setRemainingFlightTime(10);
+        
+        assertEquals(4, data.removeFlightTime(4));
+        assertEquals(6, data.removeFlightTime(20));
+        assertEquals(0, data.removeFlightTime(1));
+        assertEquals(0, data.getRemainingFlightTime());
+    }
+    
+    @Test
+    public void concurrentAddsAndTakesBalance() throws InterruptedException {
+        PlayerData data = new PlayerData(UUID.randomUUID());
+        AtomicLong taken = new AtomicLong();
+        
+        // Half the threads add, the others take and may find the balance empty
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                if (thread % 2 == 0) {
+                    data.addFlightTime(3);
+                } else {
+                    taken.addAndGet(data.removeFlightTime(5));
+                }
+            }
+        });
+        
+        long added = (long) (THREADS / 2) * OPERATIONS * 3;
+        assertEquals(added - taken.get(), data.getRemainingFlightTime());
+    }
+    
+    @Test
+    public void concurrentTakesNeverExceedBalance() throws InterruptedException {
+        PlayerData data = new PlayerData(UUID.randomUUID());
+        data.setRemainingFlightTime(50000);
+        AtomicLong taken = new AtomicLong();
+        
+        runConcurrently(thread -> {
+            long amount;
+            while ((amount = data.removeFlightTime(7)) > 0) {
+                taken.addAndGet(amount);
+            }
+        });
+        
+        assertEquals(50000, taken.get());
+        assertEquals(0, data.getRemainingFlightTime());
+    }
+    
+    @Test
+    public void compareAndSetLosesNoUpdates() throws InterruptedException {
+        PlayerData data = new PlayerData(UUID.randomUUID());
+        
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                long current;
+                do {
+                    current = data.getRemainingFlightTime();
+                } while (!data.compareAndSetFlightTime(current, current + 1));
+            }
+        });
+        
+        assertEquals((long) THREADS * OPERATIONS, data.getRemainingFlightTime());
+    }
+    
+    @Test
+    public void compareAndSetRejectsStaleValue() {
+        PlayerData data = new PlayerData(UUID.randomUUID());
+        data.setRemainingFlightTime(30);
+        
+        assertFalse(data.compareAndSetFlightTime(20, 40));
+        assertTrue(data.compareAndSetFlightTime(30, 40));
+        assertEquals(40, data.getRemainingFlightTime());
+    }
+    
+    @Test
+    public void compareAndSetRefusedWhileLoading() {
+        PlayerData data = new PlayerData(UUID.randomUUID());
+        data.startLoading();
+        
+        assertFalse(data.compareAndSetFlightTime(0, 10));
+        assertEquals(0, data.getRemainingFlightTime());
+    }
+    
+    @Test
+    public void changesWhileLoadingAreReplayed() {
+        PlayerData stored = new PlayerData(UUID.randomUUID());
+        stored.setRemainingFlightTime(100);
+        PlayerData data = new PlayerData(stored.getPlayerUUID());
+        data.startLoading();
+        data.addFlightTime(20);
+        data.removeFlightTime(5);
+        
+        assertTrue(data.completeLoading(stored));
+        assertEquals(115, data.getRemainingFlightTime());
+    }
+    
+    /**
+     * Run a task on several threads at once, released together
+     * @param task Task given the index of its thread
+     */
+    private static void runConcurrently(ThreadTask task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int index = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(index);
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue("Thread failed: " + failures, failures.isEmpty());
+    }
+    
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,157 @@
+package id.nusatempfly.data.storage;
+
+import id.nusatempfly.data.PlayerDataSnapshot;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryPlayerDataStorageTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File dataFile() {
+        return new File(folder.getRoot(), "players.dat");
+    }
+    
+    @Test
+    public void savesAndLoadsRecords() throws IOException {
+        BinaryPlayerDataStorage storage = new BinaryPlayerDataStorage(dataFile());
+        try {
+            assertTrue(storage.isEmpty());
+            UUID uuid = UUID.randomUUID();
+            storage.save(new PlayerDataSnapshot(uuid, 120, true, 0));
+            
+            PlayerDataSnapshot loaded = storage.load(uuid);
+            assertEquals(uuid, loaded.getPlayerUUID());
+            assertEquals(120, loaded.getRemainingFlightTime());
+            assertTrue(loaded.isFlightEnabled());
+            assertEquals(1, loaded.getVersion());
+            assertNull(storage.load(UUID.randomUUID()));
+        } finally {
+            storage.close();
+        }
+    }
+    
+    @Test
+    public void updatesRecordInPlace() throws IOException {
+        BinaryPlayerDataStorage storage = new BinaryPlayerDataStorage(dataFile());
+        try {
+            UUID uuid = UUID.randomUUID();
+            storage.save(new PlayerDataSnapshot(uuid, 120, true, 0));
+            storage.save(new PlayerDataSnapshot(uuid, 30, false, 0));
+            
+            PlayerDataSnapshot loaded = storage.load(uuid);
+            assertEquals(30, loaded.getRemainingFlightTime());
+            assertFalse(loaded.isFlightEnabled());
+            assertEquals(2, loaded.getVersion());
+            assertEquals(1, storage.size());
+        } finally {
+            storage.close();
+        }
+    }
+    
+    @Test
+    public void growsAndReopens() throws IOException {
+        // More players than the initial mapping holds, so the file is remapped twice
+        List<UUID> players = new ArrayList<>();
+        BinaryPlayerDataStorage storage = new BinaryPlayerDataStorage(dataFile());
+        try {
+            for (int i = 0; i < 3000; i++) {
+                UUID uuid = UUID.randomUUID();
+                players.add(uuid);
+                storage.save(new PlayerDataSnapshot(uuid, i, i % 2 == 0, 0));
+            }
+            storage.save(new PlayerDataSnapshot(players.get(0), 5000, true, 0));
+        } finally {
+            storage.close();
+        }
+        
+        storage = new BinaryPlayerDataStorage(dataFile());
+        try {
+            assertEquals(3000, storage.size());
+            for (int i = 1; i < players.size(); i++) {
+                PlayerDataSnapshot loaded = storage.load(players.get(i));
+                assertEquals(i, loaded.getRemainingFlightTime());
+                assertEquals(i % 2 == 0, loaded.isFlightEnabled());
+                assertEquals(1, loaded.getVersion());
+            }
+            PlayerDataSnapshot updated = storage.load(players.get(0));
+            assertEquals(5000, updated.getRemainingFlightTime());
+            assertEquals(2, updated.getVersion());
+        } finally {
+            storage.close();
+        }
+    }
+    
+    @Test
+    public void savesIntoHeaderOnlyFile() throws IOException {
+        new BinaryPlayerDataStorage(dataFile()).close();
+        try (RandomAccessFile file = new RandomAccessFile(dataFile(), "rw")) {
+            file.setLength(16);
+        }
+        
+        BinaryPlayerDataStorage storage = new BinaryPlayerDataStorage(dataFile());
+        try {
+            assertTrue(storage.isEmpty());
+            UUID uuid = UUID.randomUUID();
+            storage.save(new PlayerDataSnapshot(uuid, 60, true, 0));
+            assertEquals(60, storage.load(uuid).getRemainingFlightTime());
+        } finally {
+            storage.close();
+        }
+    }
+    
+    @Test
+    public void findsPlayersAboveThreshold() throws IOException {
+        BinaryPlayerDataStorage storage = new BinaryPlayerDataStorage(dataFile());
+        try {
+            Set<UUID> expected = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                UUID uuid = UUID.randomUUID();
+                storage.save(new PlayerDataSnapshot(uuid, i * 10, false, 0));
+                if (i * 10 > 45) {
+                    expected.add(uuid);
+                }
+            }
+            
+            Set<UUID> found = new HashSet<>();
+            for (PlayerDataSnapshot snapshot : storage.findByRemainingTimeAbove(45)) {
+                found.add(snapshot.getPlayerUUID());
+            }
+            assertEquals(expected, found);
+        } finally {
+            storage.close();
+        }
+    }
+    
+    @Test
+    public void rejectsForeignFile() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(dataFile(), "rw")) {
+            file.writeInt(0x12345678);
+            file.setLength(16 + 33);
+        }
+        
+        try {
+            new BinaryPlayerDataStorage(dataFile()).close();
+            fail("Opened a file without the store magic");
+        } catch (IOException expected) {
+            // The file is left for the admin to look at
+        }
+    }
+}
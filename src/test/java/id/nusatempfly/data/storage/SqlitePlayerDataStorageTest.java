@@ -0,0 +1,132 @@
+package id.nusatempfly.data.storage;
+
+import id.nusatempfly.data.PlayerDataSnapshot;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SqlitePlayerDataStorageTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File databaseFile() {
+        return new File(folder.getRoot(), "players.db");
+    }
+    
+    @Test
+    public void savesAndLoadsRecords() throws IOException {
+        SqlitePlayerDataStorage storage = new SqlitePlayerDataStorage(databaseFile());
+        try {
+            assertTrue(storage.isEmpty());
+            UUID uuid = UUID.randomUUID();
+            storage.save(new PlayerDataSnapshot(uuid, 120, true, 0));
+            
+            PlayerDataSnapshot loaded = storage.load(uuid);
+            assertEquals(120, loaded.getRemainingFlightTime());
+            assertTrue(loaded.isFlightEnabled());
+            assertEquals(1, loaded.getVersion());
+            assertFalse(storage.isEmpty());
+            assertNull(storage.load(UUID.randomUUID()));
+        } finally {
+            storage.close();
+        }
+    }
+    
+    @Test
+    public void upsertReplacesExistingRecord() throws IOException {
+        SqlitePlayerDataStorage storage = new SqlitePlayerDataStorage(databaseFile());
+        try {
+            UUID uuid = UUID.randomUUID();
+            storage.save(new PlayerDataSnapshot(uuid, 120, true, 0));
+            storage.save(new PlayerDataSnapshot(uuid, 30, false, 0));
+            
+            PlayerDataSnapshot loaded = storage.load(uuid);
+            assertEquals(30, loaded.getRemainingFlightTime());
+            assertFalse(loaded.isFlightEnabled());
+            assertEquals(2, loaded.getVersion());
+            assertEquals(1, storage.findByRemainingTimeAbove(-1).size());
+        } finally {
+            storage.close();
+        }
+    }
+    
+    @Test
+    public void batchInsertsAndUpdatesTogether() throws IOException {
+        SqlitePlayerDataStorage storage = new SqlitePlayerDataStorage(databaseFile());
+        try {
+            UUID existing = UUID.randomUUID();
+            UUID added = UUID.randomUUID();
+            storage.save(new PlayerDataSnapshot(existing, 10, false, 0));
+            storage.saveBatch(Arrays.asList(
+                    new PlayerDataSnapshot(existing, 50, true, 0),
+                    new PlayerDataSnapshot(added, 70, false, 0)));
+            
+            assertEquals(50, storage.load(existing).getRemainingFlightTime());
+            assertEquals(2, storage.load(existing).getVersion());
+            assertEquals(70, storage.load(added).getRemainingFlightTime());
+            assertEquals(1, storage.load(added).getVersion());
+        } finally {
+            storage.close();
+        }
+    }
+    
+    @Test
+    public void findsPlayersAboveThreshold() throws IOException {
+        SqlitePlayerDataStorage storage = new SqlitePlayerDataStorage(databaseFile());
+        try {
+            List<PlayerDataSnapshot> batch = new ArrayList<>();
+            Set<UUID> expected = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                UUID uuid = UUID.randomUUID();
+                batch.add(new PlayerDataSnapshot(uuid, i * 10, false, 0));
+                if (i * 10 > 45) {
+                    expected.add(uuid);
+                }
+            }
+            storage.saveBatch(batch);
+            
+            Set<UUID> found = new HashSet<>();
+            for (PlayerDataSnapshot snapshot : storage.findByRemainingTimeAbove(45)) {
+                found.add(snapshot.getPlayerUUID());
+            }
+            assertEquals(expected, found);
+        } finally {
+            storage.close();
+        }
+    }
+    
+    @Test
+    public void keepsRecordsAfterReopen() throws IOException {
+        UUID uuid = UUID.randomUUID();
+        SqlitePlayerDataStorage storage = new SqlitePlayerDataStorage(databaseFile());
+        try {
+            storage.save(new PlayerDataSnapshot(uuid, 90, true, 0));
+        } finally {
+            storage.close();
+        }
+        
+        storage = new SqlitePlayerDataStorage(databaseFile());
+        try {
+            PlayerDataSnapshot loaded = storage.load(uuid);
+            assertEquals(90, loaded.getRemainingFlightTime());
+            assertTrue(loaded.isFlightEnabled());
+        } finally {
+            storage.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package id.nusatempfly.data.storage;
+
+import id.nusatempfly.data.PlayerDataSnapshot;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static id.nusatempfly.testing.TestSupport.LOGGER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class YamlMigratorTest {
+    // More than one migration batch
+    private static final int PLAYERS = 1500;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private YamlPlayerDataStorage yaml;
+    private final List<UUID> players = new ArrayList<>();
+    private UUID corrupt;
+    
+    @Before
+    public void setUp() throws IOException {
+        File yamlFolder = folder.newFolder("playerdata");
+        yaml = new YamlPlayerDataStorage(yamlFolder, LOGGER);
+        for (int i = 0; i < PLAYERS; i++) {
+            UUID uuid = UUID.randomUUID();
+            players.add(uuid);
+            yaml.save(new PlayerDataSnapshot(uuid, i, i % 2 == 0, 0));
+        }
+        
+        corrupt = UUID.randomUUID();
+        Files.write(new File(yamlFolder, corrupt + ".yml").toPath(),
+                "remainingFlightTime: [".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(yamlFolder, "notes.yml").toPath(), new byte[0]);
+    }
+    
+    @Test
+    public void migratesEveryReadablePlayer() throws IOException {
+        SqlitePlayerDataStorage sqlite = new SqlitePlayerDataStorage(new File(folder.getRoot(), "players.db"));
+        try {
+            assertEquals(PLAYERS, YamlMigrator.migrate(yaml, sqlite, LOGGER));
+            
+            for (int i = 0; i < PLAYERS; i++) {
+                PlayerDataSnapshot migrated = sqlite.load(players.get(i));
+                assertEquals(i, migrated.getRemainingFlightTime());
+                assertEquals(i % 2 == 0, migrated.isFlightEnabled());
+            }
+            assertNull(sqlite.load(corrupt));
+            assertEquals(PLAYERS, sqlite.findByRemainingTimeAbove(-1).size());
+        } finally {
+            sqlite.close();
+        }
+    }
+    
+    @Test
+    public void scanSkipsCorruptFile() throws IOException {
+        assertEquals(PLAYERS - 1001, yaml.findByRemainingTimeAbove(1000).size());
+    }
+}
@@ -0,0 +1,28 @@
+package id.nusatempfly.testing;
+
+import org.junit.rules.ExternalResource;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Rule that closes what a test opened once it finishes, newest first, even if it failed
+ */
+public class CloseAfter extends ExternalResource {
+    private final Deque<Runnable> closers = new ArrayDeque<>();
+    
+    /**
+     * Run an action after the test
+     * @param closer Action closing something the test opened, must be safe to run twice
+     */
+    public void add(Runnable closer) {
+        closers.push(closer);
+    }
+    
+    @Override
+    protected void after() {
+        while (!closers.isEmpty()) {
+            closers.pop().run();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package id.nusatempfly.testing;
+
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Helpers shared by tests of classes with background threads
+ */
+public final class TestSupport {
+    // Background threads in tests poll every few milliseconds, this only bounds a hang
+    private static final long AWAIT_TIMEOUT_MILLIS = 5000;
+    
+    public static final Logger LOGGER = Logger.getLogger("NusaTempFlyTest");
+    
+    private TestSupport() {
+    }
+    
+    /**
+     * Wait until a condition holds, failing the test if it does not in time
+     * @param condition Condition to wait for
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for a condition");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
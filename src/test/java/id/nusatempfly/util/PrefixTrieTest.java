@@ -0,0 +1,91 @@
+package id.nusatempfly.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrefixTrieTest {
+    
+    private static List<String> collect(PrefixTrie trie, String prefix, int limit) {
+        List<String> results = new ArrayList<>();
+        int added = trie.collect(prefix, limit, results);
+        assertEquals(results.size(), added);
+        return results;
+    }
+    
+    @Test
+    public void collectsWordsWithPrefixInAlphabeticalOrder() {
+        PrefixTrie trie = new PrefixTrie();
+        for (String word : Arrays.asList("Steve", "alex", "Sam", "stefan", "Bob")) {
+            trie.add(word);
+        }
+        
+        assertEquals(Arrays.asList("Sam", "stefan", "Steve"), collect(trie, "s", 10));
+        assertEquals(Arrays.asList("stefan", "Steve"), collect(trie, "STE", 10));
+        assertEquals(Arrays.asList("alex", "Bob", "Sam", "stefan", "Steve"), collect(trie, "", 10));
+        assertEquals(Collections.emptyList(), collect(trie, "x", 10));
+    }
+    
+    @Test
+    public void stopsAtLimit() {
+        PrefixTrie trie = new PrefixTrie();
+        for (int i = 0; i < 100; i++) {
+            trie.add("player" + i);
+        }
+        
+        assertEquals(Arrays.asList("player0", "player1", "player10"), collect(trie, "player", 3));
+        assertEquals(Collections.emptyList(), collect(trie, "player", 0));
+    }
+    
+    @Test
+    public void addIsCaseInsensitiveAndKeepsLatestSpelling() {
+        PrefixTrie trie = new PrefixTrie();
+        assertTrue(trie.add("notch"));
+        assertFalse(trie.add("Notch"));
+        
+        assertEquals(1, trie.size());
+        assertEquals(Collections.singletonList("Notch"), collect(trie, "no", 10));
+    }
+    
+    @Test
+    public void removeKeepsWordsSharingThePath() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.add("ab");
+        trie.add("abc");
+        trie.add("abd");
+        
+        assertTrue(trie.remove("ABC"));
+        assertFalse(trie.remove("abc"));
+        assertFalse(trie.remove("a"));
+        assertEquals(2, trie.size());
+        assertEquals(Arrays.asList("ab", "abd"), collect(trie, "a", 10));
+        
+        assertTrue(trie.remove("ab"));
+        assertTrue(trie.remove("abd"));
+        assertEquals(0, trie.size());
+        assertEquals(Collections.emptyList(), collect(trie, "", 10));
+        
+        // Pruned branches can be grown again
+        assertTrue(trie.add("abd"));
+        assertEquals(Collections.singletonList("abd"), collect(trie, "ab", 10));
+    }
+    
+    @Test
+    public void clearRemovesEverything() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.add("one");
+        trie.add("two");
+        trie.clear();
+        
+        assertEquals(0, trie.size());
+        assertEquals(Collections.emptyList(), collect(trie, "", 10));
+        assertTrue(trie.add("one"));
+    }
+}
@@ -0,0 +1,113 @@
+package id.nusatempfly.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedTickerTest {
+    
+    @Test
+    public void processesEveryKeyOncePerPeriod() {
+        Map<Integer, Integer> processed = new HashMap<>();
+        ShardedTicker<Integer> ticker = new ShardedTicker<>(20, 0, key -> processed.merge(key, 1, Integer::sum));
+        for (int i = 0; i < 100; i++) {
+            ticker.add(i);
+        }
+        
+        for (int period = 1; period <= 3; period++) {
+            for (int tick = 0; tick < 20; tick++) {
+                ticker.tick();
+            }
+            assertEquals(100, processed.size());
+            for (int count : processed.values()) {
+                assertEquals(period, count);
+            }
+        }
+    }
+    
+    @Test
+    public void spreadsKeysEvenlyOverTicks() {
+        List<Integer> perTick = new ArrayList<>();
+        int[] count = new int[1];
+        ShardedTicker<Integer> ticker = new ShardedTicker<>(20, 0, key -> count[0]++);
+        for (int i = 0; i < 105; i++) {
+            ticker.add(i);
+        }
+        
+        for (int tick = 0; tick < 20; tick++) {
+            count[0] = 0;
+            ticker.tick();
+            perTick.add(count[0]);
+        }
+        for (int keys : perTick) {
+            assertTrue("Uneven tick: " + perTick, keys == 5 || keys == 6);
+        }
+    }
+    
+    @Test
+    public void rebalancesAfterRemovalsAtNextPeriod() {
+        int[] count = new int[1];
+        ShardedTicker<Integer> ticker = new ShardedTicker<>(4, 0, key -> count[0]++);
+        for (int i = 0; i < 40; i++) {
+            ticker.add(i);
+        }
+        // Keys were spread round-robin, so this empties two of the four shards
+        for (int i = 0; i < 40; i++) {
+            if (i % 4 < 2) {
+                ticker.remove(i);
+            }
+        }
+        assertEquals(20, ticker.size());
+        
+        for (int tick = 0; tick < 4; tick++) {
+            count[0] = 0;
+            ticker.tick();
+            assertEquals(5, count[0]);
+        }
+    }
+    
+    @Test
+    public void removedKeyIsNotProcessed() {
+        List<Integer> processed = new ArrayList<>();
+        ShardedTicker<Integer> ticker = new ShardedTicker<>(1, 0, processed::add);
+        ticker.add(1);
+        ticker.add(2);
+        ticker.add(2);
+        ticker.remove(1);
+        
+        ticker.tick();
+        assertEquals(List.of(2), processed);
+    }
+    
+    @Test
+    public void defersWorkOverBudgetToNextTick() {
+        List<Integer> processed = new ArrayList<>();
+        // Every action uses up the whole budget, so each tick only makes the guaranteed progress
+        ShardedTicker<Integer> ticker = new ShardedTicker<>(1, 1, key -> {
+            processed.add(key);
+            long start = System.nanoTime();
+            while (System.nanoTime() - start < 1_000) {
+                Thread.onSpinWait();
+            }
+        });
+        ticker.add(1);
+        ticker.add(2);
+        ticker.add(3);
+        
+        ticker.tick();
+        assertEquals(List.of(1), processed);
+        assertEquals(2, ticker.getDeferredCount());
+        
+        ticker.tick();
+        ticker.tick();
+        // Deferred keys go first, the key already processed waits behind them
+        assertEquals(List.of(1, 2, 3), processed);
+        assertEquals(2, ticker.getDeferredCount());
+    }
+}
@@ -0,0 +1,116 @@
+package id.nusatempfly.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+    
+    @Test
+    public void firesOnDeadlineAtEveryLevel() {
+        // Start off a slot boundary so cascades happen mid-range
+        TimingWheel wheel = new TimingWheel(37);
+        long[] deadlines = {38, 100, 37 + 64, 37 + 4096, 5000, 300000, 37 + 262144};
+        long[] firedAt = new long[deadlines.length];
+        for (int i = 0; i < deadlines.length; i++) {
+            int index = i;
+            wheel.schedule(deadlines[i], () -> firedAt[index] = wheel.getCurrentTick());
+        }
+        
+        wheel.advance(400000);
+        for (int i = 0; i < deadlines.length; i++) {
+            assertEquals("Deadline " + deadlines[i], deadlines[i], firedAt[i]);
+        }
+        assertEquals(0, wheel.size());
+    }
+    
+    @Test
+    public void cascadesRandomDeadlinesInOrder() {
+        Random random = new Random(42);
+        TimingWheel wheel = new TimingWheel(0);
+        List<Long> fired = new ArrayList<>();
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            long deadline = 1 + random.nextInt(500000);
+            wheel.schedule(deadline, () -> {
+                assertEquals(deadline, wheel.getCurrentTick());
+                fired.add(deadline);
+            });
+        }
+        
+        // Advance in uneven steps, the result must not depend on them
+        long tick = 0;
+        while (tick < 500000) {
+            tick += 1 + random.nextInt(5000);
+            wheel.advance(tick);
+        }
+        assertEquals(count, fired.size());
+        for (int i = 1; i < fired.size(); i++) {
+            assertTrue(fired.get(i - 1) <= fired.get(i));
+        }
+    }
+    
+    @Test
+    public void pastDeadlineFiresOnNextTick() {
+        TimingWheel wheel = new TimingWheel(1000);
+        long[] firedAt = new long[1];
+        wheel.schedule(10, () -> firedAt[0] = wheel.getCurrentTick());
+        
+        assertEquals(1, wheel.advance(1001));
+        assertEquals(1001, firedAt[0]);
+    }
+    
+    @Test
+    public void deadlineBeyondRangeStillFiresOnTime() {
+        TimingWheel wheel = new TimingWheel(0);
+        long deadline = (1L << 24) + 500;
+        long[] firedAt = new long[1];
+        wheel.schedule(deadline, () -> firedAt[0] = wheel.getCurrentTick());
+        
+        assertEquals(0, wheel.advance(deadline - 1));
+        assertEquals(1, wheel.advance(deadline));
+        assertEquals(deadline, firedAt[0]);
+    }
+    
+    @Test
+    public void cancelledTimeoutDoesNotFire() {
+        TimingWheel wheel = new TimingWheel(0);
+        int[] fired = new int[1];
+        TimingWheel.Timeout cancelled = wheel.schedule(5000, () -> fired[0]++);
+        TimingWheel.Timeout kept = wheel.schedule(5000, () -> fired[0]++);
+        
+        wheel.advance(4096);
+        cancelled.cancel();
+        assertFalse(cancelled.isPending());
+        assertEquals(1, wheel.size());
+        
+        wheel.advance(5000);
+        assertEquals(1, fired[0]);
+        assertFalse(kept.isPending());
+    }
+    
+    @Test
+    public void taskMayCancelAnotherDueInSameTick() {
+        TimingWheel wheel = new TimingWheel(0);
+        int[] fired = new int[1];
+        TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[2];
+        for (int i = 0; i < 2; i++) {
+            int other = 1 - i;
+            timeouts[i] = wheel.schedule(200, () -> {
+                fired[0]++;
+                timeouts[other].cancel();
+            });
+        }
+        
+        // Both land in the same slot, whichever runs first cancels the other
+        assertEquals(1, wheel.advance(200));
+        assertEquals(1, fired[0]);
+        assertEquals(0, wheel.size());
+    }
+}